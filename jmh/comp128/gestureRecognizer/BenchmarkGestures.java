@@ -0,0 +1,78 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks: the recorded gestures in res, or synthetic ones, at a chosen
+ * number of raw points.
+ */
+final class BenchmarkGestures {
+
+    static final String[] RES_FILES = {"arrowTest.xml", "arrowTemplate.xml", "circleTemplate.xml"};
+
+    private BenchmarkGestures() {
+    }
+
+    /**
+     * Creates input gestures
+     *
+     * @param source    "res" for the recorded gestures, resampled to numPoints, or "synthetic" for
+     *                  generated ones
+     * @param numPoints number of raw points in each gesture
+     * @param count     number of gestures
+     * @param seed      seed for the synthetic gestures
+     * @return gestures in canvas coordinates
+     */
+    static List<GesturePath> create(String source, int numPoints, int count, long seed) {
+        List<GesturePath> gestures = new ArrayList<>(count);
+        if (source.equals("res")) {
+            Recognizer recognizer = new Recognizer();
+            IOManager ioManager = new IOManager();
+            for (int i = 0; i < count; i++) {
+                Deque<Point> recorded = ioManager.loadGesture(RES_FILES[i % RES_FILES.length]);
+                GesturePath resampled = new GesturePath(numPoints);
+                recognizer.resample(GesturePath.fromPoints(recorded), numPoints, resampled);
+                gestures.add(resampled);
+            }
+        } else {
+            Random random = new Random(seed);
+            for (int i = 0; i < count; i++) {
+                gestures.add(GesturePath.fromPoints(SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, numPoints)));
+            }
+        }
+        return gestures;
+    }
+
+    /**
+     * Creates a recognizer holding a synthetic template library
+     *
+     * @param templateCount number of templates
+     * @param seed          seed for the templates
+     * @return recognizer
+     */
+    static Recognizer recognizer(int templateCount, long seed) {
+        return withTemplates(new Recognizer(), templateCount, seed);
+    }
+
+    /**
+     * Adds a synthetic template library to any engine
+     *
+     * @param matcher       engine to fill
+     * @param templateCount number of templates
+     * @param seed          seed for the templates
+     * @return the same engine
+     */
+    static <M extends GestureMatcher> M withTemplates(M matcher, int templateCount, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < templateCount; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            matcher.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 96));
+        }
+        return matcher;
+    }
+}
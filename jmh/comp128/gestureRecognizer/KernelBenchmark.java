@@ -0,0 +1,82 @@
+package comp128.gestureRecognizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and SIMD distance kernels on the same pair of normalized paths. The vector
+ * kernel is only there when the fork is started with --add-modules jdk.incubator.vector, which the
+ * build's jmh task does; without it the vector runs measure the scalar kernel again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+    @Param({"64", "256"})
+    public int pointCount;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    private DistanceKernel distanceKernel;
+    private double[] xs;
+    private double[] ys;
+    private double[] txs;
+    private double[] tys;
+    private double cx;
+    private double cy;
+    private double cos;
+    private double sin;
+
+    @Setup
+    public void setup() {
+        distanceKernel = kernel.equals("vector") ? DistanceKernels.preferred() : DistanceKernels.scalar();
+        Recognizer recognizer = new Recognizer();
+        GesturePath gesture = normalized(recognizer, BenchmarkGestures.create("synthetic", 128, 2, 1).get(0));
+        GesturePath template = normalized(recognizer, BenchmarkGestures.create("synthetic", 128, 2, 1).get(1));
+        xs = gesture.xs();
+        ys = gesture.ys();
+        txs = template.xs();
+        tys = template.ys();
+        for (int i = 0; i < pointCount; i++) {
+            cx += xs[i];
+            cy += ys[i];
+        }
+        cx /= pointCount;
+        cy /= pointCount;
+        cos = Math.cos(0.1);
+        sin = Math.sin(0.1);
+    }
+
+    private GesturePath normalized(Recognizer recognizer, GesturePath raw) {
+        GesturePath result = new GesturePath(pointCount);
+        new NormalizationKernel().normalize(raw, pointCount, recognizer.pathLength(raw), recognizer.SIZE, result);
+        return result;
+    }
+
+    @Benchmark
+    public double rotatedDistanceSum() {
+        return distanceKernel.rotatedDistanceSum(xs, ys, cx, cy, txs, tys, pointCount, cos, sin,
+                Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public double distanceSum() {
+        return distanceKernel.distanceSum(xs, ys, txs, tys, pointCount);
+    }
+}
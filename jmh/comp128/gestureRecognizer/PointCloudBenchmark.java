@@ -0,0 +1,60 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times point cloud recognition against template libraries of different sizes, with and without
+ * the lookup table lower bounds. Comparable with the synthetic rows of RecognizeBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointCloudBenchmark {
+
+    private static final int INPUTS = 64;
+
+    @Param({"16", "256", "4096"})
+    public int templateCount;
+
+    @Param({"true", "false"})
+    public boolean lowerBounds;
+
+    private PointCloudMatcher matcher;
+    private List<Deque<Point>> inputs;
+    private int next;
+
+    @Setup
+    public void setup() {
+        matcher = BenchmarkGestures.withTemplates(new PointCloudMatcher(), templateCount, 7);
+        matcher.setLowerBounds(lowerBounds);
+        inputs = new ArrayList<>(INPUTS);
+        for (GesturePath input : BenchmarkGestures.create("synthetic", 128, INPUTS, 11)) {
+            inputs.add(input.toPoints());
+        }
+    }
+
+    @Benchmark
+    public RecognitionResult classify() {
+        next = (next + 1) % INPUTS;
+        return matcher.classify(inputs.get(next));
+    }
+}
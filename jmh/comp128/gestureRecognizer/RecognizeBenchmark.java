@@ -0,0 +1,85 @@
+package comp128.gestureRecognizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times end to end recognition against template libraries of different sizes, for each matching
+ * strategy. Each call recognizes the next of a fixed set of inputs so the branch predictor cannot
+ * learn a single gesture.
+ *
+ * Strategies:
+ * <ul>
+ *     <li>exhaustive: golden section search against every template</li>
+ *     <li>pruned: golden section search behind the lower bound cascade (the default)</li>
+ *     <li>indexed: pruning plus the vantage point tree</li>
+ *     <li>tabled: pruning with templates rotated ahead of time every 2 degrees</li>
+ *     <li>protractor: closed form Protractor matching</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecognizeBenchmark {
+
+    private static final int INPUTS = 64;
+
+    @Param({"16", "256", "4096"})
+    public int templateCount;
+
+    @Param({"32", "128", "512"})
+    public int pointCount;
+
+    @Param({"res", "synthetic"})
+    public String source;
+
+    @Param({"exhaustive", "pruned", "indexed", "tabled", "protractor"})
+    public String strategy;
+
+    private Recognizer recognizer;
+    private List<GesturePath> inputs;
+    private int next;
+
+    @Setup
+    public void setup() {
+        recognizer = BenchmarkGestures.recognizer(templateCount, 7);
+        switch (strategy) {
+            case "exhaustive":
+                recognizer.setPruning(false);
+                break;
+            case "indexed":
+                recognizer.setIndexing(true);
+                break;
+            case "tabled":
+                recognizer.setRotationResolution(2);
+                break;
+            case "protractor":
+                recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+                break;
+            default:
+                break;
+        }
+        inputs = BenchmarkGestures.create(source, pointCount, INPUTS, 11);
+    }
+
+    @Benchmark
+    public Template recognize() {
+        next = (next + 1) % INPUTS;
+        return recognizer.recognize(inputs.get(next));
+    }
+}
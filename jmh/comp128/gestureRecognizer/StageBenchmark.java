@@ -0,0 +1,121 @@
+package comp128.gestureRecognizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each stage of the $1 pipeline on its own. The in place stages (rotateBy, scaleTo,
+ * translateTo) run over and over on the same buffer; rotating by a tiny angle, rescaling to the
+ * same size and recentering on the same point all cost the same every time, so the buffer never
+ * has to be reset between calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int pointCount;
+
+    @Param({"res", "synthetic"})
+    public String source;
+
+    private Recognizer recognizer;
+    private GesturePath raw;
+    private GesturePath resampled;
+    private GesturePath working;
+    private GesturePath normalized;
+    private GesturePath template;
+    private PreparedGesture prepared;
+
+    @Setup
+    public void setup() {
+        recognizer = new Recognizer();
+        raw = BenchmarkGestures.create(source, pointCount, 1, 1).get(0);
+        resampled = new GesturePath(recognizer.RESAMPLEINTERVAL);
+        working = raw.copy();
+        normalized = new GesturePath(recognizer.RESAMPLEINTERVAL);
+        recognizer.normalize(raw, normalized);
+        prepared = new PreparedGesture(recognizer.RESAMPLEINTERVAL);
+        template = new GesturePath(recognizer.RESAMPLEINTERVAL);
+        recognizer.normalize(BenchmarkGestures.create(source, pointCount, 2, 2).get(1), template);
+    }
+
+    @Benchmark
+    public double pathLength() {
+        return recognizer.pathLength(raw);
+    }
+
+    @Benchmark
+    public GesturePath resample() {
+        recognizer.resample(raw, recognizer.RESAMPLEINTERVAL, resampled);
+        return resampled;
+    }
+
+    @Benchmark
+    public GesturePath rotateBy() {
+        recognizer.rotateBy(working, 1e-9);
+        return working;
+    }
+
+    @Benchmark
+    public GesturePath scaleTo() {
+        recognizer.scaleTo(working, recognizer.SIZE);
+        return working;
+    }
+
+    @Benchmark
+    public GesturePath translateTo() {
+        recognizer.translateTo(working, 0, 0);
+        return working;
+    }
+
+    @Benchmark
+    public GesturePath normalize() {
+        recognizer.normalize(raw, resampled);
+        return resampled;
+    }
+
+    /**
+     * The same normalization as normalize, run one stage at a time the way it was before the stages
+     * were fused
+     */
+    @Benchmark
+    public GesturePath normalizeStaged() {
+        recognizer.resample(raw, recognizer.RESAMPLEINTERVAL, resampled);
+        recognizer.rotateBy(resampled, -recognizer.indicativeAngle(resampled));
+        recognizer.scaleTo(resampled, recognizer.SIZE);
+        recognizer.translateTo(resampled, 0, 0);
+        return resampled;
+    }
+
+    @Benchmark
+    public PreparedGesture prepare() {
+        recognizer.prepare(raw, prepared);
+        return prepared;
+    }
+
+    @Benchmark
+    public double pathDistance() {
+        return recognizer.pathDistance(normalized, template);
+    }
+
+    @Benchmark
+    public double distanceAtBestAngle() {
+        return recognizer.distanceAtBestAngle(normalized, template);
+    }
+}
@@ -0,0 +1,64 @@
+package comp128.gestureRecognizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Times $1 recognition with the templates stored as Template objects in double precision, the
+ * default pruned Recognizer, and packed into a PackedTemplateLibrary as floats or 16 bit fixed
+ * point. Each storage runs in its own fork, so the JIT profile of one does not slow down another.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final int INPUTS = 64;
+
+    @Param({"256", "4096", "65536"})
+    public int templateCount;
+
+    @Param({"double", "float", "int16"})
+    public String storage;
+
+    private Function<GesturePath, RecognitionResult> classifier;
+    private List<GesturePath> inputs;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Recognizer recognizer = BenchmarkGestures.recognizer(templateCount, 7);
+        if (storage.equals("double")) {
+            classifier = recognizer::classify;
+        } else {
+            PackedTemplateLibrary library = new PackedTemplateLibrary(storage.equals("float")
+                    ? PackedTemplateLibrary.Precision.FLOAT : PackedTemplateLibrary.Precision.INT16);
+            library.ensureCapacity(templateCount);
+            library.addTemplates(recognizer.getTempList());
+            classifier = library::classify;
+        }
+        inputs = BenchmarkGestures.create("synthetic", 128, INPUTS, 11);
+    }
+
+    @Benchmark
+    public RecognitionResult classify() {
+        next = (next + 1) % INPUTS;
+        return classifier.apply(inputs.get(next));
+    }
+}
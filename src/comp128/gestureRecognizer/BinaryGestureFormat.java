@@ -0,0 +1,167 @@
+package comp128.gestureRecognizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the compact binary gesture library format. A library file holds any number of
+ * gestures and is read through a memory mapped channel, copying each gesture's coordinates straight
+ * into its arrays instead of parsing them one by one.
+ *
+ * Layout, little endian:
+ * <pre>
+ * int    magic, "GSTB"
+ * short  format version
+ * short  flags; bit 0 set means coordinates are stored as floats instead of doubles
+ * int    number of gestures
+ * then for each gesture:
+ *   short  length of the name in bytes
+ *   byte[] name, UTF-8
+ *   int    number of points
+ *   x coordinates of all points, then y coordinates of all points
+ * </pre>
+ */
+final class BinaryGestureFormat {
+
+    static final int MAGIC = 0x42545347; // "GSTB" when read as little endian bytes
+    static final short VERSION = 1;
+    static final short FLAG_FLOAT = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private BinaryGestureFormat() {
+    }
+
+    /**
+     * Writes gestures to a library file, replacing it if it exists
+     *
+     * @param gestures        gestures to write
+     * @param file            library file
+     * @param singlePrecision store coordinates as floats, halving the file size
+     */
+    static void write(List<NamedGesture> gestures, Path file, boolean singlePrecision) throws IOException {
+        int coordinateSize = singlePrecision ? Float.BYTES : Double.BYTES;
+        List<byte[]> names = new ArrayList<>(gestures.size());
+        long size = HEADER_SIZE;
+        for (NamedGesture gesture : gestures) {
+            byte[] name = gesture.getName().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IOException("Gesture name is too long: " + gesture.getName());
+            }
+            names.add(name);
+            size += Short.BYTES + name.length + Integer.BYTES + 2L * coordinateSize * gesture.getPath().size();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Gesture library is too large for one file: " + size + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort(singlePrecision ? FLAG_FLOAT : 0);
+            buffer.putInt(gestures.size());
+
+            for (int i = 0; i < gestures.size(); i++) {
+                GesturePath path = gestures.get(i).getPath();
+                int n = path.size();
+                buffer.putShort((short) names.get(i).length);
+                buffer.put(names.get(i));
+                buffer.putInt(n);
+                if (singlePrecision) {
+                    for (int j = 0; j < n; j++) {
+                        buffer.putFloat((float) path.getX(j));
+                    }
+                    for (int j = 0; j < n; j++) {
+                        buffer.putFloat((float) path.getY(j));
+                    }
+                } else {
+                    buffer.asDoubleBuffer().put(path.xs(), 0, n).put(path.ys(), 0, n);
+                    buffer.position(buffer.position() + 2 * n * Double.BYTES);
+                }
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Reads every gesture in a library file
+     *
+     * @param file library file
+     * @return gestures in the order they were written
+     */
+    static List<NamedGesture> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Gesture library is too large to map: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return read(buffer, file);
+        }
+    }
+
+    private static List<NamedGesture> read(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a binary gesture library");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported format version " + version);
+        }
+        boolean singlePrecision = (buffer.getShort() & FLAG_FLOAT) != 0;
+        int coordinateSize = singlePrecision ? Float.BYTES : Double.BYTES;
+        int count = buffer.getInt();
+
+        List<NamedGesture> gestures = new ArrayList<>(Math.max(0, Math.min(count, 1 << 16)));
+        for (int i = 0; i < count; i++) {
+            require(buffer, Short.BYTES, file);
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            require(buffer, name.length + Integer.BYTES, file);
+            buffer.get(name);
+            int n = buffer.getInt();
+            if (n < 0) {
+                throw new IOException(file + " is corrupt: negative point count");
+            }
+            require(buffer, 2L * coordinateSize * n, file);
+
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            if (singlePrecision) {
+                FloatBuffer coordinates = buffer.asFloatBuffer();
+                float[] values = new float[n];
+                coordinates.get(values);
+                for (int j = 0; j < n; j++) {
+                    xs[j] = values[j];
+                }
+                coordinates.get(values);
+                for (int j = 0; j < n; j++) {
+                    ys[j] = values[j];
+                }
+            } else {
+                buffer.asDoubleBuffer().get(xs).get(ys);
+            }
+            buffer.position(buffer.position() + 2 * n * coordinateSize);
+            gestures.add(new NamedGesture(new String(name, StandardCharsets.UTF_8), new GesturePath(xs, ys, n)));
+        }
+        return gestures;
+    }
+
+    private static void require(ByteBuffer buffer, long bytes, Path file) throws IOException {
+        if (buffer.remaining() < bytes) {
+            throw new IOException(file + " is corrupt: it ends in the middle of a gesture");
+        }
+    }
+}
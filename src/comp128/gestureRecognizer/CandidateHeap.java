@@ -0,0 +1,74 @@
+package comp128.gestureRecognizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The k closest templates found so far, kept in a heap with the worst of them on top. Until k have
+ * been found any template can get in; after that a template has to beat the k-th best distance,
+ * which is what the pruning bounds are measured against. With k of 1 this is just the closest
+ * template so far.
+ */
+final class CandidateHeap {
+
+    private final int k;
+    private final PriorityQueue<Match> heap;
+
+    /**
+     * @param k number of templates to keep, at least 1
+     */
+    CandidateHeap(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("At least one candidate has to be kept, not " + k);
+        }
+        this.k = k;
+        // Worst first: the match every other match is closer than
+        heap = new PriorityQueue<>(Math.min(k, 64) + 1, (a, b) -> a.isCloserThan(b) ? 1 : b.isCloserThan(a) ? -1 : 0);
+    }
+
+    /**
+     * @return the distance a template has to beat to get in
+     */
+    double bound() {
+        return heap.size() < k ? Double.MAX_VALUE : heap.peek().distance;
+    }
+
+    /**
+     * Adds a match if it is among the k closest so far
+     *
+     * @param match match, or null
+     */
+    void offer(Match match) {
+        if (match == null) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(match);
+        } else if (match.isCloserThan(heap.peek())) {
+            heap.poll();
+            heap.add(match);
+        }
+    }
+
+    /**
+     * @return the kept matches, closest first
+     */
+    List<Match> sorted() {
+        List<Match> matches = new ArrayList<>(heap);
+        Collections.sort(matches, (a, b) -> a.isCloserThan(b) ? -1 : b.isCloserThan(a) ? 1 : 0);
+        return matches;
+    }
+
+    /**
+     * @return the closest match, or null if there are none
+     */
+    Match best() {
+        Match best = null;
+        for (Match match : heap) {
+            best = Match.closer(best, match);
+        }
+        return best;
+    }
+}
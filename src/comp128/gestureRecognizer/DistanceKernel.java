@@ -0,0 +1,56 @@
+package comp128.gestureRecognizer;
+
+/**
+ * The innermost loops of matching, over coordinates in primitive arrays. The Recognizer spends
+ * nearly all of its matching time in these methods, so they are kept behind an interface that
+ * has both a plain scalar implementation and, when the JDK's incubating Vector API is available, a
+ * SIMD one. See DistanceKernels.
+ */
+interface DistanceKernel {
+
+    /**
+     * Sums the distances between the gesture points rotated around (cx, cy) and the template points
+     *
+     * @param xs       gesture x coordinates
+     * @param ys       gesture y coordinates
+     * @param cx       x coordinate of the rotation center
+     * @param cy       y coordinate of the rotation center
+     * @param txs      template x coordinates
+     * @param tys      template y coordinates
+     * @param n        number of points
+     * @param cos      cosine of the rotation
+     * @param sin      sine of the rotation
+     * @param sumLimit the sum can stop and return positive infinity once it is past this
+     * @return sum of the point distances, or positive infinity if it is larger than sumLimit
+     */
+    double rotatedDistanceSum(double[] xs, double[] ys, double cx, double cy, double[] txs, double[] tys, int n,
+            double cos, double sin, double sumLimit);
+
+    /**
+     * Sums the distances between the gesture points shifted by (-ox, -oy) and the template points
+     *
+     * @param xs       gesture x coordinates
+     * @param ys       gesture y coordinates
+     * @param ox       subtracted from every gesture x coordinate
+     * @param oy       subtracted from every gesture y coordinate
+     * @param txs      template x coordinates
+     * @param tys      template y coordinates
+     * @param n        number of points
+     * @param sumLimit the sum can stop and return positive infinity once it is past this
+     * @return sum of the point distances, or positive infinity if it is larger than sumLimit
+     */
+    double translatedDistanceSum(double[] xs, double[] ys, double ox, double oy, double[] txs, double[] tys, int n,
+            double sumLimit);
+
+    /**
+     * Sums the distances between corresponding points
+     *
+     * @param axs x coordinates of the first path
+     * @param ays y coordinates of the first path
+     * @param bxs x coordinates of the second path
+     * @param bys y coordinates of the second path
+     * @param n   number of points
+     * @return sum of the point distances
+     */
+    double distanceSum(double[] axs, double[] ays, double[] bxs, double[] bys, int n);
+}
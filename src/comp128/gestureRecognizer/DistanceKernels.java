@@ -0,0 +1,100 @@
+package comp128.gestureRecognizer;
+
+/**
+ * Picks the DistanceKernel implementation. The SIMD kernel lives in a separate source set that is
+ * compiled against the incubating jdk.incubator.vector module, and is only loaded, by name, when
+ * the JVM was started with --add-modules jdk.incubator.vector. Otherwise, or when the system property
+ * gestureRecognizer.vector is set to false, the scalar kernel is used.
+ */
+final class DistanceKernels {
+
+    private static final String VECTOR_KERNEL = "comp128.gestureRecognizer.VectorDistanceKernel";
+
+    private static final DistanceKernel SCALAR = new ScalarDistanceKernel();
+    private static final DistanceKernel VECTOR = loadVector();
+
+    private DistanceKernels() {
+    }
+
+    private static DistanceKernel loadVector() {
+        if (!Boolean.parseBoolean(System.getProperty("gestureRecognizer.vector", "true"))) {
+            return null;
+        }
+        try {
+            return (DistanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not on the class path, or the jdk.incubator.vector module is not loaded
+            return null;
+        }
+    }
+
+    /**
+     * @return the plain scalar kernel
+     */
+    static DistanceKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return the SIMD kernel, or null if it is not available
+     */
+    static DistanceKernel vector() {
+        return VECTOR;
+    }
+
+    /**
+     * @return the SIMD kernel when it is available, otherwise the scalar one
+     */
+    static DistanceKernel preferred() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    /**
+     * The scalar loops, which the SIMD kernel has to agree with
+     */
+    static final class ScalarDistanceKernel implements DistanceKernel {
+
+        @Override
+        public double rotatedDistanceSum(double[] xs, double[] ys, double cx, double cy, double[] txs,
+                double[] tys, int n, double cos, double sin, double sumLimit) {
+            double distance = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = xs[i] - cx;
+                double dy = ys[i] - cy;
+                double rx = dx * cos - dy * sin + cx - txs[i];
+                double ry = dx * sin + dy * cos + cy - tys[i];
+                distance += Math.sqrt(rx * rx + ry * ry);
+                if (distance > sumLimit) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            }
+            return distance;
+        }
+
+        @Override
+        public double translatedDistanceSum(double[] xs, double[] ys, double ox, double oy, double[] txs,
+                double[] tys, int n, double sumLimit) {
+            double distance = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = xs[i] - ox - txs[i];
+                double dy = ys[i] - oy - tys[i];
+                distance += Math.sqrt(dx * dx + dy * dy);
+                if (distance > sumLimit) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            }
+            return distance;
+        }
+
+        @Override
+        public double distanceSum(double[] axs, double[] ays, double[] bxs, double[] bys, int n) {
+            double distance = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = axs[i] - bxs[i];
+                double dy = ays[i] - bys[i];
+                distance += Math.sqrt(dx * dx + dy * dy);
+            }
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline evaluation of recognizer settings on a labeled corpus, following the $1 paper's method.
+ *
+ * Each trial picks templatesPerClass random samples of every gesture class as templates and one
+ * more sample of each class to recognize:
+ * <ul>
+ *     <li>user dependent: templates and test samples come from the same user, as when everyone
+ *     trains the recognizer on their own drawing</li>
+ *     <li>user independent: the test samples come from one user and the templates from everyone
+ *     else, as when a recognizer ships with built in templates</li>
+ * </ul>
+ * Trials run in parallel on all cores. Every configuration sees exactly the same trials, so their
+ * accuracies can be compared directly. Each report has the accuracy with a 95% confidence interval,
+ * a confusion matrix and the latency of each recognition. Latencies are measured while the other
+ * trials run on the other cores, so use one thread when the absolute numbers matter.
+ *
+ * <pre>
+ * Evaluation corpus-folder [--points 32,64,128] [--angles 45] [--matchers dollar,protractor,pointcloud]
+ *            [--templates 1] [--trials 10] [--threads N] [--seed 1] [--compact 0,2] [--confusion]
+ * </pre>
+ *
+ * With --compact, the $1 and Protractor configurations are also run with each trial's templates
+ * compacted down to that many per class by TemplateCompactor (0 means not compacted), which shows
+ * what compacting a library costs in accuracy and saves in latency.
+ *
+ * The matchers dollar-float and dollar-int16 are $1 with the templates packed into a
+ * PackedTemplateLibrary, to compare their accuracy with the double precision dollar.
+ *
+ * The corpus is a folder of xml gesture files, with one subfolder per user (folders further down
+ * are fine). A gesture's class is its Name attribute without trailing digits, so arrow01 and
+ * arrow02 are both arrow.
+ */
+public class Evaluation {
+
+    /**
+     * How templates and test samples are split between users
+     */
+    public enum Mode {
+        USER_DEPENDENT("user dependent"),
+        USER_INDEPENDENT("user independent");
+
+        private final String description;
+
+        Mode(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * A labeled gesture from the corpus
+     */
+    public static final class Sample {
+        private final String label;
+        private final String user;
+        private final Deque<Point> points;
+
+        public Sample(String label, String user, Deque<Point> points) {
+            this.label = label;
+            this.user = user;
+            this.points = points;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public Deque<Point> getPoints() {
+            return points;
+        }
+    }
+
+    /**
+     * A named way of creating the engine to evaluate
+     */
+    public static final class Configuration {
+        private final String name;
+        private final Supplier<GestureMatcher> factory;
+        private final Consumer<GestureMatcher> trained;
+
+        public Configuration(String name, Supplier<GestureMatcher> factory) {
+            this(name, factory, matcher -> { });
+        }
+
+        /**
+         * @param trained called with the matcher once a trial's templates are added, before any test
+         *                sample is recognized
+         */
+        public Configuration(String name, Supplier<GestureMatcher> factory, Consumer<GestureMatcher> trained) {
+            this.name = name;
+            this.factory = factory;
+            this.trained = trained;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final List<Sample> samples;
+    private final List<String> labels;
+    private final int templatesPerClass;
+    private final int trials;
+    private final long seed;
+    private final int threads;
+
+    /**
+     * @param samples           the labeled corpus
+     * @param templatesPerClass templates of each class per trial
+     * @param trials            trials per user and mode
+     * @param threads           number of trials run at once
+     * @param seed              seed for picking templates and test samples
+     */
+    public Evaluation(List<Sample> samples, int templatesPerClass, int trials, int threads, long seed) {
+        if (templatesPerClass < 1 || trials < 1 || threads < 1) {
+            throw new IllegalArgumentException("Templates per class, trials and threads must all be at least 1");
+        }
+        this.samples = samples;
+        this.labels = new ArrayList<>(new TreeSet<>(samples.stream().map(Sample::getLabel).collect(Collectors.toList())));
+        this.templatesPerClass = templatesPerClass;
+        this.trials = trials;
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Evaluates every configuration in both modes
+     *
+     * @return one report per configuration and mode; user independent reports are left out when
+     *         the corpus has only one user
+     */
+    public List<Report> run(List<Configuration> configurations) {
+        List<Report> reports = new ArrayList<>();
+        for (Configuration configuration : configurations) {
+            for (Mode mode : Mode.values()) {
+                Report report = evaluate(configuration, mode);
+                if (report.getTotal() > 0) {
+                    reports.add(report);
+                }
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Runs every trial of one configuration in one mode, on a pool of its own that is shut down
+     * before returning
+     */
+    Report evaluate(Configuration configuration, Mode mode) {
+        Map<String, List<Sample>> byUser = samples.stream()
+                .collect(Collectors.groupingBy(Sample::getUser, LinkedHashMap::new, Collectors.toList()));
+        List<Trial> planned = new ArrayList<>();
+        for (String user : new TreeSet<>(byUser.keySet())) {
+            if (mode == Mode.USER_INDEPENDENT && byUser.size() < 2) {
+                break;
+            }
+            for (int t = 0; t < trials; t++) {
+                planned.add(new Trial(user, t));
+            }
+        }
+
+        Report report = new Report(configuration.getName(), mode, labels);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<long[][]> confusions = pool.submit(() -> planned.parallelStream()
+                    .map(trial -> trial.run(configuration, mode, byUser, report.latency))
+                    .collect(Collectors.toList())).get();
+            for (long[][] confusion : confusions) {
+                report.add(confusion);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during evaluation", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Evaluation of " + configuration.getName() + " failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return report;
+    }
+
+    /**
+     * One random split of templates and test samples
+     */
+    private final class Trial {
+        final String user;
+        final int number;
+
+        Trial(String user, int number) {
+            this.user = user;
+            this.number = number;
+        }
+
+        long[][] run(Configuration configuration, Mode mode, Map<String, List<Sample>> byUser,
+                LatencyHistogram latency) {
+            // The same trial picks the same samples for every configuration
+            Random random = new Random(Objects.hash(seed, user, number, mode.ordinal()));
+            Map<String, List<Sample>> testPool = byLabel(byUser.get(user));
+            Map<String, List<Sample>> templatePool = testPool;
+            if (mode == Mode.USER_INDEPENDENT) {
+                List<Sample> others = new ArrayList<>();
+                byUser.forEach((other, otherSamples) -> {
+                    if (!other.equals(user)) {
+                        others.addAll(otherSamples);
+                    }
+                });
+                templatePool = byLabel(others);
+            }
+
+            GestureMatcher matcher = configuration.factory.get();
+            List<Sample> tests = new ArrayList<>();
+            for (String label : labels) {
+                List<Sample> candidates = new ArrayList<>(testPool.getOrDefault(label, Collections.emptyList()));
+                Collections.shuffle(candidates, random);
+                List<Sample> templates;
+                if (mode == Mode.USER_DEPENDENT) {
+                    // Needs the templates plus one more to test with
+                    if (candidates.size() <= templatesPerClass) {
+                        continue;
+                    }
+                    templates = candidates.subList(1, templatesPerClass + 1);
+                } else {
+                    templates = new ArrayList<>(templatePool.getOrDefault(label, Collections.emptyList()));
+                    Collections.shuffle(templates, random);
+                    templates = templates.subList(0, Math.min(templatesPerClass, templates.size()));
+                    if (candidates.isEmpty() || templates.isEmpty()) {
+                        continue;
+                    }
+                }
+                tests.add(candidates.get(0));
+                for (Sample template : templates) {
+                    matcher.addTemplate(template.label, template.points);
+                }
+            }
+
+            configuration.trained.accept(matcher);
+
+            long[][] confusion = new long[labels.size()][labels.size()];
+            for (Sample test : tests) {
+                long start = System.nanoTime();
+                RecognitionResult result = matcher.classify(test.points);
+                latency.record(System.nanoTime() - start);
+                int actual = Collections.binarySearch(labels, test.label);
+                int recognized = Collections.binarySearch(labels, result.getName());
+                confusion[actual][recognized]++;
+            }
+            return confusion;
+        }
+    }
+
+    private static Map<String, List<Sample>> byLabel(List<Sample> samples) {
+        Map<String, List<Sample>> byLabel = new HashMap<>();
+        for (Sample sample : samples) {
+            byLabel.computeIfAbsent(sample.label, label -> new ArrayList<>()).add(sample);
+        }
+        return byLabel;
+    }
+
+    /**
+     * Accuracy, confusion matrix and latency of one configuration in one mode
+     */
+    public static final class Report {
+        private final String configuration;
+        private final Mode mode;
+        private final List<String> labels;
+        private final long[][] confusion;
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Report(String configuration, Mode mode, List<String> labels) {
+            this.configuration = configuration;
+            this.mode = mode;
+            this.labels = labels;
+            this.confusion = new long[labels.size()][labels.size()];
+        }
+
+        void add(long[][] trial) {
+            for (int i = 0; i < confusion.length; i++) {
+                for (int j = 0; j < confusion.length; j++) {
+                    confusion[i][j] += trial[i][j];
+                }
+            }
+        }
+
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public List<String> getLabels() {
+            return labels;
+        }
+
+        /**
+         * @return counts indexed by actual class, then recognized class, in the order of getLabels
+         */
+        public long[][] getConfusion() {
+            return confusion;
+        }
+
+        /**
+         * @return latency of each recognition
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCorrect() {
+            long correct = 0;
+            for (int i = 0; i < confusion.length; i++) {
+                correct += confusion[i][i];
+            }
+            return correct;
+        }
+
+        public long getTotal() {
+            long total = 0;
+            for (long[] row : confusion) {
+                for (long count : row) {
+                    total += count;
+                }
+            }
+            return total;
+        }
+
+        public double getAccuracy() {
+            return getTotal() == 0 ? 0 : (double) getCorrect() / getTotal();
+        }
+
+        /**
+         * @return lower and upper end of the 95% Wilson score interval for the accuracy
+         */
+        public double[] getConfidenceInterval() {
+            double n = getTotal();
+            if (n == 0) {
+                return new double[] {0, 1};
+            }
+            double z = 1.959964;
+            double p = getAccuracy();
+            double center = (p + z * z / (2 * n)) / (1 + z * z / n);
+            double halfWidth = z * Math.sqrt(p * (1 - p) / n + z * z / (4 * n * n)) / (1 + z * z / n);
+            return new double[] {Math.max(0, center - halfWidth), Math.min(1, center + halfWidth)};
+        }
+
+        /**
+         * @return the confusion matrix as a table, actual classes down the side
+         */
+        public String confusionTable() {
+            int width = 5;
+            for (String label : labels) {
+                width = Math.max(width, label.length() + 1);
+            }
+            StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%" + width + "s", ""));
+            for (String label : labels) {
+                table.append(String.format(Locale.ROOT, "%" + width + "s", label));
+            }
+            table.append('\n');
+            for (int i = 0; i < labels.size(); i++) {
+                table.append(String.format(Locale.ROOT, "%" + width + "s", labels.get(i)));
+                for (long count : confusion[i]) {
+                    table.append(String.format(Locale.ROOT, "%" + width + "d", count));
+                }
+                table.append('\n');
+            }
+            return table.toString();
+        }
+
+        @Override
+        public String toString() {
+            double[] interval = getConfidenceInterval();
+            return String.format(Locale.ROOT,
+                    "%-28s %-16s accuracy %6.2f%% (95%% CI %.2f-%.2f%%, %d tests)  latency p50 %.0f us, p90 %.0f us,"
+                            + " p99 %.0f us",
+                    configuration, mode, 100 * getAccuracy(), 100 * interval[0], 100 * interval[1], getTotal(),
+                    latency.getP50Micros(), latency.getP90Micros(), latency.getP99Micros());
+        }
+    }
+
+    /**
+     * Loads a corpus. Each file's user is the first folder under root it is in; files directly in
+     * root all belong to one user.
+     *
+     * @param root corpus folder
+     * @return the samples, or null if the folder could not be read
+     */
+    public static List<Sample> loadCorpus(Path root) {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(file -> Files.isRegularFile(file)
+                    && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            System.out.println("ERROR reading gesture corpus:");
+            System.out.println(e.getMessage());
+            return null;
+        }
+        IOManager ioManager = new IOManager();
+        return files.parallelStream()
+                .map(file -> {
+                    NamedGesture gesture = ioManager.loadNamedGesture(file);
+                    if (gesture == null || gesture.getPath().size() < 2) {
+                        return null;
+                    }
+                    Path relative = root.relativize(file);
+                    String user = relative.getNameCount() > 1 ? relative.getName(0).toString() : "";
+                    return new Sample(label(gesture.getName()), user, gesture.getPath().toPoints());
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the gesture name without trailing digits, so arrow01 becomes arrow
+     */
+    static String label(String name) {
+        String label = name.replaceFirst("[0-9]+$", "");
+        return label.isEmpty() ? name : label;
+    }
+
+    /**
+     * @return every combination of the settings; point cloud matching has fixed settings of its
+     *         own, so it appears once
+     */
+    static List<Configuration> configurations(int[] points, double[] angles, String[] matchers) {
+        return configurations(points, angles, matchers, new int[] {0});
+    }
+
+    /**
+     * @param compact templates per class to compact each $1 and Protractor configuration down to, 0
+     *                for a configuration without compaction
+     * @return every combination of the settings
+     */
+    static List<Configuration> configurations(int[] points, double[] angles, String[] matchers, int[] compact) {
+        List<Configuration> configurations = new ArrayList<>();
+        for (String matcher : matchers) {
+            switch (matcher) {
+                case "pointcloud":
+                    configurations.add(new Configuration("pointcloud", PointCloudMatcher::new));
+                    break;
+                case "dollar":
+                case "protractor":
+                    for (int n : points) {
+                        for (double angle : angles) {
+                            Supplier<GestureMatcher> factory = () -> {
+                                Recognizer recognizer = new Recognizer(n);
+                                recognizer.setAngleRange(angle);
+                                if (matcher.equals("protractor")) {
+                                    recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+                                }
+                                recognizer.getMetrics().setEnabled(false);
+                                return recognizer;
+                            };
+                            String name = String.format(Locale.ROOT, "%s n=%d angle=%.0f", matcher, n, angle);
+                            for (int perClass : compact) {
+                                if (perClass == 0) {
+                                    configurations.add(new Configuration(name, factory));
+                                } else {
+                                    TemplateCompactor compactor = new TemplateCompactor(perClass, 0);
+                                    configurations.add(new Configuration(name + " compact=" + perClass, factory,
+                                            trained -> compactor.compact((Recognizer) trained)));
+                                }
+                            }
+                        }
+                    }
+                    break;
+                case "dollar-float":
+                case "dollar-int16":
+                    PackedTemplateLibrary.Precision precision = matcher.equals("dollar-float")
+                            ? PackedTemplateLibrary.Precision.FLOAT : PackedTemplateLibrary.Precision.INT16;
+                    for (int n : points) {
+                        for (double angle : angles) {
+                            Supplier<GestureMatcher> factory = () -> {
+                                Recognizer normalizer = new Recognizer(n);
+                                normalizer.setAngleRange(angle);
+                                normalizer.getMetrics().setEnabled(false);
+                                return new PackedTemplateLibrary(precision, normalizer);
+                            };
+                            configurations.add(new Configuration(
+                                    String.format(Locale.ROOT, "%s n=%d angle=%.0f", matcher, n, angle), factory));
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown matcher " + matcher
+                            + "; use dollar, dollar-float, dollar-int16, protractor or pointcloud");
+            }
+        }
+        return configurations;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Evaluation corpus-folder [--points 32,64,128] [--angles 45]"
+                    + " [--matchers dollar,protractor,pointcloud] [--templates 1] [--trials 10] [--threads N]"
+                    + " [--seed 1] [--compact 0,2] [--confusion]");
+            return;
+        }
+        int[] points = {64};
+        double[] angles = {45};
+        String[] matchers = {"dollar", "protractor", "pointcloud"};
+        int[] compact = {0};
+        int templates = 1;
+        int trials = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        boolean confusion = false;
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--confusion")) {
+                confusion = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                System.out.println("ERROR " + option + " needs a value");
+                return;
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--points":
+                    points = Stream.of(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--angles":
+                    angles = Stream.of(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                case "--matchers":
+                    matchers = value.split(",");
+                    break;
+                case "--compact":
+                    compact = Stream.of(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--templates":
+                    templates = Integer.parseInt(value);
+                    break;
+                case "--trials":
+                    trials = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    System.out.println("ERROR unknown option " + option);
+                    return;
+            }
+        }
+
+        List<Sample> samples = loadCorpus(Paths.get(args[0]));
+        if (samples == null || samples.isEmpty()) {
+            System.out.println("ERROR no gestures found in " + args[0]);
+            return;
+        }
+        long users = samples.stream().map(Sample::getUser).distinct().count();
+        System.out.println("Loaded " + samples.size() + " gestures by " + users + " users");
+        Evaluation evaluation = new Evaluation(samples, templates, trials, threads, seed);
+        for (Report report : evaluation.run(configurations(points, angles, matchers, compact))) {
+            System.out.println(report);
+            if (confusion) {
+                System.out.println(report.confusionTable());
+            }
+        }
+    }
+}
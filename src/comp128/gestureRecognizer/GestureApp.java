@@ -1,13 +1,14 @@
 package comp128.gestureRecognizer;
 
 import edu.macalester.graphics.*;
-import edu.macalester.graphics.Line;
 import edu.macalester.graphics.ui.Button;
 import edu.macalester.graphics.ui.TextField;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.EventObject;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import javax.swing.plaf.synth.SynthSpinnerUI;
@@ -30,13 +31,25 @@ public class GestureApp {
     private TextField templateNameField;
     private GraphicsText matchLabel;
     private Deque<Point> path;
+    private RecognitionSession session;
+    private GraphicsGroup inkGroup;
+    private StrokeRenderer strokeRenderer;
+    private ExecutorService provisionalExecutor;
+    private Template shownProvisional;
 
 
     public GestureApp(){
         canvas = new CanvasWindow("Gesture Recognizer", 600, 600);
         recognizer = new Recognizer();
         path = new ArrayDeque<>();
+        session = recognizer.startSession();
         ioManager = new IOManager();
+        // Provisional matches are recognized off the UI thread so large libraries do not stall drawing
+        provisionalExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "provisional-recognition");
+            thread.setDaemon(true);
+            return thread;
+        });
         setupUI();
     }
 
@@ -64,31 +77,61 @@ public class GestureApp {
         uiGroup.add(addTemplateButton, templateNameField.getPosition().getX() + fieldWidthWithMargin, 0);
         canvas.add(uiGroup, 0, canvas.getHeight() - uiGroup.getHeight());
 
+        // The stroke is drawn into its own layer and only updated once per frame
+        inkGroup = new GraphicsGroup();
+        canvas.add(inkGroup);
+        strokeRenderer = new StrokeRenderer(inkGroup, StrokeRenderer.DEFAULT_MIN_DISTANCE);
+        canvas.animate(() -> {
+            strokeRenderer.flush();
+            showProvisionalMatch();
+        });
+
         Consumer<Character> handleKeyCommand = ch -> keyTyped(ch);
         canvas.onCharacterTyped(handleKeyCommand);
 
-        canvas.onMouseDown(Event -> removeAllNonUIGraphicsObjects());
+        canvas.onMouseDown(Event -> {
+            removeAllNonUIGraphicsObjects();
+            Point firstPoint = Event.getPosition();
+            path.clear();
+            path.add(firstPoint);
+            session = recognizer.startSession();
+            session.setProvisionalExecutor(provisionalExecutor);
+            session.addPoint(firstPoint);
+            strokeRenderer.begin(firstPoint);
+        });
         canvas.onDrag((Event-> {
-            Point previousPoint = Event.getPreviousPosition();
             Point newPoint = Event.getPosition();
 
-            path.add(newPoint); // Why are we doing this? lolz
-
-            double preX = previousPoint.getX();
-            double newX = newPoint.getX();
-            double preY = previousPoint.getY();
-            double newY = newPoint.getY();
-
-            canvas.add(new Line(preX,preY,newX,newY));
+            path.add(newPoint); // Keep the stroke so it can be saved or added as a template
+            session.addPoint(newPoint);
+            strokeRenderer.add(newPoint);
         }));
         canvas.onMouseUp((e)->{
+            strokeRenderer.flush();
             if(path.size()!=0){
-                Template temp = recognizer.recognize(path);
-                matchLabel.setText("Match: " + temp.getName() + " " + temp.getScore());
+                Template temp = session.finish();
+                if (temp != null) {
+                    matchLabel.setText("Match: " + temp.getName() + " " + temp.getScore());
+                }
             }
         });
 }
 
+    /**
+     * Shows the latest provisional match of the stroke being drawn, if it has not been shown yet.
+     * Called once per frame on the UI thread.
+     */
+    private void showProvisionalMatch() {
+        if (session.isFinished()) {
+            return;
+        }
+        Template temp = session.getProvisionalMatch();
+        if (temp != null && temp != shownProvisional) {
+            shownProvisional = temp;
+            matchLabel.setText("Match: " + temp.getName() + " " + temp.getScore() + " ...");
+        }
+    }
+
     /**
      * Clears the canvas, but preserves all the UI objects
      */
@@ -96,6 +139,8 @@ public class GestureApp {
         canvas.removeAll();
         canvas.add(matchLabel);
         canvas.add(uiGroup);
+        strokeRenderer.clear();
+        canvas.add(inkGroup);
     }
 
     /**
@@ -112,7 +157,8 @@ public class GestureApp {
     }
 
     /**
-     * Handles keyboard commands used to save and load gestures for debugging and to write tests.
+     * Handles keyboard commands used to save and load gestures for debugging and to write tests, and
+     * C to compact the templates when many samples of the same gestures have been added.
      * Note, once you type in the templateNameField, you need to call canvas.requestFocus() in order to get
      * keyboard events. This is best done in the mouseDown callback on the canvas.
      */
@@ -128,6 +174,11 @@ public class GestureApp {
                 System.out.println("Loaded "+name);
             }
         }
+        else if (ch.equals('C')){
+            // Keep at most three templates per name, fewer when they all look alike
+            TemplateCompactor.Report report = new TemplateCompactor(3, 5).compact(recognizer);
+            System.out.println(report);
+        }
         else if (ch.equals('s')){
             String name = templateNameField.getText();
             if (name.isEmpty()){
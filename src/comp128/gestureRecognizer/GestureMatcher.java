@@ -0,0 +1,106 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A recognition engine: something that stores named templates and finds the ones closest to a
+ * drawn gesture. Recognizer is the $1 unistroke engine, which is fast and rotation invariant but
+ * sensitive to stroke direction and limited to one stroke. PointCloudMatcher compares gestures as
+ * unordered clouds of points, so it handles multistroke gestures and strokes drawn in either
+ * direction.
+ *
+ * Engines are interchangeable wherever only these methods are used. Each one normalizes and stores
+ * templates in its own form, so templates have to be added to the engine that will match them.
+ */
+public interface GestureMatcher {
+
+    /**
+     * Adds a single stroke template
+     *
+     * @param name   template name
+     * @param points the stroke's points
+     * @return the stored template
+     */
+    Template addTemplate(String name, Deque<Point> points);
+
+    /**
+     * Adds a template drawn with several strokes. Engines that only understand single strokes,
+     * like $1, join the strokes end to end in the order given.
+     *
+     * @param name    template name
+     * @param strokes the strokes, in drawing order
+     * @return the stored template
+     */
+    default Template addTemplate(String name, List<Deque<Point>> strokes) {
+        return addTemplate(name, joinStrokes(strokes));
+    }
+
+    /**
+     * Removes every template with the given name
+     *
+     * @param name template name
+     * @return number of templates removed
+     */
+    int removeTemplates(String name);
+
+    /**
+     * @return the stored templates, in the order they were added
+     */
+    List<Template> getTempList();
+
+    /**
+     * Recognizes a single stroke gesture
+     *
+     * @param input the stroke's points
+     * @return the closest template, or null if there are no templates
+     */
+    RecognitionResult classify(Deque<Point> input);
+
+    /**
+     * Recognizes a gesture drawn with several strokes
+     *
+     * @param strokes the strokes, in drawing order
+     * @return the closest template, or null if there are no templates
+     */
+    default RecognitionResult classify(List<Deque<Point>> strokes) {
+        return classify(joinStrokes(strokes));
+    }
+
+    /**
+     * Finds the k closest templates to a single stroke gesture
+     *
+     * @param input the stroke's points
+     * @param k     number of templates wanted, at least 1
+     * @return up to k matches, closest first
+     */
+    List<RecognitionResult> recognizeTopK(Deque<Point> input, int k);
+
+    /**
+     * Finds the k closest templates to a gesture drawn with several strokes
+     *
+     * @param strokes the strokes, in drawing order
+     * @param k       number of templates wanted, at least 1
+     * @return up to k matches, closest first
+     */
+    default List<RecognitionResult> recognizeTopK(List<Deque<Point>> strokes, int k) {
+        return recognizeTopK(joinStrokes(strokes), k);
+    }
+
+    /**
+     * Joins strokes end to end into one
+     *
+     * @param strokes strokes in drawing order
+     * @return all of their points in one deque
+     */
+    static Deque<Point> joinStrokes(List<Deque<Point>> strokes) {
+        Deque<Point> joined = new ArrayDeque<>();
+        for (Deque<Point> stroke : strokes) {
+            joined.addAll(stroke);
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,278 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A gesture path stored as parallel arrays of x and y coordinates. The recognizer pipeline works on
+ * these directly so that normalizing and matching a gesture does not create a Point object per
+ * vertex. Paths are mutable and can be reused: the normalization steps in Recognizer update them in
+ * place, and the arrays grow as needed when more points are added. readOnly() gives a view for
+ * paths that must not change, such as those of templates.
+ */
+public class GesturePath {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private double[] xs;
+    private double[] ys;
+    private int size;
+
+    /**
+     * Constructs an empty path with room for the default number of resampled points
+     */
+    public GesturePath() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty path
+     *
+     * @param capacity number of points that fit before the arrays have to grow
+     */
+    public GesturePath(int capacity) {
+        xs = new double[Math.max(capacity, 1)];
+        ys = new double[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Constructs a path from coordinate arrays. The arrays are used directly, not copied.
+     *
+     * @param xs   x coordinates
+     * @param ys   y coordinates
+     * @param size number of points in use
+     */
+    public GesturePath(double[] xs, double[] ys, int size) {
+        if (xs.length < size || ys.length < size) {
+            throw new IllegalArgumentException("Coordinate arrays are shorter than the path size");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    /**
+     * Copies a deque of points into a new path
+     *
+     * @param points gesture points
+     * @return path holding the same points
+     */
+    public static GesturePath fromPoints(Deque<Point> points) {
+        GesturePath path = new GesturePath(points.size());
+        path.setPoints(points);
+        return path;
+    }
+
+    /**
+     * Replaces the contents of this path with the given points, reusing the arrays when they are big
+     * enough
+     *
+     * @param points gesture points
+     */
+    public void setPoints(Deque<Point> points) {
+        size = 0;
+        ensureCapacity(points.size());
+        for (Point point : points) {
+            xs[size] = point.getX();
+            ys[size] = point.getY();
+            size++;
+        }
+    }
+
+    /**
+     * Replaces the contents of this path with a copy of another path
+     *
+     * @param other path to copy
+     */
+    public void setPoints(GesturePath other) {
+        size = 0;
+        ensureCapacity(other.size);
+        System.arraycopy(other.xs, 0, xs, 0, other.size);
+        System.arraycopy(other.ys, 0, ys, 0, other.size);
+        size = other.size;
+    }
+
+    /**
+     * Converts this path back to a deque of points
+     *
+     * @return new deque of points
+     */
+    public Deque<Point> toPoints() {
+        Deque<Point> points = new ArrayDeque<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new Point(xs[i], ys[i]));
+        }
+        return points;
+    }
+
+    /**
+     * @return an independent copy of this path
+     */
+    public GesturePath copy() {
+        return new GesturePath(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size), size);
+    }
+
+    /**
+     * Returns a view of this path that throws UnsupportedOperationException when it is changed. The
+     * view shares the arrays instead of copying them, so it is meant for paths that are no longer
+     * changed through any other reference either.
+     *
+     * @return read only view of this path, or this path if it already is one
+     */
+    public GesturePath readOnly() {
+        return this instanceof ReadOnly ? this : new ReadOnly(this);
+    }
+
+    /**
+     * Appends a point to the end of the path
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    public void add(double x, double y) {
+        ensureCapacity(size + 1);
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Overwrites an existing point
+     *
+     * @param index point index
+     * @param x     x coordinate
+     * @param y     y coordinate
+     */
+    public void set(int index, double x, double y) {
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    /**
+     * Removes all points but keeps the arrays for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Keeps only the first points of the path
+     *
+     * @param size number of points to keep, at most size()
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Cannot truncate a path of " + this.size + " points to " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Makes sure the arrays can hold at least the given number of points without losing the current
+     * ones
+     *
+     * @param capacity required number of points
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            int newCapacity = Math.max(capacity, xs.length * 2);
+            xs = Arrays.copyOf(xs, newCapacity);
+            ys = Arrays.copyOf(ys, newCapacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Returns the backing x array. Only the first size() entries are part of the path.
+     */
+    double[] xs() {
+        return xs;
+    }
+
+    /**
+     * Returns the backing y array. Only the first size() entries are part of the path.
+     */
+    double[] ys() {
+        return ys;
+    }
+
+    /**
+     * A path that refuses every change
+     */
+    private static final class ReadOnly extends GesturePath {
+
+        ReadOnly(GesturePath path) {
+            super(path.xs, path.ys, path.size);
+        }
+
+        @Override
+        public void setPoints(Deque<Point> points) {
+            throw unsupported();
+        }
+
+        @Override
+        public void setPoints(GesturePath other) {
+            throw unsupported();
+        }
+
+        @Override
+        public void add(double x, double y) {
+            throw unsupported();
+        }
+
+        @Override
+        public void set(int index, double x, double y) {
+            throw unsupported();
+        }
+
+        @Override
+        public void clear() {
+            throw unsupported();
+        }
+
+        @Override
+        public void truncate(int size) {
+            throw unsupported();
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            throw unsupported();
+        }
+
+        private static UnsupportedOperationException unsupported() {
+            return new UnsupportedOperationException("This path is read only");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append('(').append(xs[i]).append(", ").append(ys[i]).append(')');
+        }
+        return builder.append(']').toString();
+    }
+}
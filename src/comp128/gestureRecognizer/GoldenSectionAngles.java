@@ -0,0 +1,86 @@
+package comp128.gestureRecognizer;
+
+/**
+ * The cosines and sines of every angle the golden section search can try. The search always starts
+ * from the same bracket and each step only depends on which of its two probes was closer, so the
+ * angles it tries form a fixed binary tree: node 1 holds the starting probes' step, and the step
+ * after node k is 2k when the left probe was closer and 2k + 1 otherwise. Each node records the new
+ * probe angle along with its cosine and sine, worked out with exactly the same arithmetic as the
+ * search, so looking them up gives the same values as calling Math.cos and Math.sin.
+ */
+final class GoldenSectionAngles {
+
+    static final double RANGE = Math.toRadians(45);
+    static final double TOLERANCE = Math.toRadians(2);
+    static final double PHI = 0.5 * (-1.0 + Math.sqrt(5.0));
+
+    /**
+     * The two starting probes
+     */
+    static final double FIRST = PHI * -RANGE + (1 - PHI) * RANGE;
+    static final double SECOND = (1 - PHI) * -RANGE + PHI * RANGE;
+    static final double FIRST_COS = Math.cos(FIRST);
+    static final double FIRST_SIN = Math.sin(FIRST);
+    static final double SECOND_COS = Math.cos(SECOND);
+    static final double SECOND_SIN = Math.sin(SECOND);
+
+    /**
+     * Depth of the tree; the search narrows 90 degrees down to 2 in 8 steps, so 10 leaves room
+     */
+    private static final int DEPTH = 10;
+
+    private static final double[] ANGLES = new double[1 << DEPTH];
+    private static final double[] COS = new double[1 << DEPTH];
+    private static final double[] SIN = new double[1 << DEPTH];
+
+    static {
+        fill(1, -RANGE, RANGE, FIRST, SECOND);
+    }
+
+    private GoldenSectionAngles() {
+    }
+
+    private static void fill(int node, double thetaA, double thetaB, double x1, double x2) {
+        if (2 * node + 1 >= ANGLES.length || !(Math.abs(thetaB - thetaA) > TOLERANCE)) {
+            return;
+        }
+        // Left probe closer: the bracket becomes [thetaA, x2] and a new left probe is added
+        double left = PHI * thetaA + (1 - PHI) * x2;
+        set(2 * node, left);
+        fill(2 * node, thetaA, x2, left, x1);
+        // Right probe closer: the bracket becomes [x1, thetaB] and a new right probe is added
+        double right = (1 - PHI) * x1 + PHI * thetaB;
+        set(2 * node + 1, right);
+        fill(2 * node + 1, x1, thetaB, x2, right);
+    }
+
+    private static void set(int node, double angle) {
+        ANGLES[node] = angle;
+        COS[node] = Math.cos(angle);
+        SIN[node] = Math.sin(angle);
+    }
+
+    /**
+     * @param node tree node
+     * @return whether the node's cosine and sine are in the table
+     */
+    static boolean contains(int node) {
+        return node < ANGLES.length;
+    }
+
+    /**
+     * @param node tree node
+     * @return the probe angle tried at that node
+     */
+    static double angle(int node) {
+        return ANGLES[node];
+    }
+
+    static double cos(int node) {
+        return COS[node];
+    }
+
+    static double sin(int node) {
+        return SIN[node];
+    }
+}
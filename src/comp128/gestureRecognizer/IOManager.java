@@ -6,15 +6,32 @@ import org.w3c.dom.*;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 
 /**
@@ -23,7 +40,12 @@ import java.util.Deque;
  */
 public class IOManager {
 
+    private final XMLInputFactory inputFactory;
+
     public IOManager(){
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
     }
 
     /**
@@ -32,28 +54,27 @@ public class IOManager {
      * @return Queue of points contained in the gesture
      */
     public Deque<Point> loadGesture(String fileName){
-        try {
-            String path = getClass().getClassLoader().getResource(fileName).getPath();
-            path = path.replace("%20", " ");
-            File file = new File(path);
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setIgnoringComments(true);
-            documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-            documentBuilderFactory.setValidating(false);
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse(file);
-
-            NodeList tags = document.getElementsByTagName("Point");
-
-            Deque<Point> gesture = new ArrayDeque<>();
-
-            for(int i = 0; i < tags.getLength(); i++){
-                Node node = tags.item(i);
-                NamedNodeMap attributes = node.getAttributes();
-                Point point = new Point(Double.parseDouble(attributes.getNamedItem("X").getNodeValue()), Double.parseDouble(attributes.getNamedItem("Y").getNodeValue()));
-                gesture.add(point);
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(fileName)) {
+            if (input == null){
+                throw new FileNotFoundException(fileName + " is not in the res folder");
             }
-            return gesture;
+            return readGestureXml(input, fileName).getPath().toPoints();
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading gesture file:");
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads a gesture and its name from an xml file anywhere on disk
+     * @param file The xml file
+     * @return The gesture, named after the file's Name attribute
+     */
+    public NamedGesture loadNamedGesture(Path file){
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            return readGestureXml(input, file.getFileName().toString());
         }
         catch (Exception e){
             System.out.println("ERROR reading gesture file:");
@@ -62,6 +83,142 @@ public class IOManager {
         }
     }
 
+    /**
+     * Loads every xml gesture file in a folder and its subfolders. Files are parsed in parallel;
+     * files that cannot be read are reported and skipped.
+     * @param directory The folder to load
+     * @return The gestures, sorted by file path, or null if the folder could not be listed
+     */
+    public List<NamedGesture> loadGestureDirectory(Path directory){
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> xmlFiles = files
+                .filter(file -> Files.isRegularFile(file) && isXmlFile(file.toString()))
+                .sorted()
+                .collect(Collectors.toList());
+            return xmlFiles.parallelStream()
+                .map(this::loadNamedGesture)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading gesture folder:");
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads every xml gesture file in a zip archive. Entries are parsed in parallel; entries that
+     * cannot be read are reported and skipped.
+     * @param archive The zip file to load
+     * @return The gestures, in archive order, or null if the archive could not be opened
+     */
+    public List<NamedGesture> loadGestureArchive(Path archive){
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            List<? extends ZipEntry> entries = zipFile.stream()
+                .filter(entry -> !entry.isDirectory() && isXmlFile(entry.getName()))
+                .collect(Collectors.toList());
+            return entries.parallelStream()
+                .map(entry -> loadArchiveEntry(zipFile, entry))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading gesture archive:");
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private NamedGesture loadArchiveEntry(ZipFile zipFile, ZipEntry entry){
+        try (InputStream input = new BufferedInputStream(zipFile.getInputStream(entry))) {
+            String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            return readGestureXml(input, fileName);
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading gesture file " + entry.getName() + ":");
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads every gesture in a folder or zip archive of xml gesture files and adds them all to a
+     * recognizer as templates. Both the parsing and the template normalization run in parallel.
+     * Files that cannot be read, and gestures with fewer than two points, are reported and skipped.
+     * @param source A folder, or a file ending in .zip
+     * @param recognizer The recognizer to add the templates to
+     * @return The number of templates added
+     */
+    public int importTemplates(Path source, Recognizer recognizer){
+        List<NamedGesture> gestures;
+        if (Files.isDirectory(source)){
+            gestures = loadGestureDirectory(source);
+        }
+        else {
+            gestures = loadGestureArchive(source);
+        }
+        if (gestures == null){
+            return 0;
+        }
+        List<NamedGesture> usable = new ArrayList<>(gestures.size());
+        for (NamedGesture gesture : gestures){
+            if (gesture.getPath().size() < 2){
+                System.out.println("ERROR gesture " + gesture.getName() + " has fewer than two points; skipped");
+            }
+            else {
+                usable.add(gesture);
+            }
+        }
+        recognizer.addTemplates(usable);
+        return usable.size();
+    }
+
+    private static boolean isXmlFile(String fileName){
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".xml");
+    }
+
+    /**
+     * Reads a gesture with a streaming parser, picking the Name attribute of the Gesture element and
+     * the X and Y attributes of each Point element as they go by, without building a document.
+     * @param input The xml to read
+     * @param fileName Used as the name when the gesture has no Name attribute
+     */
+    private NamedGesture readGestureXml(InputStream input, String fileName) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+        try {
+            String name = null;
+            GesturePath gesture = new GesturePath(128);
+            while (reader.hasNext()){
+                if (reader.next() != XMLStreamConstants.START_ELEMENT){
+                    continue;
+                }
+                String tag = reader.getLocalName();
+                if (tag.equals("Point")){
+                    gesture.add(Double.parseDouble(requireAttribute(reader, "X")), Double.parseDouble(requireAttribute(reader, "Y")));
+                }
+                else if (tag.equals("Gesture") && name == null){
+                    name = reader.getAttributeValue(null, "Name");
+                }
+            }
+            if (name == null || name.isEmpty()){
+                name = fileName.replaceFirst("(?i)\\.xml$", "");
+            }
+            return new NamedGesture(name, gesture);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private static String requireAttribute(XMLStreamReader reader, String attribute) throws XMLStreamException {
+        String value = reader.getAttributeValue(null, attribute);
+        if (value == null){
+            throw new XMLStreamException("Point is missing its " + attribute + " attribute", reader.getLocation());
+        }
+        return value;
+    }
+
     /**
      * Saves a gesture to an xml file.
      * @param gesture Queue of gesture points
@@ -75,32 +232,117 @@ public class IOManager {
             String filePath =  path.getParent().resolve(fileName).toString();
             filePath = filePath.replace("%20", " ");
 
-            File file = new File(filePath);
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            documentBuilderFactory.setIgnoringComments(true);
-            documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-            documentBuilderFactory.setValidating(false);
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.newDocument();
-
-            Element gestureTag = document.createElement("Gesture");
-            gestureTag.setAttribute("Name", gestureName);
-            gestureTag.setAttribute("NumPts", Integer.toString(gesture.size()));
-            document.appendChild(gestureTag);
-
-            for(Point point : gesture){
-                Element pointTag = document.createElement("Point");
-                pointTag.setAttribute("X", Double.toString(point.getX()));
-                pointTag.setAttribute("Y", Double.toString(point.getY()));
-                gestureTag.appendChild(pointTag);
+            writeGestureXml(new NamedGesture(gestureName, GesturePath.fromPoints(gesture)), new File(filePath));
+            System.out.println("Saved file to "+filePath);
+        }
+        catch (Exception e){
+            System.out.println("ERROR saving gesture file:");
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void writeGestureXml(NamedGesture gesture, File file) throws Exception {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setIgnoringComments(true);
+        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+        documentBuilderFactory.setValidating(false);
+        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        Document document = documentBuilder.newDocument();
+
+        GesturePath points = gesture.getPath();
+        Element gestureTag = document.createElement("Gesture");
+        gestureTag.setAttribute("Name", gesture.getName());
+        gestureTag.setAttribute("NumPts", Integer.toString(points.size()));
+        document.appendChild(gestureTag);
+
+        for(int i = 0; i < points.size(); i++){
+            Element pointTag = document.createElement("Point");
+            pointTag.setAttribute("X", Double.toString(points.getX(i)));
+            pointTag.setAttribute("Y", Double.toString(points.getY(i)));
+            gestureTag.appendChild(pointTag);
+        }
+
+        TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        Transformer transformer = transformerFactory.newTransformer();
+        DOMSource source = new DOMSource(document);
+        StreamResult result = new StreamResult(file);
+        transformer.transform(source, result);
+    }
+
+    /**
+     * Loads every gesture in a binary gesture library. The file is memory mapped and the coordinates
+     * are copied straight into arrays, so there is no per point parsing.
+     * @param file The library file
+     * @return The gestures in the library, or null if it could not be read
+     */
+    public List<NamedGesture> loadGestureLibrary(Path file){
+        try {
+            return BinaryGestureFormat.read(file);
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading gesture library:");
+            System.out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves gestures to a binary gesture library, replacing the file if it exists
+     * @param gestures The gestures to save
+     * @param file The library file
+     * @param singlePrecision Store coordinates as floats instead of doubles, halving the file size
+     */
+    public void saveGestureLibrary(List<NamedGesture> gestures, Path file, boolean singlePrecision){
+        try {
+            BinaryGestureFormat.write(gestures, file, singlePrecision);
+            System.out.println("Saved "+gestures.size()+" gestures to "+file);
+        }
+        catch (Exception e){
+            System.out.println("ERROR saving gesture library:");
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Converts xml gesture files, such as arrowTemplate.xml, into one binary gesture library
+     * @param xmlFiles The xml files to convert
+     * @param libraryFile The library file to write
+     * @param singlePrecision Store coordinates as floats instead of doubles
+     */
+    public void convertXmlToLibrary(List<Path> xmlFiles, Path libraryFile, boolean singlePrecision){
+        List<NamedGesture> gestures = new ArrayList<>(xmlFiles.size());
+        for (Path xmlFile : xmlFiles){
+            NamedGesture gesture = loadNamedGesture(xmlFile);
+            if (gesture == null){
+                return;
             }
+            gestures.add(gesture);
+        }
+        saveGestureLibrary(gestures, libraryFile, singlePrecision);
+    }
 
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            DOMSource source = new DOMSource(document);
-            StreamResult result = new StreamResult(file);
-            transformer.transform(source, result);
-            System.out.println("Saved file to "+filePath);
+    /**
+     * Converts a binary gesture library back into one xml file per gesture. Files are named after
+     * the gestures; when several gestures share a name, a number is added to tell them apart.
+     * @param libraryFile The library file to read
+     * @param directory The folder to write the xml files into
+     */
+    public void convertLibraryToXml(Path libraryFile, Path directory){
+        List<NamedGesture> gestures = loadGestureLibrary(libraryFile);
+        if (gestures == null){
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Map<String, Integer> nameCounts = new HashMap<>();
+            for (NamedGesture gesture : gestures){
+                int count = nameCounts.merge(gesture.getName(), 1, Integer::sum);
+                String fileName = count == 1 ? gesture.getName() + ".xml" : gesture.getName() + count + ".xml";
+                writeGestureXml(gesture, directory.resolve(fileName).toFile());
+            }
+            System.out.println("Saved "+gestures.size()+" gestures to "+directory);
         }
         catch (Exception e){
             System.out.println("ERROR saving gesture file:");
@@ -109,4 +351,45 @@ public class IOManager {
         }
     }
 
+    /**
+     * Saves a recognizer's templates exactly as it matches against them, already resampled, rotated,
+     * scaled and translated. Loading them back with loadTemplateLibrary skips all of that work, which
+     * makes starting up with a large library much faster.
+     * @param recognizer The recognizer whose templates to save
+     * @param file The snapshot file
+     */
+    public void saveTemplateLibrary(Recognizer recognizer, Path file){
+        try {
+            List<Template> templates = recognizer.getTempList();
+            TemplateLibraryFormat.write(templates, recognizer.RESAMPLEINTERVAL, recognizer.SIZE, file);
+            System.out.println("Saved "+templates.size()+" templates to "+file);
+        }
+        catch (Exception e){
+            System.out.println("ERROR saving template library:");
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Adds the templates saved by saveTemplateLibrary to a recognizer without normalizing them again.
+     * The snapshot must have been saved by a recognizer with the same number of resampled points
+     * and the same scale.
+     * @param file The snapshot file
+     * @param recognizer The recognizer to add the templates to
+     * @return The number of templates added
+     */
+    public int loadTemplateLibrary(Path file, Recognizer recognizer){
+        try {
+            List<Template> templates = TemplateLibraryFormat.read(file, recognizer.RESAMPLEINTERVAL, recognizer.SIZE);
+            recognizer.addNormalizedTemplates(templates);
+            return templates.size();
+        }
+        catch (Exception e){
+            System.out.println("ERROR reading template library:");
+            System.out.println(e.getMessage());
+            return 0;
+        }
+    }
+
 }
@@ -0,0 +1,319 @@
+package comp128.gestureRecognizer;
+
+import java.util.Arrays;
+
+/**
+ * Thins out raw input points before they are resampled. Pens and touch screens can report several
+ * hundred points a second, far more than resampling to 64 points needs, and every extra point costs
+ * time in measuring and walking the path. Two filters are applied in turn:
+ * <ol>
+ * <li>a minimum distance filter drops points closer than minDistance to the last point kept, which
+ * removes jitter and the runs of points a slow stroke produces,</li>
+ * <li>Ramer-Douglas-Peucker simplification then drops points that lie within tolerance of the line
+ * between the points kept on either side of them, which removes the points along straight and
+ * gently curving parts of the stroke.</li>
+ * </ol>
+ * Every point dropped lies within minDistance + tolerance of the filtered path, so a gesture keeps
+ * its shape to within that many pixels. The first and last points are always kept.
+ *
+ * Gestures that are still being drawn can be filtered point by point with start(). That gives the
+ * same error bound as simplifying the whole stroke at the end, but as it cannot look ahead it may
+ * keep a few more points.
+ *
+ * Filters are immutable and can be shared between threads; each Incremental belongs to one stroke.
+ */
+public final class InputFilter {
+
+    /**
+     * Most points an incremental filter holds back before keeping one. Each new point is checked
+     * against all of them, so this bounds the work per point.
+     */
+    static final int WINDOW = 32;
+
+    private final double minDistance;
+    private final double tolerance;
+
+    /**
+     * @param minDistance points closer than this to the last point kept are dropped, or 0 for none
+     * @param tolerance   largest distance of a dropped point from the simplified path, or 0 to skip
+     *                    simplification
+     */
+    public InputFilter(double minDistance, double tolerance) {
+        if (!(minDistance >= 0) || !(tolerance >= 0)) {
+            throw new IllegalArgumentException("Filter distances must be 0 or more: " + minDistance + ", " + tolerance);
+        }
+        this.minDistance = minDistance;
+        this.tolerance = tolerance;
+    }
+
+    public double getMinDistance() {
+        return minDistance;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Filters a whole gesture
+     *
+     * @param input raw points, left unchanged
+     * @param out   receives the points that are kept; must not be input
+     */
+    public void apply(GesturePath input, GesturePath out) {
+        out.clear();
+        int n = input.size();
+        if (n == 0) {
+            return;
+        }
+        double[] xs = input.xs();
+        double[] ys = input.ys();
+        double minSquared = minDistance * minDistance;
+
+        out.ensureCapacity(n);
+        out.add(xs[0], ys[0]);
+        for (int i = 1; i < n - 1; i++) {
+            int last = out.size() - 1;
+            double dx = xs[i] - out.getX(last);
+            double dy = ys[i] - out.getY(last);
+            if (dx * dx + dy * dy >= minSquared) {
+                out.add(xs[i], ys[i]);
+            }
+        }
+        if (n > 1) {
+            out.add(xs[n - 1], ys[n - 1]);
+        }
+        if (tolerance > 0 && out.size() > 2) {
+            simplify(out);
+        }
+    }
+
+    /**
+     * Ramer-Douglas-Peucker simplification in place. Uses an explicit stack of spans so long strokes
+     * cannot overflow the call stack.
+     */
+    private void simplify(GesturePath path) {
+        int n = path.size();
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        double toleranceSquared = tolerance * tolerance;
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            if (to - from < 2) {
+                continue;
+            }
+            // Squared distances from the segment, multiplied by its squared length so the loop needs
+            // no division. Points beside the segment are measured with the cross product; points past
+            // either end, as in a hook, are measured from that end.
+            double ax = xs[from];
+            double ay = ys[from];
+            double dx = xs[to] - ax;
+            double dy = ys[to] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double farthest = -1;
+            int index = -1;
+            if (lengthSquared > 0) {
+                for (int i = from + 1; i < to; i++) {
+                    double px = xs[i] - ax;
+                    double py = ys[i] - ay;
+                    double dot = px * dx + py * dy;
+                    double d;
+                    if (dot < 0) {
+                        d = (px * px + py * py) * lengthSquared;
+                    } else if (dot > lengthSquared) {
+                        double qx = px - dx;
+                        double qy = py - dy;
+                        d = (qx * qx + qy * qy) * lengthSquared;
+                    } else {
+                        double cross = px * dy - py * dx;
+                        d = cross * cross;
+                    }
+                    if (d > farthest) {
+                        farthest = d;
+                        index = i;
+                    }
+                }
+                farthest /= lengthSquared;
+            } else {
+                for (int i = from + 1; i < to; i++) {
+                    double d = (xs[i] - ax) * (xs[i] - ax) + (ys[i] - ay) * (ys[i] - ay);
+                    if (d > farthest) {
+                        farthest = d;
+                        index = i;
+                    }
+                }
+            }
+            if (farthest > toleranceSquared) {
+                keep[index] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = from;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = to;
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                path.set(kept++, xs[i], ys[i]);
+            }
+        }
+        path.truncate(kept);
+    }
+
+    /**
+     * Starts filtering a stroke point by point
+     *
+     * @param out receives the points that are kept as they are decided; it is cleared first
+     * @return the filter for this stroke
+     */
+    public Incremental start(GesturePath out) {
+        return new Incremental(out);
+    }
+
+    /**
+     * Squared distance from a point to the segment between two others
+     */
+    static double segmentDistanceSquared(double x, double y, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / lengthSquared));
+        }
+        double ex = x - (ax + t * dx);
+        double ey = y - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Filters one stroke as its points arrive. Points after the last one kept are held back until it
+     * is clear whether the path needs them: while every held back point lies within tolerance of the
+     * line from the last kept point to the newest one, the newest one simply becomes the end of that
+     * line. When a point no longer fits, the end before it is kept and a new line starts there.
+     */
+    public final class Incremental {
+        private final GesturePath out;
+        private final double[] heldX = new double[WINDOW];
+        private final double[] heldY = new double[WINDOW];
+        private int held;
+        private double lastX;
+        private double lastY;
+        private boolean hasLast;
+        private double length;
+        private int received;
+
+        private Incremental(GesturePath out) {
+            this.out = out;
+            out.clear();
+        }
+
+        /**
+         * Adds the next raw point
+         *
+         * @return whether any points were added to the output
+         */
+        public boolean add(double x, double y) {
+            received++;
+            if (out.isEmpty()) {
+                keep(x, y);
+                return true;
+            }
+            // Compared with the newest point not dropped, kept or held back
+            double px = held > 0 ? heldX[held - 1] : out.getX(out.size() - 1);
+            double py = held > 0 ? heldY[held - 1] : out.getY(out.size() - 1);
+            double dx = x - px;
+            double dy = y - py;
+            if (dx * dx + dy * dy < minDistance * minDistance) {
+                lastX = x;
+                lastY = y;
+                hasLast = true;
+                return false;
+            }
+            hasLast = false;
+            if (tolerance == 0) {
+                keep(x, y);
+                return true;
+            }
+
+            boolean kept = false;
+            if (held == WINDOW || !fits(x, y)) {
+                keep(heldX[held - 1], heldY[held - 1]);
+                held = 0;
+                kept = true;
+            }
+            heldX[held] = x;
+            heldY[held] = y;
+            held++;
+            return kept;
+        }
+
+        /**
+         * Ends the stroke, keeping the points still held back and the final raw point
+         */
+        public void finish() {
+            if (held > 0) {
+                keep(heldX[held - 1], heldY[held - 1]);
+                held = 0;
+            }
+            if (hasLast) {
+                keep(lastX, lastY);
+                hasLast = false;
+            }
+        }
+
+        /**
+         * Whether every held back point is within tolerance of the line from the last kept point to
+         * (x, y)
+         */
+        private boolean fits(double x, double y) {
+            int last = out.size() - 1;
+            double ax = out.getX(last);
+            double ay = out.getY(last);
+            double toleranceSquared = tolerance * tolerance;
+            for (int i = 0; i < held; i++) {
+                if (segmentDistanceSquared(heldX[i], heldY[i], ax, ay, x, y) > toleranceSquared) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void keep(double x, double y) {
+            int n = out.size();
+            if (n > 0) {
+                double dx = x - out.getX(n - 1);
+                double dy = y - out.getY(n - 1);
+                length += Math.sqrt(dx * dx + dy * dy);
+            }
+            out.add(x, y);
+        }
+
+        /**
+         * @return length of the points kept so far
+         */
+        public double getLength() {
+            return length;
+        }
+
+        /**
+         * @return number of raw points added, including those dropped
+         */
+        public int getReceived() {
+            return received;
+        }
+    }
+}
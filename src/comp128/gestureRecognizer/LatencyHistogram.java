@@ -0,0 +1,142 @@
+package comp128.gestureRecognizer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in nanoseconds. Durations are counted in buckets that double in
+ * width every SUB_BUCKETS buckets, so recording is a couple of shifts and one atomic add, and any
+ * percentile read back is within 1 / SUB_BUCKETS of the true value. Several threads can record at
+ * once.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration
+     *
+     * @param nanos duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        total.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each; above that, each power of two is split into
+     * SUB_BUCKETS equal buckets.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Midpoint of the range of values counted in a bucket
+     */
+    private static double bucketValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << exponent;
+        return low + ((1L << exponent) - 1) / 2.0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the duration below which that percentage of the recorded durations fall, in
+     *         nanoseconds, or 0 if nothing has been recorded
+     */
+    public double getPercentileNanos(double percentile) {
+        long recorded = count.sum();
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded durations in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : total.sum() / 1000.0 / recorded;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getPercentileNanos(50) / 1000;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getPercentileNanos(90) / 1000;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getPercentileNanos(99) / 1000;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    /**
+     * Clears the histogram. Durations recorded while it is being cleared may be partly kept.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                getCount(), getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(), getMaxMicros());
+    }
+}
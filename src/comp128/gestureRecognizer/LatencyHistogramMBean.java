@@ -0,0 +1,21 @@
+package comp128.gestureRecognizer;
+
+/**
+ * JMX view of a LatencyHistogram
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,224 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load generator for RecognitionServer. A number of clients each send a fixed number of requests
+ * back to back, one at a time, with gestures made by jittering the recorded gestures in res. Round
+ * trip latency is measured on the client side.
+ *
+ * <pre>
+ * LoadGenerator [--url http://127.0.0.1:8128] [--clients 16] [--requests 200] [--batch 1]
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final String[] GESTURE_FILES = {"arrowTest.xml", "arrowTemplate.xml", "circleTemplate.xml"};
+    private static final int VARIANTS = 32;
+
+    private final URI server;
+    private final int clients;
+    private final int requestsPerClient;
+    private final int batchSize;
+    private final List<Deque<Point>> gestures;
+
+    /**
+     * @param server            server address, such as http://127.0.0.1:8128
+     * @param clients           number of concurrent clients
+     * @param requestsPerClient requests each client sends
+     * @param batchSize         gestures per request; 1 uses /recognize, more use /recognize/batch
+     */
+    public LoadGenerator(URI server, int clients, int requestsPerClient, int batchSize) {
+        if (clients < 1 || requestsPerClient < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Clients, requests and batch size must all be at least 1");
+        }
+        this.server = server;
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.batchSize = batchSize;
+        gestures = variants(new Random(19));
+    }
+
+    private static List<Deque<Point>> variants(Random random) {
+        IOManager ioManager = new IOManager();
+        List<Deque<Point>> recorded = new ArrayList<>();
+        for (String file : GESTURE_FILES) {
+            Deque<Point> points = ioManager.loadGesture(file);
+            if (points != null) {
+                recorded.add(points);
+            }
+        }
+        if (recorded.isEmpty()) {
+            throw new IllegalStateException("No gestures found in res");
+        }
+        List<Deque<Point>> variants = new ArrayList<>(VARIANTS);
+        for (int i = 0; i < VARIANTS; i++) {
+            double scale = 0.7 + random.nextDouble() * 0.6;
+            double offsetX = random.nextDouble() * 100;
+            double offsetY = random.nextDouble() * 100;
+            Deque<Point> variant = new ArrayDeque<>();
+            for (Point point : recorded.get(i % recorded.size())) {
+                variant.add(new Point(point.getX() * scale + offsetX + random.nextGaussian(),
+                        point.getY() * scale + offsetY + random.nextGaussian()));
+            }
+            variants.add(variant);
+        }
+        return variants;
+    }
+
+    /**
+     * Sends every request and waits for all of them
+     *
+     * @return what happened
+     */
+    public Report run() throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        URI target = server.resolve(batchSize == 1 ? "/recognize" : "/recognize/batch");
+        List<String> bodies = new ArrayList<>(VARIANTS);
+        for (int i = 0; i < VARIANTS; i++) {
+            bodies.add(body(i));
+        }
+
+        Report report = new Report(batchSize);
+        ExecutorService executor = RecognitionServer.newVirtualThreadExecutor();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(clients);
+        }
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int first = c;
+            executor.execute(() -> {
+                for (int r = 0; r < requestsPerClient; r++) {
+                    HttpRequest request = HttpRequest.newBuilder(target)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(bodies.get((first + r) % bodies.size())))
+                            .build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        report.latency.record(System.nanoTime() - sent);
+                        (response.statusCode() == 200 ? report.requests : report.errors).increment();
+                    } catch (IOException e) {
+                        report.errors.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private String body(int first) {
+        if (batchSize == 1) {
+            return PointArrays.toJson(gestures.get(first));
+        }
+        StringBuilder body = new StringBuilder().append('[');
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(PointArrays.toJson(gestures.get((first + i) % gestures.size())));
+        }
+        return body.append(']').toString();
+    }
+
+    /**
+     * Results of a run
+     */
+    public static final class Report {
+        private final int batchSize;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long elapsedNanos;
+
+        private Report(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * @return requests answered with 200
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        /**
+         * @return requests that failed or were answered with an error status
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return round trip latency of every answered request
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return gestures recognized per second over the whole run
+         */
+        public double getGesturesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getRequests() * (double) batchSize * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d requests, %d errors, %.0f gestures/s; latency p50 %.0f us, p90 %.0f us, p99 %.0f us,"
+                            + " max %.0f us",
+                    getRequests(), getErrors(), getGesturesPerSecond(), latency.getP50Micros(),
+                    latency.getP90Micros(), latency.getP99Micros(), latency.getMaxMicros());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        URI url = URI.create("http://127.0.0.1:" + RecognitionServer.DEFAULT_PORT);
+        int clients = 16;
+        int requests = 200;
+        int batch = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url":
+                    url = URI.create(args[i + 1]);
+                    break;
+                case "--clients":
+                    clients = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("ERROR unknown option " + args[i]);
+                    return;
+            }
+        }
+        System.out.println(new LoadGenerator(url, clients, requests, batch).run());
+    }
+}
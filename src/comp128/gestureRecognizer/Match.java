@@ -0,0 +1,29 @@
+package comp128.gestureRecognizer;
+
+/**
+ * Index into the template list and distance of the closest template found so far
+ */
+final class Match {
+    final int index;
+    final double distance;
+
+    Match(int index, double distance) {
+        this.index = index;
+        this.distance = distance;
+    }
+
+    /**
+     * Whether this match beats another, comparing distances first and preferring the lower index on
+     * ties, the way a sequential scan that only replaces on a strictly smaller distance does
+     */
+    boolean isCloserThan(Match other) {
+        return other == null || distance < other.distance || (distance == other.distance && index < other.index);
+    }
+
+    /**
+     * The closer of two matches, either of which may be null
+     */
+    static Match closer(Match a, Match b) {
+        return b != null && b.isCloserThan(a) ? b : a;
+    }
+}
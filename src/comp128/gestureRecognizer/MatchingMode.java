@@ -0,0 +1,20 @@
+package comp128.gestureRecognizer;
+
+/**
+ * The ways a Recognizer can search for the rotation that best lines a gesture up with a template.
+ */
+public enum MatchingMode {
+
+    /**
+     * The original $1 search: a golden section search over +/-45 degrees that evaluates the path
+     * distance at about ten candidate angles per template.
+     */
+    GOLDEN_SECTION,
+
+    /**
+     * The Protractor variant of $1: the best rotation of the gesture onto a template is found in
+     * closed form from a single dot product pass over the unit length template vectors. The optimal
+     * angle is limited to the same +/-45 degree range as the golden section search.
+     */
+    PROTRACTOR
+}
@@ -0,0 +1,27 @@
+package comp128.gestureRecognizer;
+
+/**
+ * A raw gesture path together with the name it was saved under, as read from a gesture file.
+ */
+public class NamedGesture {
+    private final String name;
+    private final GesturePath path;
+
+    public NamedGesture(String name, GesturePath path) {
+        this.name = name;
+        this.path = path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GesturePath getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "Gesture name: " + name + "\n" + "points: " + path;
+    }
+}
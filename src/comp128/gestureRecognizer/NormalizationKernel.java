@@ -0,0 +1,188 @@
+package comp128.gestureRecognizer;
+
+/**
+ * The $1 normalization (resample, rotate to the indicative angle, scale, translate to the origin)
+ * done in as few passes over the points as possible. Run one stage at a time, the pipeline reads the
+ * points about ten times: the centroid is summed for the indicative angle, again for the rotation
+ * and again for the translation, and the bounding box takes a pass per axis. Here:
+ * <ol>
+ * <li>resampling also sums the resampled points, which gives the centroid and so the indicative
+ * angle,</li>
+ * <li>one pass rotates the points around that centroid, tracking the bounding box and the new sums
+ * as it goes,</li>
+ * <li>one pass scales and translates, summing the final coordinates and their squares for
+ * PreparedGesture.</li>
+ * </ol>
+ * The arithmetic is the same as the separate stages, so results agree with them to within rounding.
+ * The bounding box keeps the separate stages' quirk of starting the maximum at Double.MIN_VALUE.
+ *
+ * A kernel holds the running sums of the last call, so each thread needs its own; they are cheap to
+ * create.
+ */
+final class NormalizationKernel {
+
+    private double sumX;
+    private double sumY;
+    private double sumSquares;
+
+    /**
+     * Resamples a path to n evenly spaced points, summing them as they are produced. See
+     * Recognizer.resample for the details of the walk.
+     *
+     * @param path   input points, left unchanged
+     * @param n      number of points to resample to
+     * @param length length of path
+     * @param out    receives the resampled points
+     */
+    void resample(GesturePath path, int n, double length, GesturePath out) {
+        if (path.size() < 2) {
+            throw new IllegalArgumentException("A gesture needs at least two points to be resampled");
+        }
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        int last = path.size() - 1;
+        double resampleInterval = length / (n - 1);
+
+        double cumDistance = 0;
+        sumX = 0;
+        sumY = 0;
+
+        out.clear();
+        out.ensureCapacity(n);
+        add(out, xs[0], ys[0]);
+
+        // Like the original deque walk, the segment ending at the last point is never split; the
+        // last point is appended afterwards to fill up the path. When that final segment is long,
+        // more than one point can be missing, so keep appending until there are exactly n points
+        // and every resampled path lines up point for point with the templates.
+        //
+        // Each segment's length and direction are worked out once; the points placed along it are
+        // found by stepping along that direction instead of measuring the rest of the segment again
+        // after every point.
+        if (resampleInterval > 0) {
+            for (int next = 1; next < last; next++) {
+                double startX = xs[next - 1];
+                double startY = ys[next - 1];
+                double dx = xs[next] - startX;
+                double dy = ys[next] - startY;
+                double segmentDistance = Math.sqrt(dx * dx + dy * dy);
+                double along = 0;
+                while (segmentDistance - along + cumDistance >= resampleInterval && out.size() < n) {
+                    along += resampleInterval - cumDistance;
+                    double t = along / segmentDistance;
+                    add(out, startX + t * dx, startY + t * dy);
+                    cumDistance = 0;
+                }
+                cumDistance += segmentDistance - along;
+            }
+        }
+
+        while (out.size() < n) {
+            add(out, xs[last], ys[last]);
+        }
+    }
+
+    private void add(GesturePath out, double x, double y) {
+        out.add(x, y);
+        sumX += x;
+        sumY += y;
+    }
+
+    /**
+     * Rotates, scales and translates points just resampled by this kernel, in place
+     *
+     * @param points resampled points
+     * @param size   size to scale the bounding box to
+     */
+    void align(GesturePath points, double size) {
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        int n = points.size();
+        double cx = sumX / n;
+        double cy = sumY / n;
+        double angle = -Math.atan2(cy - ys[0], cx - xs[0]);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+
+        double minX = Double.MAX_VALUE;
+        double maxX = Double.MIN_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = Double.MIN_VALUE;
+        double rotatedSumX = 0;
+        double rotatedSumY = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - cx;
+            double dy = ys[i] - cy;
+            double x = dx * cos - dy * sin + cx;
+            double y = dx * sin + dy * cos + cy;
+            xs[i] = x;
+            ys[i] = y;
+            if (x < minX) {
+                minX = x;
+            }
+            if (x > maxX) {
+                maxX = x;
+            }
+            if (y < minY) {
+                minY = y;
+            }
+            if (y > maxY) {
+                maxY = y;
+            }
+            rotatedSumX += x;
+            rotatedSumY += y;
+        }
+
+        double widthScale = size / (maxX - minX);
+        double heightScale = size / (maxY - minY);
+        double shiftX = -rotatedSumX * widthScale / n;
+        double shiftY = -rotatedSumY * heightScale / n;
+        sumX = 0;
+        sumY = 0;
+        sumSquares = 0;
+        for (int i = 0; i < n; i++) {
+            double x = xs[i] * widthScale + shiftX;
+            double y = ys[i] * heightScale + shiftY;
+            xs[i] = x;
+            ys[i] = y;
+            sumX += x;
+            sumY += y;
+            sumSquares += x * x + y * y;
+        }
+    }
+
+    /**
+     * Resamples, rotates, scales and translates a gesture
+     *
+     * @param input  gesture points, left unchanged
+     * @param n      number of points to resample to
+     * @param length length of input
+     * @param size   size to scale the bounding box to
+     * @param out    receives the normalized points
+     */
+    void normalize(GesturePath input, int n, double length, double size, GesturePath out) {
+        resample(input, n, length, out);
+        align(out, size);
+    }
+
+    /**
+     * @return sum of the x coordinates after the last call
+     */
+    double getSumX() {
+        return sumX;
+    }
+
+    /**
+     * @return sum of the y coordinates after the last call
+     */
+    double getSumY() {
+        return sumY;
+    }
+
+    /**
+     * @return sum of the squared distances from the origin after the last align
+     */
+    double getSumSquares() {
+        return sumSquares;
+    }
+}
@@ -0,0 +1,561 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A $1 template library for very large numbers of templates. A Template in a Recognizer keeps its
+ * normalized points, its Protractor vector and its radii as separate double arrays, about 2.7 KB per
+ * template at 64 points once the objects around them are counted. Here the normalized points of all
+ * templates are packed into one array instead, either as floats or as 16 bit fixed point numbers in
+ * steps of 1/64 unit, and nothing else is stored per template but the index of its name:
+ * <ul>
+ *     <li>FLOAT takes 516 bytes per template at 64 points and rounds coordinates to about 1e-5
+ *     units,</li>
+ *     <li>INT16 takes 260 bytes per template and rounds coordinates to within 1/128 unit.</li>
+ * </ul>
+ * Normalized templates fit in a 250 unit box, so either rounding changes distances by far less than
+ * the gap between different gestures. Matching reads the packed coordinates directly: each template
+ * is first checked against the same rotation invariant lower bound as Recognizer's pruning cascade,
+ * with the template's radii worked out on the fly, and then searched with the same golden section
+ * search as Recognizer, abandoning distance evaluations early in the same way. Without Recognizer's
+ * template index and SIMD kernel this takes about twice as long per template, so this is the
+ * storage for libraries too large for the heap otherwise, not a faster recognizer.
+ *
+ * Gestures and templates are normalized by a Recognizer, whose resample count, angle range and
+ * input filter are used; templates added to that recognizer are not seen here. Recognition is safe
+ * from many threads at once, also while templates are being added or removed. Adding a template
+ * writes past the end of the templates earlier recognitions can see and then publishes the new
+ * count, so it does not copy the library.
+ */
+public class PackedTemplateLibrary implements GestureMatcher {
+
+    /**
+     * How the coordinates are stored
+     */
+    public enum Precision {
+        FLOAT(Float.BYTES),
+        INT16(Short.BYTES);
+
+        private final int bytes;
+
+        Precision(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return bytes used for each coordinate
+         */
+        public int getBytesPerCoordinate() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Size of one INT16 step in normalized units
+     */
+    static final double INT16_STEP = 1.0 / 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double BOUND_SLACK = 1e-9;
+    private static final int COARSE_STEP = 4;
+
+    private final Precision precision;
+    private final Recognizer normalizer;
+    private final int n;
+    private volatile Store store;
+
+    /**
+     * Constructs an empty library that normalizes gestures to 64 points
+     *
+     * @param precision how to store coordinates
+     */
+    public PackedTemplateLibrary(Precision precision) {
+        this(precision, new Recognizer());
+    }
+
+    /**
+     * Constructs an empty library
+     *
+     * @param precision  how to store coordinates
+     * @param normalizer recognizer whose settings gestures and templates are normalized with
+     */
+    public PackedTemplateLibrary(Precision precision, Recognizer normalizer) {
+        this.precision = precision;
+        this.normalizer = normalizer;
+        this.n = normalizer.RESAMPLEINTERVAL;
+        this.store = new Store(precision, n, INITIAL_CAPACITY);
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return number of templates stored
+     */
+    public int size() {
+        return store.count;
+    }
+
+    /**
+     * @return bytes stored for each template: its coordinates and the index of its name
+     */
+    public int getBytesPerTemplate() {
+        return 2 * n * precision.getBytesPerCoordinate() + Integer.BYTES;
+    }
+
+    /**
+     * @return bytes allocated for coordinates and name indexes, including room for templates not yet
+     *         added; the names themselves are stored once each and not counted
+     */
+    public long getStorageBytes() {
+        return (long) store.capacity * getBytesPerTemplate();
+    }
+
+    /**
+     * Makes room for a number of templates up front. The arrays otherwise double when they are
+     * full, which for a library of millions of templates can leave nearly half of them unused.
+     *
+     * @param templates number of templates the library should hold without growing
+     */
+    public synchronized void ensureCapacity(int templates) {
+        store = store.withRoom(templates, 0);
+    }
+
+    @Override
+    public Template addTemplate(String name, Deque<Point> points) {
+        return addTemplate(name, GesturePath.fromPoints(points));
+    }
+
+    /**
+     * Normalizes and stores a template
+     *
+     * @param name   template name
+     * @param points the template's points, left unchanged
+     * @return the template as stored, rebuilt from the packed coordinates
+     */
+    public Template addTemplate(String name, GesturePath points) {
+        PreparedGesture prepared = new PreparedGesture(n);
+        normalizer.prepare(points, prepared);
+        int index = append(Collections.singletonList(new Template(name, prepared.points)));
+        return template(store, index);
+    }
+
+    /**
+     * Stores templates that are already normalized, such as those of a Recognizer with the same
+     * resample count or a library read with TemplateLibraryFormat, without normalizing them again
+     *
+     * @param templates normalized templates
+     * @return number of templates stored
+     */
+    public int addTemplates(List<Template> templates) {
+        for (Template template : templates) {
+            if (template.getPath().size() != n) {
+                throw new IllegalArgumentException("Template " + template.getName() + " has "
+                        + template.getPath().size() + " points instead of " + n);
+            }
+        }
+        append(templates);
+        return templates.size();
+    }
+
+    /**
+     * Packs templates after the last one stored and publishes them together
+     *
+     * @return index of the first template added
+     */
+    private synchronized int append(List<Template> templates) {
+        Store current = store;
+        Store grown = current.withRoom(current.count + templates.size(), templates.size());
+        int index = current.count;
+        for (Template template : templates) {
+            grown.set(index++, grown.nameId(template.getName()), template.getPath());
+        }
+        store = grown.withCount(index);
+        return current.count;
+    }
+
+    @Override
+    public synchronized int removeTemplates(String name) {
+        Store current = store;
+        Store kept = new Store(precision, n, Math.max(current.count, INITIAL_CAPACITY))
+                .withRoom(0, current.nameIndex.size());
+        GesturePath path = new GesturePath(n);
+        int count = 0;
+        for (int i = 0; i < current.count; i++) {
+            String templateName = current.name(i);
+            if (!templateName.equals(name)) {
+                current.get(i, path);
+                kept.set(count++, kept.nameId(templateName), path);
+            }
+        }
+        store = kept.withCount(count);
+        return current.count - count;
+    }
+
+    /**
+     * @return every template rebuilt from the packed coordinates, in the order they were added;
+     *         each one is a new object, so for a large library this takes as much memory as a
+     *         Recognizer would
+     */
+    @Override
+    public List<Template> getTempList() {
+        Store current = store;
+        List<Template> templates = new ArrayList<>(current.count);
+        for (int i = 0; i < current.count; i++) {
+            templates.add(template(current, i));
+        }
+        return templates;
+    }
+
+    @Override
+    public RecognitionResult classify(Deque<Point> input) {
+        return classify(GesturePath.fromPoints(input));
+    }
+
+    /**
+     * Recognizes a gesture
+     *
+     * @param input gesture path, left unchanged
+     * @return the closest template, or null if there are no templates
+     */
+    public RecognitionResult classify(GesturePath input) {
+        List<RecognitionResult> results = recognizeTopK(input, 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Override
+    public List<RecognitionResult> recognizeTopK(Deque<Point> input, int k) {
+        return recognizeTopK(GesturePath.fromPoints(input), k);
+    }
+
+    /**
+     * Finds the k closest templates to a gesture. Templates whose lower bound is above the k-th best
+     * distance so far are skipped without a search.
+     *
+     * @param input gesture path, left unchanged
+     * @param k     number of templates wanted, at least 1
+     * @return up to k matches, closest first
+     */
+    public List<RecognitionResult> recognizeTopK(GesturePath input, int k) {
+        CandidateHeap candidates = new CandidateHeap(k);
+        PreparedGesture gesture = new PreparedGesture(n);
+        normalizer.prepare(input, gesture);
+        Store current = store;
+        double range = Math.toRadians(normalizer.getAngleRange());
+        double[] dx = new double[n];
+        double[] dy = new double[n];
+        for (int i = 0; i < n; i++) {
+            dx[i] = gesture.points.getX(i) - gesture.centroidX;
+            dy[i] = gesture.points.getY(i) - gesture.centroidY;
+        }
+        Probe probe = new Probe(current, dx, dy, gesture.centroidX, gesture.centroidY);
+
+        for (int i = 0; i < current.count; i++) {
+            double bound = candidates.bound();
+            if (lowerBound(current, i, gesture, (bound + BOUND_SLACK) * n) == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            probe.template = i;
+            candidates.offer(new Match(i, goldenSectionSearch(probe, range, null)));
+        }
+
+        List<Match> matches = candidates.sorted();
+        List<RecognitionResult> results = new ArrayList<>(matches.size());
+        double[] angle = new double[1];
+        for (Match match : matches) {
+            probe.template = match.index;
+            double distance = goldenSectionSearch(probe, range, angle);
+            results.add(new RecognitionResult(template(current, match.index), normalizer.score(distance), distance,
+                    angle[0]));
+        }
+        return results;
+    }
+
+    /**
+     * The sum over all points of ||g - c| - |t|| - |c|, which is at most n times the distance at
+     * any rotation; see Recognizer's pruning cascade. As there, the sum is first taken over every
+     * fourth point. The template's radii are computed from the packed coordinates, as storing them
+     * would take half as much room again.
+     *
+     * @return the bound, or positive infinity as soon as it is certain to be above limit
+     */
+    private double lowerBound(Store store, int template, PreparedGesture gesture, double limit) {
+        double[] radii = gesture.radii;
+        int offset = 2 * n * template;
+        double sum = 0;
+        int counted = 0;
+        for (int i = 0; i < n; i += COARSE_STEP) {
+            sum += Math.abs(radii[i] - store.radius(offset, i));
+            counted++;
+        }
+        if (sum - counted * gesture.centroidOffset > limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (int i = 0; i < n; i++) {
+            if (i % COARSE_STEP != 0) {
+                sum += Math.abs(radii[i] - store.radius(offset, i));
+            }
+        }
+        double bound = sum - n * gesture.centroidOffset;
+        return bound > limit ? Double.POSITIVE_INFINITY : bound;
+    }
+
+    /**
+     * The golden section search of Recognizer over the packed coordinates of probe.template, with
+     * the same abandoning
+     *
+     * @param angle if not null, receives the rotation the best distance was found at in angle[0]
+     */
+    private static double goldenSectionSearch(Probe probe, double range, double[] angle) {
+        double thetaA = -range;
+        double thetaB = range;
+        double phi = GoldenSectionAngles.PHI;
+        boolean precomputed = range == GoldenSectionAngles.RANGE;
+        int node = precomputed ? 1 : 0;
+        double x1 = precomputed ? GoldenSectionAngles.FIRST : phi * thetaA + (1 - phi) * thetaB;
+        double f1 = precomputed
+                ? probe.distance(GoldenSectionAngles.FIRST_COS, GoldenSectionAngles.FIRST_SIN, Double.POSITIVE_INFINITY)
+                : probe.distance(Math.cos(x1), Math.sin(x1), Double.POSITIVE_INFINITY);
+        double x2 = precomputed ? GoldenSectionAngles.SECOND : (1 - phi) * thetaA + phi * thetaB;
+        double f2 = precomputed
+                ? probe.distance(GoldenSectionAngles.SECOND_COS, GoldenSectionAngles.SECOND_SIN, f1)
+                : probe.distance(Math.cos(x2), Math.sin(x2), f1);
+        while (Math.abs(thetaB - thetaA) > GoldenSectionAngles.TOLERANCE) {
+            if (f1 < f2) {
+                node = 2 * node;
+                thetaB = x2;
+                x2 = x1;
+                f2 = f1;
+                x1 = phi * thetaA + (1 - phi) * thetaB;
+                f1 = probe.distance(node, x1, f2);
+            } else {
+                node = 2 * node + 1;
+                thetaA = x1;
+                x1 = x2;
+                f1 = f2;
+                x2 = (1 - phi) * thetaA + phi * thetaB;
+                f2 = probe.distance(node, x2, f1);
+            }
+        }
+        if (angle != null) {
+            angle[0] = f1 < f2 ? x1 : x2;
+        }
+        return Math.min(f1, f2);
+    }
+
+    private Template template(Store store, int index) {
+        GesturePath path = new GesturePath(n);
+        store.get(index, path);
+        return new Template(store.name(index), path);
+    }
+
+    /**
+     * Distance evaluations between one gesture, centered on its centroid, and a packed template
+     */
+    private static final class Probe {
+        private final Store store;
+        private final double[] dx;
+        private final double[] dy;
+        private final double cx;
+        private final double cy;
+        private final int n;
+        int template;
+
+        Probe(Store store, double[] dx, double[] dy, double cx, double cy) {
+            this.store = store;
+            this.dx = dx;
+            this.dy = dy;
+            this.cx = cx;
+            this.cy = cy;
+            this.n = dx.length;
+        }
+
+        /**
+         * Distance at one of the angles the search tries after its first two
+         *
+         * @param node position in the GoldenSectionAngles tree, or 0 when the tree does not apply
+         */
+        double distance(int node, double theta, double limit) {
+            if (node > 0 && GoldenSectionAngles.contains(node)) {
+                return distance(GoldenSectionAngles.cos(node), GoldenSectionAngles.sin(node), limit);
+            }
+            return distance(Math.cos(theta), Math.sin(theta), limit);
+        }
+
+        /**
+         * Path distance at the rotation with the given cosine and sine, or positive infinity as
+         * soon as it is certain to be larger than limit
+         */
+        double distance(double cos, double sin, double limit) {
+            double sumLimit = limit * n * (1 + BOUND_SLACK);
+            int offset = 2 * n * template;
+            double sum = 0;
+            if (store.floats != null) {
+                float[] coordinates = store.floats;
+                for (int i = 0; i < n; i++) {
+                    double rx = dx[i] * cos - dy[i] * sin + cx - coordinates[offset + i];
+                    double ry = dx[i] * sin + dy[i] * cos + cy - coordinates[offset + n + i];
+                    sum += Math.sqrt(rx * rx + ry * ry);
+                    if (sum > sumLimit) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                }
+            } else {
+                short[] coordinates = store.shorts;
+                for (int i = 0; i < n; i++) {
+                    double rx = dx[i] * cos - dy[i] * sin + cx - coordinates[offset + i] * INT16_STEP;
+                    double ry = dx[i] * sin + dy[i] * cos + cy - coordinates[offset + n + i] * INT16_STEP;
+                    sum += Math.sqrt(rx * rx + ry * ry);
+                    if (sum > sumLimit) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                }
+            }
+            return sum / n;
+        }
+    }
+
+    /**
+     * The packed templates. Each template takes 2n consecutive entries of one coordinate array, its
+     * x coordinates followed by its y coordinates. Entries before count are never changed once
+     * published; appending writes after them, and only grows the arrays when they are full.
+     */
+    private static final class Store {
+        final float[] floats;
+        final short[] shorts;
+        final int[] nameIds;
+        final String[] names;
+        final Map<String, Integer> nameIndex;
+        final int n;
+        final int capacity;
+        final int count;
+
+        Store(Precision precision, int n, int capacity) {
+            this(precision == Precision.FLOAT ? new float[2 * n * capacity] : null,
+                    precision == Precision.INT16 ? new short[2 * n * capacity] : null,
+                    new int[capacity], new String[INITIAL_CAPACITY], new HashMap<>(), n, capacity, 0);
+        }
+
+        private Store(float[] floats, short[] shorts, int[] nameIds, String[] names, Map<String, Integer> nameIndex,
+                int n, int capacity, int count) {
+            this.floats = floats;
+            this.shorts = shorts;
+            this.nameIds = nameIds;
+            this.names = names;
+            this.nameIndex = nameIndex;
+            this.n = n;
+            this.capacity = capacity;
+            this.count = count;
+        }
+
+        /**
+         * @param needed   number of templates the store has to hold
+         * @param newNames most names that may be added
+         * @return this store, or a copy with larger arrays if it cannot hold them
+         */
+        Store withRoom(int needed, int newNames) {
+            int neededNames = nameIndex.size() + newNames;
+            if (needed <= capacity && neededNames <= names.length) {
+                return this;
+            }
+            String[] table = neededNames <= names.length ? names
+                    : Arrays.copyOf(names, Math.max(neededNames, names.length * 2));
+            if (needed <= capacity) {
+                return new Store(floats, shorts, nameIds, table, nameIndex, n, capacity, count);
+            }
+            // One coordinate array holds every template, so an int has to index all of them
+            int limit = Integer.MAX_VALUE / (2 * n);
+            if (needed > limit) {
+                throw new IllegalStateException("At most " + limit + " templates of " + n + " points fit");
+            }
+            int grown = (int) Math.min(Math.max(needed, capacity * 2L), limit);
+            return new Store(floats != null ? Arrays.copyOf(floats, 2 * n * grown) : null,
+                    shorts != null ? Arrays.copyOf(shorts, 2 * n * grown) : null,
+                    Arrays.copyOf(nameIds, grown), table, new HashMap<>(nameIndex), n, grown, count);
+        }
+
+        Store withCount(int count) {
+            return new Store(floats, shorts, nameIds, names, nameIndex, n, capacity, count);
+        }
+
+        /**
+         * Index of a name in the name table, adding it if it is new. Only called by the thread
+         * holding the library's lock after withRoom made space; readers only look up the names of
+         * published templates.
+         */
+        int nameId(String name) {
+            Integer id = nameIndex.get(name);
+            if (id == null) {
+                id = nameIndex.size();
+                names[id] = name;
+                nameIndex.put(name, id);
+            }
+            return id;
+        }
+
+        /**
+         * Distance of point i of the template at offset from the origin
+         */
+        double radius(int offset, int i) {
+            double x;
+            double y;
+            if (floats != null) {
+                x = floats[offset + i];
+                y = floats[offset + n + i];
+            } else {
+                x = shorts[offset + i] * INT16_STEP;
+                y = shorts[offset + n + i] * INT16_STEP;
+            }
+            return Math.sqrt(x * x + y * y);
+        }
+
+        String name(int index) {
+            return names[nameIds[index]];
+        }
+
+        void set(int index, int nameId, GesturePath path) {
+            int offset = 2 * n * index;
+            for (int i = 0; i < n; i++) {
+                if (floats != null) {
+                    floats[offset + i] = (float) path.getX(i);
+                    floats[offset + n + i] = (float) path.getY(i);
+                } else {
+                    shorts[offset + i] = toInt16(path.getX(i));
+                    shorts[offset + n + i] = toInt16(path.getY(i));
+                }
+            }
+            nameIds[index] = nameId;
+        }
+
+        void get(int index, GesturePath out) {
+            out.clear();
+            int offset = 2 * n * index;
+            for (int i = 0; i < n; i++) {
+                if (floats != null) {
+                    out.add(floats[offset + i], floats[offset + n + i]);
+                } else {
+                    out.add(shorts[offset + i] * INT16_STEP, shorts[offset + n + i] * INT16_STEP);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rounds a normalized coordinate to the closest INT16 step
+     */
+    static short toInt16(double coordinate) {
+        long steps = Math.round(coordinate / INT16_STEP);
+        if (steps < Short.MIN_VALUE || steps > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Coordinate " + coordinate + " is outside the normalized box");
+        }
+        return (short) steps;
+    }
+}
@@ -0,0 +1,216 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads and writes the JSON the recognition service speaks. A stroke is an array of [x, y] pairs, a
+ * gesture is either one stroke or an array of strokes, and a batch is an array of gestures:
+ * <pre>
+ * [[10, 20], [11, 22], ...]                         one stroke
+ * [[[10, 20], [11, 22]], [[50, 20], [50, 60]]]      two strokes
+ * [gesture, gesture, ...]                           a batch
+ * </pre>
+ * Only arrays of numbers are accepted, which is all the service needs, so this is a small
+ * recursive descent parser rather than a JSON library.
+ */
+final class PointArrays {
+
+    /**
+     * Deepest nesting of arrays accepted: a batch of multistroke gestures, whose points are four
+     * arrays deep. Limiting it keeps a body of brackets from overflowing the stack.
+     */
+    static final int MAX_DEPTH = 4;
+
+    private final String text;
+    private int position;
+
+    private PointArrays(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param json a gesture
+     * @return its strokes
+     * @throws IllegalArgumentException if the text is not a gesture
+     */
+    static List<Deque<Point>> parseGesture(String json) {
+        return toGesture(parse(json));
+    }
+
+    /**
+     * @param json an array of gestures
+     * @return the strokes of each gesture
+     * @throws IllegalArgumentException if the text is not an array of gestures
+     */
+    static List<List<Deque<Point>>> parseBatch(String json) {
+        Object value = parse(json);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Expected an array of gestures");
+        }
+        List<List<Deque<Point>>> gestures = new ArrayList<>();
+        for (Object gesture : (List<?>) value) {
+            gestures.add(toGesture(gesture));
+        }
+        return gestures;
+    }
+
+    private static Object parse(String json) {
+        PointArrays parser = new PointArrays(json);
+        Object value = parser.value(1);
+        parser.skipWhitespace();
+        if (parser.position != json.length()) {
+            throw parser.error("Unexpected text after the end of the array");
+        }
+        return value;
+    }
+
+    private static List<Deque<Point>> toGesture(Object value) {
+        List<?> list = asList(value, "a gesture");
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("A gesture needs at least one point");
+        }
+        List<Deque<Point>> strokes = new ArrayList<>();
+        // A stroke's elements are [x, y] pairs; a list of strokes has arrays of pairs instead
+        Object first = asList(list.get(0), "a point or stroke").isEmpty() ? null : ((List<?>) list.get(0)).get(0);
+        if (first instanceof List) {
+            for (Object stroke : list) {
+                strokes.add(toStroke(stroke));
+            }
+        } else {
+            strokes.add(toStroke(list));
+        }
+        return strokes;
+    }
+
+    private static Deque<Point> toStroke(Object value) {
+        Deque<Point> stroke = new ArrayDeque<>();
+        for (Object pair : asList(value, "a stroke")) {
+            List<?> coordinates = asList(pair, "an [x, y] point");
+            if (coordinates.size() != 2 || !(coordinates.get(0) instanceof Double)
+                    || !(coordinates.get(1) instanceof Double)) {
+                throw new IllegalArgumentException("Expected an [x, y] point, got " + coordinates);
+            }
+            stroke.add(new Point((Double) coordinates.get(0), (Double) coordinates.get(1)));
+        }
+        if (stroke.isEmpty()) {
+            throw new IllegalArgumentException("A stroke needs at least one point");
+        }
+        return stroke;
+    }
+
+    private static List<?> asList(Object value, String expected) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Expected " + expected + ", got " + value);
+        }
+        return (List<?>) value;
+    }
+
+    private Object value(int depth) {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        if (text.charAt(position) == '[') {
+            if (depth > MAX_DEPTH) {
+                throw error("Arrays are nested more than " + MAX_DEPTH + " deep");
+            }
+            position++;
+            List<Object> values = new ArrayList<>();
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == ']') {
+                position++;
+                return values;
+            }
+            while (true) {
+                values.add(value(depth + 1));
+                skipWhitespace();
+                if (position >= text.length()) {
+                    throw error("Unterminated array");
+                }
+                char c = text.charAt(position++);
+                if (c == ']') {
+                    return values;
+                }
+                if (c != ',') {
+                    throw error("Expected , or ]");
+                }
+            }
+        }
+        int start = position;
+        while (position < text.length() && "+-.eE0123456789".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            double number = Double.parseDouble(text.substring(start, position));
+            if (!Double.isFinite(number)) {
+                throw error("Coordinates must be finite");
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw error("Expected a number or an array");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at character " + position);
+    }
+
+    /**
+     * @param stroke points
+     * @return the stroke as a JSON array of [x, y] pairs
+     */
+    static String toJson(Deque<Point> stroke) {
+        StringBuilder json = new StringBuilder(stroke.size() * 16);
+        json.append('[');
+        for (Point point : stroke) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(point.getX()).append(',').append(point.getY()).append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * @param result a match, or null for no match
+     * @return the match as a JSON object with its name, score and distance, or null
+     */
+    static String toJson(RecognitionResult result) {
+        if (result == null) {
+            return "null";
+        }
+        return String.format(Locale.ROOT, "{\"name\":%s,\"score\":%.6f,\"distance\":%.6f}", quote(result.getName()),
+                result.getScore(), result.getDistance());
+    }
+
+    /**
+     * @param value any string
+     * @return the string as a JSON string literal
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
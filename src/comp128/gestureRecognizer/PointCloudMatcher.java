@@ -0,0 +1,461 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A point cloud recognition engine in the style of $Q (Vatavu, Anthony and Wobbrock, "$Q: A
+ * Super-Quick, Articulation-Invariant Stroke-Gesture Recognizer for Low-Resource Devices", 2018).
+ *
+ * Gestures are resampled to 32 points across all of their strokes, scaled uniformly and centered,
+ * and then compared as unordered sets: points are matched greedily to their closest unmatched
+ * counterpart, with earlier matches weighted more, starting from several points of the cloud and in
+ * both directions. Stroke order, stroke direction and the number of strokes do not matter.
+ *
+ * Greedy cloud matching costs O(n^2) per start, so most of the work is avoided:
+ * <ul>
+ *     <li>each cloud has a 64 by 64 lookup table giving, for every grid cell, its closest point;
+ *     summing the distance from each point to the other cloud's closest point gives a lower bound
+ *     for every start in O(n), and starts whose bound cannot beat the best distance so far are
+ *     skipped. The table is on a grid, so the bound is approximate, as in $Q.</li>
+ *     <li>a cloud distance stops as soon as its partial sum reaches the best distance so far,
+ *     across all starts and all templates.</li>
+ * </ul>
+ *
+ * Thread safe in the same way as Recognizer: the templates are an immutable array that is
+ * replaced when templates are added or removed.
+ */
+public class PointCloudMatcher implements GestureMatcher {
+
+    static final int NUM_POINTS = 32;
+    static final int LUT_SIZE = 64;
+    private static final int MAX_INT_COORD = 1024;
+    private static final int LUT_SCALE = MAX_INT_COORD / LUT_SIZE;
+
+    private final AtomicReference<PointCloud[]> clouds;
+    private volatile boolean lowerBounds;
+
+    /**
+     * Constructs a matcher with no templates
+     */
+    public PointCloudMatcher() {
+        clouds = new AtomicReference<>(new PointCloud[0]);
+        lowerBounds = true;
+    }
+
+    @Override
+    public Template addTemplate(String name, Deque<Point> points) {
+        return addTemplate(name, Collections.singletonList(points));
+    }
+
+    @Override
+    public Template addTemplate(String name, List<Deque<Point>> strokes) {
+        PointCloud cloud = new PointCloud(name, strokes);
+        clouds.updateAndGet(current -> {
+            PointCloud[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = cloud;
+            return grown;
+        });
+        return cloud.template;
+    }
+
+    @Override
+    public int removeTemplates(String name) {
+        PointCloud[] before = clouds.getAndUpdate(current -> Arrays.stream(current)
+                .filter(cloud -> !cloud.template.getName().equals(name))
+                .toArray(PointCloud[]::new));
+        int removed = 0;
+        for (PointCloud cloud : before) {
+            if (cloud.template.getName().equals(name)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Template> getTempList() {
+        List<Template> templates = new ArrayList<>();
+        for (PointCloud cloud : clouds.get()) {
+            templates.add(cloud.template);
+        }
+        return templates;
+    }
+
+    @Override
+    public RecognitionResult classify(Deque<Point> input) {
+        return classify(Collections.singletonList(input));
+    }
+
+    @Override
+    public RecognitionResult classify(List<Deque<Point>> strokes) {
+        List<RecognitionResult> results = recognizeTopK(strokes, 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Override
+    public List<RecognitionResult> recognizeTopK(Deque<Point> input, int k) {
+        return recognizeTopK(Collections.singletonList(input), k);
+    }
+
+    /**
+     * Finds the k closest templates to a multistroke gesture. The k-th best distance so far is the
+     * bound that lower bounds and early abandoning work against.
+     *
+     * @param strokes the strokes, in drawing order
+     * @param k       number of templates wanted, at least 1
+     * @return up to k matches, closest first
+     */
+    @Override
+    public List<RecognitionResult> recognizeTopK(List<Deque<Point>> strokes, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1: " + k);
+        }
+        PointCloud gesture = new PointCloud(null, strokes);
+        PointCloud[] templates = clouds.get();
+        CandidateHeap candidates = new CandidateHeap(k);
+        boolean bounded = lowerBounds;
+        for (int i = 0; i < templates.length; i++) {
+            double bound = candidates.bound();
+            double distance = cloudMatch(gesture, templates[i], bound, bounded);
+            if (distance < bound) {
+                candidates.offer(new Match(i, distance));
+            }
+        }
+        List<Match> matches = candidates.sorted();
+        List<RecognitionResult> results = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            results.add(new RecognitionResult(templates[match.index].template, score(match.distance),
+                    match.distance, 0));
+        }
+        return results;
+    }
+
+    /**
+     * Turns the lower bound skipping on or off. The bounds come from a grid, so skipping can very
+     * occasionally miss the closest template; turning it off matches every start in full, which is
+     * only useful for comparison.
+     *
+     * @param lowerBounds whether to skip starts whose lower bound cannot win
+     */
+    public void setLowerBounds(boolean lowerBounds) {
+        this.lowerBounds = lowerBounds;
+    }
+
+    public boolean isLowerBounds() {
+        return lowerBounds;
+    }
+
+    /**
+     * $Q's score: 1 for a distance of at most 1, falling off as 1 / distance beyond it
+     */
+    static double score(double distance) {
+        return distance > 1 ? 1 / distance : 1;
+    }
+
+    /**
+     * Smallest cloud distance between two clouds over every start tried, in both directions
+     *
+     * @param minSoFar distance to beat
+     * @return the distance, or minSoFar if it could not be beaten
+     */
+    static double cloudMatch(PointCloud gesture, PointCloud template, double minSoFar, boolean bounded) {
+        int n = NUM_POINTS;
+        int step = (int) Math.floor(Math.sqrt(n));
+        double[] lb1 = bounded ? lowerBounds(gesture, template, step) : null;
+        double[] lb2 = bounded ? lowerBounds(template, gesture, step) : null;
+        for (int i = 0, j = 0; i < n; i += step, j++) {
+            if (!bounded || lb1[j] < minSoFar) {
+                minSoFar = Math.min(minSoFar, cloudDistance(gesture, template, i, minSoFar));
+            }
+            if (!bounded || lb2[j] < minSoFar) {
+                minSoFar = Math.min(minSoFar, cloudDistance(template, gesture, i, minSoFar));
+            }
+        }
+        return minSoFar;
+    }
+
+    /**
+     * Greedily matches each point of a, starting at start and wrapping around, to the closest
+     * point of b not matched yet. The first match has weight n and each following one weight one
+     * less.
+     *
+     * @return the weighted sum of squared distances, or a value of at least minSoFar as soon as the
+     *         sum reaches it
+     */
+    static double cloudDistance(PointCloud a, PointCloud b, int start, double minSoFar) {
+        int n = NUM_POINTS;
+        double[] bxs = b.xs;
+        double[] bys = b.ys;
+        // Unmatched points of b are kept in unmatched[0, remaining)
+        int[] unmatched = new int[n];
+        for (int j = 0; j < n; j++) {
+            unmatched[j] = j;
+        }
+        int remaining = n;
+        double sum = 0;
+        int weight = n;
+        int i = start;
+        do {
+            double x = a.xs[i];
+            double y = a.ys[i];
+            int closest = 0;
+            double closestDistance = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < remaining; j++) {
+                double dx = x - bxs[unmatched[j]];
+                double dy = y - bys[unmatched[j]];
+                double d = dx * dx + dy * dy;
+                if (d < closestDistance) {
+                    closestDistance = d;
+                    closest = j;
+                }
+            }
+            unmatched[closest] = unmatched[--remaining];
+            sum += weight * closestDistance;
+            if (sum >= minSoFar) {
+                return sum;
+            }
+            weight--;
+            i = (i + 1) % n;
+        } while (i != start);
+        return sum;
+    }
+
+    /**
+     * Lower bounds on cloudDistance(a, b, start) for every step-th start. Each point of a is paired
+     * with the point of b that b's lookup table gives for its grid cell, which any greedy matching
+     * can only do as well as. With d(i) that squared distance, the bound for start s is the sum of
+     * (n - (i - s) mod n) * d(i), which prefix sums of d give for every s at once.
+     */
+    static double[] lowerBounds(PointCloud a, PointCloud b, int step) {
+        int n = NUM_POINTS;
+        double[] bounds = new double[n / step + 1];
+        double[] prefix = new double[n];
+        for (int i = 0; i < n; i++) {
+            int closest = b.lut[a.cells[i]];
+            double dx = a.xs[i] - b.xs[closest];
+            double dy = a.ys[i] - b.ys[closest];
+            double d = dx * dx + dy * dy;
+            prefix[i] = i == 0 ? d : prefix[i - 1] + d;
+            bounds[0] += (n - i) * d;
+        }
+        for (int i = step, j = 1; i < n; i += step, j++) {
+            bounds[j] = bounds[0] + i * prefix[n - 1] - n * prefix[i - 1];
+        }
+        return bounds;
+    }
+
+    /**
+     * A gesture normalized for point cloud matching, with its lookup table
+     */
+    static final class PointCloud {
+        final Template template;
+        final double[] xs = new double[NUM_POINTS];
+        final double[] ys = new double[NUM_POINTS];
+
+        /**
+         * Lookup table cell of each point
+         */
+        final int[] cells = new int[NUM_POINTS];
+
+        /**
+         * For each cell of the LUT_SIZE by LUT_SIZE grid, stored row by row, the closest point
+         */
+        final int[] lut = new int[LUT_SIZE * LUT_SIZE];
+
+        /**
+         * @param name    template name, or null for a gesture being recognized
+         * @param strokes the strokes, in drawing order
+         */
+        PointCloud(String name, List<Deque<Point>> strokes) {
+            resample(strokes);
+            scaleAndCenter();
+            buildLut();
+            template = name == null ? null : new Template(name, new GesturePath(xs.clone(), ys.clone(), NUM_POINTS));
+        }
+
+        /**
+         * Spaces NUM_POINTS points evenly along the strokes, without joining the end of one stroke
+         * to the start of the next
+         */
+        private void resample(List<Deque<Point>> strokes) {
+            double length = 0;
+            int total = 0;
+            for (Deque<Point> stroke : strokes) {
+                Point previous = null;
+                for (Point point : stroke) {
+                    if (previous != null) {
+                        length += point.distance(previous);
+                    }
+                    previous = point;
+                    total++;
+                }
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("A point cloud needs at least one point");
+            }
+            double interval = length / (NUM_POINTS - 1);
+            double covered = 0;
+            int count = 0;
+            double lastX = 0;
+            double lastY = 0;
+            for (Deque<Point> stroke : strokes) {
+                double px = Double.NaN;
+                double py = Double.NaN;
+                for (Point point : stroke) {
+                    double x = point.getX();
+                    double y = point.getY();
+                    if (count == 0) {
+                        xs[0] = x;
+                        ys[0] = y;
+                        count = 1;
+                    } else if (!Double.isNaN(px) && interval > 0) {
+                        double d = Math.sqrt((x - px) * (x - px) + (y - py) * (y - py));
+                        while (covered + d >= interval && count < NUM_POINTS && d > 0) {
+                            double t = (interval - covered) / d;
+                            px += t * (x - px);
+                            py += t * (y - py);
+                            xs[count] = px;
+                            ys[count] = py;
+                            count++;
+                            d = Math.sqrt((x - px) * (x - px) + (y - py) * (y - py));
+                            covered = 0;
+                        }
+                        covered += d;
+                    }
+                    px = x;
+                    py = y;
+                    lastX = x;
+                    lastY = y;
+                }
+            }
+            // Rounding can leave the last point or two short
+            for (; count < NUM_POINTS; count++) {
+                xs[count] = lastX;
+                ys[count] = lastY;
+            }
+        }
+
+        /**
+         * Scales uniformly so the larger side of the bounding box is 1 and moves the centroid to
+         * the origin
+         */
+        private void scaleAndCenter() {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < NUM_POINTS; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            double size = Math.max(maxX - minX, maxY - minY);
+            double scale = size > 0 ? 1 / size : 1;
+            double sumX = 0;
+            double sumY = 0;
+            for (int i = 0; i < NUM_POINTS; i++) {
+                xs[i] = (xs[i] - minX) * scale;
+                ys[i] = (ys[i] - minY) * scale;
+                sumX += xs[i];
+                sumY += ys[i];
+            }
+            double cx = sumX / NUM_POINTS;
+            double cy = sumY / NUM_POINTS;
+            for (int i = 0; i < NUM_POINTS; i++) {
+                xs[i] -= cx;
+                ys[i] -= cy;
+            }
+        }
+
+        /**
+         * Maps the points, which lie within [-1, 1], onto the lookup grid and finds the closest
+         * point to every cell.
+         *
+         * Within one grid row, the squared distance from column c to point i is (c - column(i))^2
+         * plus a constant, the squared row difference: a parabola in c. The closest point to each
+         * cell of the row is whichever parabola is lowest there, and the lower envelope of
+         * parabolas with sorted vertices takes one pass to build (Felzenszwalb and Huttenlocher's
+         * distance transform). That is O(points + LUT_SIZE) per row instead of
+         * O(points * LUT_SIZE), which matters because every gesture being recognized needs a table.
+         */
+        private void buildLut() {
+            int[] columns = new int[NUM_POINTS];
+            int[] rows = new int[NUM_POINTS];
+            Integer[] order = new Integer[NUM_POINTS];
+            for (int i = 0; i < NUM_POINTS; i++) {
+                columns[i] = cell(xs[i]);
+                rows[i] = cell(ys[i]);
+                cells[i] = rows[i] * LUT_SIZE + columns[i];
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(columns[a], columns[b]));
+
+            // Envelope: vertex point of each parabola and where each one starts being lowest
+            int[] envelope = new int[NUM_POINTS];
+            double[] starts = new double[NUM_POINTS + 1];
+            for (int row = 0; row < LUT_SIZE; row++) {
+                int top = -1;
+                for (int o = 0; o < NUM_POINTS; o++) {
+                    int i = order[o];
+                    int dy = rows[i] - row;
+                    long height = (long) dy * dy;
+                    if (top >= 0 && columns[envelope[top]] == columns[i]) {
+                        // Same vertex column: only the lower parabola can ever be closest
+                        int other = envelope[top];
+                        int otherDy = rows[other] - row;
+                        if (height >= (long) otherDy * otherDy) {
+                            continue;
+                        }
+                        top--;
+                    }
+                    double start = Double.NEGATIVE_INFINITY;
+                    while (top >= 0) {
+                        start = intersection(envelope[top], i, columns, rows, row);
+                        if (start > starts[top]) {
+                            break;
+                        }
+                        top--;
+                    }
+                    if (top < 0) {
+                        start = Double.NEGATIVE_INFINITY;
+                    }
+                    top++;
+                    envelope[top] = i;
+                    starts[top] = start;
+                }
+                int k = 0;
+                for (int column = 0; column < LUT_SIZE; column++) {
+                    while (k < top && starts[k + 1] <= column) {
+                        k++;
+                    }
+                    lut[row * LUT_SIZE + column] = envelope[k];
+                }
+            }
+        }
+
+        /**
+         * Column where the parabola of point b, further right, drops below the one of point a
+         */
+        private static double intersection(int a, int b, int[] columns, int[] rows, int row) {
+            double qa = columns[a];
+            double qb = columns[b];
+            double ha = (rows[a] - row) * (double) (rows[a] - row);
+            double hb = (rows[b] - row) * (double) (rows[b] - row);
+            return ((hb + qb * qb) - (ha + qa * qa)) / (2 * qb - 2 * qa);
+        }
+
+        private static int cell(double coordinate) {
+            long intCoordinate = Math.round((coordinate + 1) / 2 * (MAX_INT_COORD - 1));
+            int cell = (int) Math.round((double) intCoordinate / LUT_SCALE);
+            return Math.max(0, Math.min(LUT_SIZE - 1, cell));
+        }
+    }
+}
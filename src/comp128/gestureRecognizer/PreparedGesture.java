@@ -0,0 +1,81 @@
+package comp128.gestureRecognizer;
+
+/**
+ * A normalized gesture together with the values derived from it that matching needs: its centroid,
+ * the Protractor vector, and the distance of every point from the centroid. These are computed once
+ * per recognition instead of once per template.
+ */
+final class PreparedGesture {
+
+    final GesturePath points;
+
+    /**
+     * Holds the raw points after the input filter, when there is one
+     */
+    final GesturePath filtered = new GesturePath();
+    double[] vector;
+    double[] radii;
+    double centroidX;
+    double centroidY;
+
+    /**
+     * Distance of the centroid from the origin. Templates are centered on the origin, so this is the
+     * slack the rotation invariant lower bound needs to allow for the gesture's centroid not being
+     * exactly there.
+     */
+    double centroidOffset;
+
+    PreparedGesture(int capacity) {
+        points = new GesturePath(capacity);
+        vector = new double[capacity * 2];
+        radii = new double[capacity];
+    }
+
+    /**
+     * Recomputes the derived values after points has been filled with a normalized gesture
+     */
+    void update() {
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double sumX = 0;
+        double sumY = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < points.size(); i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+            sumSquares += xs[i] * xs[i] + ys[i] * ys[i];
+        }
+        update(sumX, sumY, sumSquares);
+    }
+
+    /**
+     * Recomputes the derived values from sums already gathered while the points were normalized,
+     * computing the radii and the vector together in a single pass
+     *
+     * @param sumX       sum of the x coordinates
+     * @param sumY       sum of the y coordinates
+     * @param sumSquares sum of the squared distances of the points from the origin
+     */
+    void update(double sumX, double sumY, double sumSquares) {
+        int n = points.size();
+        if (radii.length < n) {
+            radii = new double[n];
+            vector = new double[n * 2];
+        }
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        centroidX = sumX / n;
+        centroidY = sumY / n;
+        centroidOffset = Math.sqrt(centroidX * centroidX + centroidY * centroidY);
+
+        double magnitude = Math.sqrt(sumSquares);
+        double inverse = magnitude > 0 ? 1 / magnitude : 1;
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - centroidX;
+            double dy = ys[i] - centroidY;
+            radii[i] = Math.sqrt(dx * dx + dy * dy);
+            vector[2 * i] = xs[i] * inverse;
+            vector[2 * i + 1] = ys[i] * inverse;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package comp128.gestureRecognizer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many templates each stage of the Recognizer's pruning cascade removed. The counters
+ * accumulate across recognitions until reset() is called, and can be updated from several matching
+ * threads at once.
+ *
+ * The stages, in the order a template meets them, are:
+ * <ol>
+ * <li>when the template index is in use, the triangle inequality bounds of the vantage point tree,
+ * which skip whole groups of templates at once,</li>
+ * <li>a coarse rotation invariant bound over every fourth point,</li>
+ * <li>the same bound over all points,</li>
+ * <li>the golden section search, whose distance evaluations stop early once they can no longer
+ * change the outcome of the search.</li>
+ * </ol>
+ */
+public class PruningStats {
+
+    private final LongAdder prunedByIndex = new LongAdder();
+    private final LongAdder templatesConsidered = new LongAdder();
+    private final LongAdder prunedByCoarseBound = new LongAdder();
+    private final LongAdder prunedByRadialBound = new LongAdder();
+    private final LongAdder fullSearches = new LongAdder();
+    private final LongAdder distanceEvaluations = new LongAdder();
+    private final LongAdder abandonedEvaluations = new LongAdder();
+
+    void recordIndexPruned(int count) {
+        prunedByIndex.add(count);
+    }
+
+    void recordConsidered() {
+        templatesConsidered.increment();
+    }
+
+    void recordCoarsePruned() {
+        prunedByCoarseBound.increment();
+    }
+
+    void recordRadialPruned() {
+        prunedByRadialBound.increment();
+    }
+
+    void recordFullSearch(int evaluations, int abandoned) {
+        fullSearches.increment();
+        distanceEvaluations.add(evaluations);
+        abandonedEvaluations.add(abandoned);
+    }
+
+    /**
+     * @return templates the index ruled out without looking at them individually
+     */
+    public long getPrunedByIndex() {
+        return prunedByIndex.sum();
+    }
+
+    /**
+     * @return templates that were looked at individually
+     */
+    public long getTemplatesConsidered() {
+        return templatesConsidered.sum();
+    }
+
+    /**
+     * @return templates skipped by the coarse, every fourth point bound
+     */
+    public long getPrunedByCoarseBound() {
+        return prunedByCoarseBound.sum();
+    }
+
+    /**
+     * @return templates skipped by the full rotation invariant bound
+     */
+    public long getPrunedByRadialBound() {
+        return prunedByRadialBound.sum();
+    }
+
+    /**
+     * @return templates that needed the golden section search
+     */
+    public long getFullSearches() {
+        return fullSearches.sum();
+    }
+
+    /**
+     * @return distanceAtAngle evaluations made by the golden section searches
+     */
+    public long getDistanceEvaluations() {
+        return distanceEvaluations.sum();
+    }
+
+    /**
+     * @return distanceAtAngle evaluations that stopped before visiting every point
+     */
+    public long getAbandonedEvaluations() {
+        return abandonedEvaluations.sum();
+    }
+
+    /**
+     * Sets every counter back to zero
+     */
+    public void reset() {
+        prunedByIndex.reset();
+        templatesConsidered.reset();
+        prunedByCoarseBound.reset();
+        prunedByRadialBound.reset();
+        fullSearches.reset();
+        distanceEvaluations.reset();
+        abandonedEvaluations.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "Pruned by index: " + getPrunedByIndex() + "\n"
+                + "Templates considered: " + getTemplatesConsidered() + "\n"
+                + "Pruned by coarse bound: " + getPrunedByCoarseBound() + "\n"
+                + "Pruned by radial bound: " + getPrunedByRadialBound() + "\n"
+                + "Full searches: " + getFullSearches() + "\n"
+                + "Distance evaluations: " + getDistanceEvaluations() + "\n"
+                + "Abandoned evaluations: " + getAbandonedEvaluations();
+    }
+}
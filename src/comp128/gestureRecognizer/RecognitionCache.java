@@ -0,0 +1,229 @@
+package comp128.gestureRecognizer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded least recently used cache of recognition results, for callers such as automated UI
+ * tests and replay tools that recognize the same gestures again and again. Gestures are looked up
+ * after normalization, by their points rounded to a grid of quantum units (templates are scaled to
+ * 250 units), so the same gesture drawn somewhere else on the screen, at another size or slightly
+ * rotated, and gestures that differ only by jitter smaller than the grid, all find the same entry.
+ * Two gestures only share an entry if every rounded point is the same; the hash just picks the
+ * bucket.
+ *
+ * Every entry belongs to the template snapshot it was computed against. As soon as a recognition
+ * sees a different snapshot, because templates were added or removed, the whole cache is cleared,
+ * so a stale match is never returned. The recognizer also clears it when a setting that changes
+ * results, such as the matching mode, is changed. Each clear starts a new settings generation, and
+ * a recognition that started in an earlier one neither reads nor stores entries, so a result
+ * computed with the old settings cannot be stored after the clear.
+ *
+ * A cache is safe to use from many threads. Each recognizer needs its own.
+ */
+public final class RecognitionCache {
+
+    /**
+     * Default grid size in normalized units, 0.4% of the normalized gesture size
+     */
+    public static final double DEFAULT_QUANTUM = 1;
+
+    private final int capacity;
+    private final double quantum;
+    private final LinkedHashMap<Key, RecognitionResult> entries;
+    private TemplateSnapshot snapshot;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param capacity most results kept
+     */
+    public RecognitionCache(int capacity) {
+        this(capacity, DEFAULT_QUANTUM);
+    }
+
+    /**
+     * @param capacity most results kept
+     * @param quantum  grid size in normalized units that points are rounded to; larger values let
+     *                 less similar gestures share results
+     */
+    public RecognitionCache(int capacity, double quantum) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1: " + capacity);
+        }
+        if (!(quantum > 0)) {
+            throw new IllegalArgumentException("Quantum must be positive: " + quantum);
+        }
+        this.capacity = capacity;
+        this.quantum = quantum;
+        entries = new LinkedHashMap<Key, RecognitionResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RecognitionResult> eldest) {
+                if (size() > RecognitionCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Works out the key of a normalized gesture
+     */
+    Key key(GesturePath normalized) {
+        int n = normalized.size();
+        int[] cells = new int[n * 2];
+        for (int i = 0; i < n; i++) {
+            cells[2 * i] = (int) Math.round(normalized.getX(i) / quantum);
+            cells[2 * i + 1] = (int) Math.round(normalized.getY(i) / quantum);
+        }
+        return new Key(cells);
+    }
+
+    /**
+     * @return the current settings generation, which clear moves on
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param key        the gesture's key
+     * @param snapshot   templates the result has to be for
+     * @param generation settings generation the recognition started in
+     * @return the cached result, or null
+     */
+    synchronized RecognitionResult get(Key key, TemplateSnapshot snapshot, long generation) {
+        if (generation != this.generation) {
+            misses.increment();
+            return null;
+        }
+        validate(snapshot);
+        RecognitionResult result = entries.get(key);
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Stores a result computed against the given templates, unless the settings have changed since
+     * the recognition started
+     */
+    synchronized void put(Key key, TemplateSnapshot snapshot, long generation, RecognitionResult result) {
+        if (generation != this.generation) {
+            return;
+        }
+        validate(snapshot);
+        entries.put(key, result);
+    }
+
+    /**
+     * Starts over when the templates are not the ones the entries were computed against. A
+     * recognition that started before a change and finishes after it also clears the cache, which
+     * costs the newer entries but never returns a stale result.
+     */
+    private void validate(TemplateSnapshot snapshot) {
+        if (this.snapshot != snapshot) {
+            if (!entries.isEmpty()) {
+                entries.clear();
+                invalidations.increment();
+            }
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Removes every entry and starts a new settings generation
+     */
+    public synchronized void clear() {
+        generation++;
+        if (!entries.isEmpty()) {
+            entries.clear();
+            invalidations.increment();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getQuantum() {
+        return quantum;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return entries dropped to make room for newer ones
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return times the cache was emptied because the templates or settings changed
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return fraction of lookups that found a result, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d of %d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions,"
+                + " %d invalidations", size(), capacity, getHits(), getMisses(), 100 * getHitRate(), getEvictions(),
+                getInvalidations());
+    }
+
+    /**
+     * A normalized gesture rounded to the grid
+     */
+    static final class Key {
+        private final int[] cells;
+        private final int hash;
+
+        Key(int[] cells) {
+            this.cells = cells;
+            this.hash = Arrays.hashCode(cells);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && hash == ((Key) other).hash && Arrays.equals(cells, ((Key) other).cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package comp128.gestureRecognizer;
+
+/**
+ * The outcome of recognizing one gesture: which template matched and how well. Results are
+ * immutable, like the templates they refer to, so they can be handed between threads and kept
+ * around freely.
+ */
+public final class RecognitionResult {
+
+    private final Template template;
+    private final double score;
+    private final double distance;
+    private final double angle;
+
+    RecognitionResult(Template template, double score, double distance, double angle) {
+        this.template = template;
+        this.score = score;
+        this.distance = distance;
+        this.angle = angle;
+    }
+
+    /**
+     * @return the template that matched
+     */
+    public Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return name of the template that matched
+     */
+    public String getName() {
+        return template.getName();
+    }
+
+    /**
+     * @return score between 0 and 1, where 1 is a perfect match
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return average distance between the normalized gesture's points and the template's, at the
+     *         best rotation
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return rotation in radians that was applied to the normalized gesture to line it up with the
+     *         template
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    @Override
+    public String toString() {
+        return "Match: " + getName() + " score: " + score + " distance: " + distance + " angle: " + angle;
+    }
+}
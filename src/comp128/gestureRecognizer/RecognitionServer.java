@@ -0,0 +1,363 @@
+package comp128.gestureRecognizer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.macalester.graphics.Point;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A headless recognition service on a local HTTP endpoint, so several clients such as tablets or
+ * kiosks can share one recognizer and its templates. It only listens on the loopback address.
+ *
+ * <pre>
+ * POST /recognize        a gesture (see PointArrays)   -&gt; {"name":..., "score":..., "distance":...}
+ * POST /recognize?k=5    a gesture                     -&gt; array of the 5 closest matches (k up to 100)
+ * POST /recognize/batch  an array of gestures          -&gt; array of matches, in order
+ * GET  /stats            request count and latency percentiles
+ * </pre>
+ *
+ * Each request is handled on its own virtual thread when the JVM has them (Java 21 and later), and
+ * on a cached pool of platform threads otherwise. A batch costs one round trip for any number of
+ * gestures, which is the cheaper way for a client with many gestures at once. Request latency is
+ * measured from the start of handling until the response is written. Malformed requests get a 400
+ * response and failures inside the matcher a 500; both are counted as errors.
+ *
+ * The JDK server writes the response headers and body separately. With Nagle's algorithm on, the
+ * body then waits for the client's delayed ACK, about 40 ms on every small response. main turns it
+ * off; a program embedding the server should launch the JVM with -Dsun.net.httpserver.nodelay=true.
+ * The property applies to every HttpServer in the JVM, so the class does not set it by itself.
+ *
+ * Run with main, or use LoadGenerator to put it under load.
+ */
+public class RecognitionServer {
+
+    static final int DEFAULT_PORT = 8128;
+
+    /**
+     * Largest request body accepted, in bytes
+     */
+    private static final int MAX_BODY = 16 << 20;
+
+    /**
+     * Most matches one request can ask for with ?k=
+     */
+    static final int MAX_K = 100;
+
+    private final GestureMatcher matcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LongAdder gestures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Creates a server on the loopback address. It does not accept requests until start is called.
+     *
+     * @param matcher engine holding the templates; it is shared by all requests, so it has to be
+     *                thread safe, as Recognizer and PointCloudMatcher are
+     * @param port    port to listen on, or 0 for any free port
+     */
+    public RecognitionServer(GestureMatcher matcher, int port) throws IOException {
+        this.matcher = matcher;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        executor = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "recognition-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/recognize", this::handleRecognize);
+        server.createContext("/recognize/batch", this::handleBatch);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor, which only exists from Java 21, by name so
+     * that the code still compiles and runs on older versions
+     *
+     * @return an executor that starts a virtual thread per task, or null if there are none
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones under way, and shuts the threads
+     * down
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the address clients should use, such as http://127.0.0.1:8128
+     */
+    public URI getUri() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    /**
+     * @return whether requests run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return latency of single gesture requests
+     */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * @return latency of whole batch requests
+     */
+    public LatencyHistogram getBatchLatency() {
+        return batchLatency;
+    }
+
+    private void handleRecognize(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        if (!exchange.getRequestURI().getPath().equals("/recognize")) {
+            respond(exchange, 404, error("Not found"));
+            return;
+        }
+        if (!requirePost(exchange)) {
+            return;
+        }
+        try {
+            List<Deque<Point>> strokes = PointArrays.parseGesture(readBody(exchange));
+            int k = topK(exchange.getRequestURI());
+            String response;
+            if (k > 0) {
+                response = toJson(matcher.recognizeTopK(strokes, k));
+            } else {
+                response = PointArrays.toJson(classify(strokes));
+            }
+            gestures.increment();
+            respond(exchange, 200, response);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error("Recognition failed: " + e));
+        } finally {
+            requestLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        if (!requirePost(exchange)) {
+            return;
+        }
+        try {
+            List<List<Deque<Point>>> batch = PointArrays.parseBatch(readBody(exchange));
+            StringBuilder response = new StringBuilder(batch.size() * 64).append('[');
+            for (List<Deque<Point>> strokes : batch) {
+                if (response.length() > 1) {
+                    response.append(',');
+                }
+                response.append(PointArrays.toJson(classify(strokes)));
+            }
+            gestures.add(batch.size());
+            respond(exchange, 200, response.append(']').toString());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error("Recognition failed: " + e));
+        } finally {
+            batchLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        String stats = String.format(Locale.ROOT,
+                "{\"gestures\":%d,\"errors\":%d,\"virtualThreads\":%b,\"requests\":%s,\"batches\":%s}",
+                gestures.sum(), errors.sum(), virtualThreads, toJson(requestLatency), toJson(batchLatency));
+        respond(exchange, 200, stats);
+    }
+
+    private RecognitionResult classify(List<Deque<Point>> strokes) {
+        return strokes.size() == 1 ? matcher.classify(strokes.get(0)) : matcher.classify(strokes);
+    }
+
+    private static int topK(URI uri) {
+        String query = uri.getQuery();
+        if (query == null) {
+            return 0;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("k=")) {
+                try {
+                    int k = Integer.parseInt(parameter.substring(2));
+                    if (k >= 1 && k <= MAX_K) {
+                        return k;
+                    }
+                } catch (NumberFormatException e) {
+                    // Reported below
+                }
+                throw new IllegalArgumentException("k must be a number from 1 to " + MAX_K + ": "
+                        + parameter.substring(2));
+            }
+        }
+        return 0;
+    }
+
+    private boolean requirePost(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("POST")) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", "POST");
+        respond(exchange, 405, error("Use POST"));
+        return false;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) {
+                throw new IllegalArgumentException("Request body is larger than " + MAX_BODY + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        if (status >= 400) {
+            errors.increment();
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + PointArrays.quote(String.valueOf(message)) + "}";
+    }
+
+    private static String toJson(List<RecognitionResult> results) {
+        StringBuilder json = new StringBuilder().append('[');
+        for (RecognitionResult result : results) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(PointArrays.toJson(result));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String toJson(LatencyHistogram latency) {
+        return String.format(Locale.ROOT,
+                "{\"count\":%d,\"meanMicros\":%.1f,\"p50Micros\":%.1f,\"p90Micros\":%.1f,\"p99Micros\":%.1f,"
+                        + "\"maxMicros\":%.1f}",
+                latency.getCount(), latency.getMeanMicros(), latency.getP50Micros(), latency.getP90Micros(),
+                latency.getP99Micros(), latency.getMaxMicros());
+    }
+
+    /**
+     * Starts a server.
+     *
+     * <pre>
+     * RecognitionServer [--port 8128] [--engine dollar|pointcloud] [--templates folder-or-zip]
+     * </pre>
+     *
+     * Without --templates, the templates in res are loaded.
+     */
+    public static void main(String[] args) throws IOException {
+        // Read once when the first server is created, so it has to be set before then
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = DEFAULT_PORT;
+        String engine = "dollar";
+        Path templates = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--engine":
+                    engine = args[i + 1];
+                    break;
+                case "--templates":
+                    templates = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("ERROR unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        GestureMatcher matcher = engine.equals("pointcloud") ? new PointCloudMatcher() : new Recognizer();
+        IOManager ioManager = new IOManager();
+        int count = 0;
+        if (templates == null) {
+            for (String file : new String[] {"arrowTemplate.xml", "circleTemplate.xml"}) {
+                Deque<Point> points = ioManager.loadGesture(file);
+                if (points != null) {
+                    matcher.addTemplate(file.replace("Template.xml", ""), points);
+                    count++;
+                }
+            }
+        } else {
+            List<NamedGesture> loaded = templates.toString().toLowerCase(Locale.ROOT).endsWith(".zip")
+                    ? ioManager.loadGestureArchive(templates) : ioManager.loadGestureDirectory(templates);
+            if (loaded != null) {
+                for (NamedGesture gesture : loaded) {
+                    matcher.addTemplate(gesture.getName(), gesture.getPath().toPoints());
+                }
+                count = loaded.size();
+            }
+        }
+
+        RecognitionServer server = new RecognitionServer(matcher, port);
+        server.start();
+        System.out.println("Serving " + count + " templates on " + server.getUri() + " using "
+                + (server.usesVirtualThreads() ? "virtual threads" : "a thread pool"));
+    }
+}
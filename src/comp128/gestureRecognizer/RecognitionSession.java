@@ -0,0 +1,274 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Recognizes a gesture while it is being drawn. Points are added one at a time as they arrive; the
+ * session keeps the running path length, and every few points recognizes the stroke so far and
+ * reports a provisional match. When the stroke ends, finish() gives the final match.
+ *
+ * Provisional matches are computed on the thread adding points unless an executor is set with
+ * setProvisionalExecutor. With an executor, a copy of the stroke so far is recognized in the
+ * background, one recognition at a time; points arriving while one runs do not start another, and
+ * only the latest result is kept.
+ *
+ * Finishing is cheap: the path length is already known so resampling does not have to measure the
+ * path again, the buffers are reused, and the last provisional winner is searched first so its
+ * distance prunes most of the other templates right away. If no points came in since the last
+ * provisional match, and neither the templates nor the recognizer's settings have changed since,
+ * that match is returned as is.
+ *
+ * When the recognizer has an input filter, points are filtered as they arrive, so the stroke kept
+ * by the session only holds the points the filter keeps.
+ *
+ * Apart from the background recognitions, sessions are not thread safe; feed each one from a single
+ * thread, such as the UI thread.
+ */
+public class RecognitionSession {
+
+    /**
+     * Fewest points worth recognizing
+     */
+    private static final int MIN_POINTS = 8;
+
+    private final Recognizer recognizer;
+    private final GesturePath path;
+    private final PreparedGesture gesture;
+    private final InputFilter.Incremental filter;
+    private int received;
+    private double length;
+
+    private int provisionalInterval;
+    private volatile Consumer<Template> provisionalListener;
+    private Executor provisionalExecutor;
+    private final GesturePath backgroundPath;
+    private final PreparedGesture backgroundGesture;
+    private final AtomicBoolean backgroundRunning;
+    private volatile Provisional provisional;
+    private volatile boolean finished;
+
+    /**
+     * Starts a session. Usually created with Recognizer.startSession().
+     *
+     * @param recognizer recognizer holding the templates
+     */
+    public RecognitionSession(Recognizer recognizer) {
+        this.recognizer = recognizer;
+        path = new GesturePath(256);
+        gesture = new PreparedGesture(recognizer.RESAMPLEINTERVAL);
+        InputFilter inputFilter = recognizer.getInputFilter();
+        filter = inputFilter == null ? null : inputFilter.start(path);
+        provisionalInterval = 10;
+        backgroundPath = new GesturePath(256);
+        backgroundGesture = new PreparedGesture(recognizer.RESAMPLEINTERVAL);
+        backgroundRunning = new AtomicBoolean();
+    }
+
+    /**
+     * Adds the next point of the stroke
+     *
+     * @param point point
+     */
+    public void addPoint(Point point) {
+        addPoint(point.getX(), point.getY());
+    }
+
+    /**
+     * Adds the next point of the stroke
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     */
+    public void addPoint(double x, double y) {
+        received++;
+        if (filter != null) {
+            filter.add(x, y);
+            length = filter.getLength();
+        } else {
+            int n = path.size();
+            if (n > 0) {
+                double dx = x - path.getX(n - 1);
+                double dy = y - path.getY(n - 1);
+                length += Math.sqrt(dx * dx + dy * dy);
+            }
+            path.add(x, y);
+        }
+
+        if (provisionalInterval > 0 && path.size() >= MIN_POINTS && received % provisionalInterval == 0) {
+            Executor executor = provisionalExecutor;
+            if (executor == null) {
+                report(recognize(path, length, gesture));
+            } else if (backgroundRunning.compareAndSet(false, true)) {
+                // The stroke keeps growing, so the background recognition works on a copy of it
+                backgroundPath.setPoints(path);
+                double backgroundLength = length;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            report(recognize(backgroundPath, backgroundLength, backgroundGesture));
+                        } finally {
+                            backgroundRunning.set(false);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    backgroundRunning.set(false);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps a provisional result and passes its match to the listener, unless the session has
+     * finished in the meantime
+     */
+    private void report(Provisional result) {
+        if (finished) {
+            return;
+        }
+        provisional = result;
+        Consumer<Template> listener = provisionalListener;
+        if (listener != null && result.match != null) {
+            listener.accept(result.match);
+        }
+    }
+
+    /**
+     * Recognizes the whole stroke
+     *
+     * @return closest template with its score, or null if there are no templates or fewer than two
+     *         points
+     */
+    public Template finish() {
+        finished = true;
+        if (filter != null) {
+            filter.finish();
+            length = filter.getLength();
+        }
+        if (path.size() < 2) {
+            return null;
+        }
+        Provisional last = provisional;
+        if (last != null && last.match != null && last.size == path.size()
+                && last.templates == recognizer.snapshot()
+                && last.settings == recognizer.getSettingsGeneration()) {
+            return last.match;
+        }
+        Provisional result = recognize(path, length, gesture);
+        provisional = result;
+        return result.match;
+    }
+
+    /**
+     * Recognizes a stroke, searching the latest provisional winner first
+     *
+     * @param stroke   points to recognize
+     * @param length   length of the stroke
+     * @param prepared buffer for the prepared gesture, not shared with any other thread
+     */
+    private Provisional recognize(GesturePath stroke, double length, PreparedGesture prepared) {
+        long settings = recognizer.getSettingsGeneration();
+        TemplateSnapshot templates = recognizer.snapshot();
+        Provisional last = provisional;
+        int hint = last != null && last.templates == templates ? last.index : -1;
+        RecognizerMetrics metrics = recognizer.getMetrics();
+        long prepareNanos = recognizer.prepare(stroke, length, prepared);
+        long start = metrics.start();
+        Match best = recognizer.findClosest(prepared, templates, hint);
+        Template result = null;
+        int index = -1;
+        if (best != null) {
+            index = best.index;
+            Template template = templates.templates.get(best.index);
+            result = template.withScore(recognizer.score(prepared, template, best));
+        }
+        metrics.recordMatch(start, prepareNanos);
+        return new Provisional(result, index, stroke.size(), templates, settings);
+    }
+
+    /**
+     * Sets how often a provisional match is computed
+     *
+     * @param provisionalInterval number of points added between provisional matches, or 0 for none
+     */
+    public void setProvisionalInterval(int provisionalInterval) {
+        this.provisionalInterval = provisionalInterval;
+    }
+
+    /**
+     * Sets the executor provisional matches are computed on, so that recognizing does not hold up
+     * the thread adding points
+     *
+     * @param provisionalExecutor executor, or null to recognize on the thread adding points
+     */
+    public void setProvisionalExecutor(Executor provisionalExecutor) {
+        this.provisionalExecutor = provisionalExecutor;
+    }
+
+    /**
+     * Sets a callback that receives every provisional match as it is computed. With a provisional
+     * executor, the callback runs on the executor's thread. It is not called after finish().
+     *
+     * @param provisionalListener callback, or null
+     */
+    public void onProvisionalMatch(Consumer<Template> provisionalListener) {
+        this.provisionalListener = provisionalListener;
+    }
+
+    /**
+     * @return the latest provisional match, or null if there has not been one
+     */
+    public Template getProvisionalMatch() {
+        Provisional last = provisional;
+        return last == null ? null : last.match;
+    }
+
+    /**
+     * @return whether finish() has been called
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the stroke so far, after the input filter if there is one
+     */
+    public GesturePath getPath() {
+        return path;
+    }
+
+    /**
+     * @return length of the stroke so far
+     */
+    public double getPathLength() {
+        return length;
+    }
+
+    public int size() {
+        return path.size();
+    }
+
+    /**
+     * A recognition of the stroke so far, with what it was computed from so finish() can tell
+     * whether it still holds
+     */
+    private static final class Provisional {
+        final Template match;
+        final int index;
+        final int size;
+        final TemplateSnapshot templates;
+        final long settings;
+
+        Provisional(Template match, int index, int size, TemplateSnapshot templates, long settings) {
+            this.match = match;
+            this.index = index;
+            this.size = size;
+            this.templates = templates;
+            this.settings = settings;
+        }
+    }
+}
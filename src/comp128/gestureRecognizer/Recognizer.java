@@ -3,32 +3,104 @@ package comp128.gestureRecognizer;
 
 import edu.macalester.graphics.Point;
 
-import java.time.temporal.Temporal;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.Iterator;
-
-import javax.crypto.Mac;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 
 /**
- * Recognizer to recognize 2D gestures. Uses the $1 gesture recognition algorithm.
+ * Recognizer to recognize 2D gestures. Uses the $1 gesture recognition algorithm. It is the
+ * unistroke GestureMatcher; multistroke gestures given to it are joined into one stroke, so
+ * PointCloudMatcher suits them better.
+ *
+ * The pipeline runs on GesturePath, which keeps coordinates in primitive arrays and is normalized in
+ * place. The Deque&lt;Point&gt; methods are thin adapters that convert to and from a GesturePath.
+ *
+ * Recognizers are thread safe. The templates are kept in an immutable snapshot that is replaced,
+ * never modified, when templates are added or removed, so any number of threads can recognize
+ * gestures while others change the templates, without locking. Each recognition sees the templates
+ * as they were when it started. Results carry their own scores and are never shared between
+ * recognitions. Templates themselves are immutable.
  */
-public class Recognizer {
+public class Recognizer implements GestureMatcher {
 
-    final int RESAMPLEINTERVAL = 64;
-    ArrayList<Template> tempList;
+    final int RESAMPLEINTERVAL;
     double bestScore;
     final double SIZE = 250;
+    private static final double ANGLE_RANGE = GoldenSectionAngles.RANGE;
+    private static final int PARALLEL_CHUNK_SIZE = 256;
+    private static final int BATCH_CHUNK_SIZE = 8;
+    private static final int COARSE_STEP = 4;
+    private static final double BOUND_SLACK = 1e-9;
+    private volatile MatchingMode matchingMode;
+    private volatile boolean parallelMatching;
+    private volatile int parallelThreshold;
+    private volatile ForkJoinPool pool;
+    private volatile boolean pruning;
+    private final PruningStats pruningStats;
+    private final RecognizerMetrics metrics;
+    private final AtomicReference<TemplateSnapshot> snapshot;
+    private volatile double indexApproximation;
+    private volatile DistanceKernel kernel;
+    private volatile double rotationResolution;
+    private volatile double angleRange;
+    private volatile InputFilter inputFilter;
+    private volatile RecognitionCache cache;
+    private final AtomicLong settingsGeneration = new AtomicLong();
 
     /**
-     * Constructs a recognizer object
+     * Constructs a recognizer object that resamples gestures to 64 points
      */
     public Recognizer() {
-        tempList = new ArrayList<>();
+        this(64);
+    }
+
+    /**
+     * Constructs a recognizer object. Fewer points make recognition faster and more points make it
+     * follow the shape of the gesture more closely; the $1 paper found 32 to 256 works well.
+     *
+     * @param resampleInterval number of points gestures and templates are resampled to, at least 2
+     */
+    public Recognizer(int resampleInterval) {
+        if (resampleInterval < 2) {
+            throw new IllegalArgumentException("Gestures need at least 2 points, not " + resampleInterval);
+        }
+        RESAMPLEINTERVAL = resampleInterval;
+        angleRange = ANGLE_RANGE;
+        snapshot = new AtomicReference<>(TemplateSnapshot.EMPTY);
         bestScore = 0;
+        matchingMode = MatchingMode.GOLDEN_SECTION;
+        parallelMatching = false;
+        parallelThreshold = 1024;
+        pool = ForkJoinPool.commonPool();
+        pruning = true;
+        pruningStats = new PruningStats();
+        metrics = new RecognizerMetrics();
+        kernel = DistanceKernels.preferred();
+    }
+
+    /**
+     * Selects how the best rotation between a gesture and each template is found
+     *
+     * @param matchingMode golden section search or Protractor's closed form solution
+     */
+    public void setMatchingMode(MatchingMode matchingMode) {
+        this.matchingMode = matchingMode;
+        settingsChanged();
+    }
+
+    public MatchingMode getMatchingMode() {
+        return matchingMode;
     }
 
 
@@ -39,16 +111,141 @@ public class Recognizer {
      * @param points in the template gesture's path
      */
     public Template addTemplate(String name, Deque<Point> points) {
+        return addTemplate(name, GesturePath.fromPoints(points));
+    }
 
-        Deque<Point> resampledPoints = resample(points, RESAMPLEINTERVAL);
-        Deque<Point> rotatedPoints = rotateBy(resampledPoints, -indicativeAngle(resampledPoints));
-        Deque<Point> scaledPoints = scaleTo(rotatedPoints, SIZE);
-        Deque<Point> translatedPoints = translateTo(scaledPoints, new Point(0, 0));
+    /**
+     * Create a template to use for matching
+     *
+     * @param name   of the template
+     * @param points in the template gesture's path
+     */
+    public Template addTemplate(String name, GesturePath points) {
+        Template template = createTemplate(name, points);
+        register(Collections.singletonList(template));
+        return template;
+    }
 
-        Template template = new Template(name, translatedPoints);
+    /**
+     * Creates templates for many gestures at once, such as a whole corpus loaded from disk. The
+     * gestures are normalized in parallel on the fork/join pool and then added in list order.
+     *
+     * @param gestures named gestures to use as templates
+     * @return the new templates, in the same order
+     */
+    public List<Template> addTemplates(List<NamedGesture> gestures) {
+        Template[] created = new Template[gestures.size()];
+        pool.submit(() -> IntStream.range(0, created.length).parallel().forEach(i -> {
+            NamedGesture gesture = gestures.get(i);
+            created[i] = createTemplate(gesture.getName(), gesture.getPath());
+        })).join();
+
+        List<Template> templates = Arrays.asList(created);
+        register(templates);
+        return templates;
+    }
 
-        tempList.add(template);
-        return template;
+    /**
+     * Adds templates that are already normalized by a recognizer with the same settings, such as
+     * those read from a template library snapshot. They are used as is.
+     *
+     * @param templates normalized templates
+     */
+    void addNormalizedTemplates(List<Template> templates) {
+        register(templates);
+    }
+
+    private Template createTemplate(String name, GesturePath points) {
+        InputFilter filter = inputFilter;
+        if (filter != null) {
+            GesturePath filtered = new GesturePath(points.size());
+            filter.apply(points, filtered);
+            points = filtered;
+        }
+        GesturePath normalized = new GesturePath(RESAMPLEINTERVAL);
+        normalize(points, normalized);
+        return new Template(name, normalized, null, null);
+    }
+
+    private void register(List<Template> templates) {
+        double resolution = rotationResolution;
+        if (resolution > 0) {
+            for (Template template : templates) {
+                template.buildRotations(resolution, angleRange);
+            }
+        }
+        snapshot.updateAndGet(current -> current.withAdded(templates));
+    }
+
+    /**
+     * Removes a template. Recognitions already under way may still return it.
+     *
+     * @param template template returned by addTemplate or found in getTempList, or a result of
+     *                 recognize, recognizeAll or a RecognitionSession, which removes the template it
+     *                 was copied from
+     * @return whether the template was found and removed
+     */
+    public boolean removeTemplate(Template template) {
+        Template original = template.getOriginal();
+        return removeTemplates(candidate -> candidate == original) > 0;
+    }
+
+    /**
+     * Removes every template with the given name. Recognitions already under way may still return
+     * them.
+     *
+     * @param name template name
+     * @return number of templates removed
+     */
+    public int removeTemplates(String name) {
+        return removeTemplates(candidate -> candidate.getName().equals(name));
+    }
+
+    /**
+     * Removes every template the given test accepts. Recognitions already under way may still return
+     * them.
+     *
+     * @param removed which templates to remove
+     * @return number of templates removed
+     */
+    public int removeTemplates(Predicate<Template> removed) {
+        while (true) {
+            TemplateSnapshot current = snapshot.get();
+            TemplateSnapshot updated = current.without(removed);
+            if (updated == current) {
+                return 0;
+            }
+            if (snapshot.compareAndSet(current, updated)) {
+                return current.templates.size() - updated.templates.size();
+            }
+        }
+    }
+
+    /**
+     * @return the current templates and index, which stay consistent with each other for as long as
+     *         they are used
+     */
+    TemplateSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Runs the full normalization pipeline (resample, rotate to the indicative angle, scale and
+     * translate to the origin) on a gesture. The stages are fused into three passes over the points
+     * by NormalizationKernel; the result matches running them one by one to within rounding.
+     *
+     * @param input gesture points, left unchanged
+     * @param out   path that receives the normalized points
+     */
+    public void normalize(GesturePath input, GesturePath out) {
+        normalize(input, pathLength(input), out);
+    }
+
+    /**
+     * Runs the normalization pipeline on a gesture whose path length is already known
+     */
+    void normalize(GesturePath input, double length, GesturePath out) {
+        new NormalizationKernel().normalize(input, RESAMPLEINTERVAL, length, SIZE, out);
     }
 
 
@@ -60,37 +257,309 @@ public class Recognizer {
      * @param templatePoints
      * @return best distance
      */
-    private double distanceAtBestAngle(Deque<Point> points, Deque<Point> templatePoints) {
-        double thetaA = -Math.toRadians(45);
-        double thetaB = Math.toRadians(45);
-        final double deltaTheta = Math.toRadians(2);
-        double phi = 0.5 * (-1.0 + Math.sqrt(5.0));// golden ratio
-        double x1 = phi * thetaA + (1 - phi) * thetaB;
-        double f1 = distanceAtAngle(points, templatePoints, x1);
-        double x2 = (1 - phi) * thetaA + phi * thetaB;
-        double f2 = distanceAtAngle(points, templatePoints, x2);
-        while (Math.abs(thetaB - thetaA) > deltaTheta) {
+    double distanceAtBestAngle(GesturePath points, GesturePath templatePoints) {
+        return distanceAtBestAngle(points, meanX(points), meanY(points), templatePoints, null, false, null);
+    }
+
+    /**
+     * Golden section search for the rotation that minimizes the distance between the gesture and the
+     * template.
+     *
+     * With abandon set, each new distance evaluation stops as soon as its partial sum shows it is
+     * larger than the other bracketing value it is about to be compared with. Such a value would be
+     * thrown away by the comparison anyway, so the search takes exactly the same steps and returns
+     * exactly the same distance as without abandoning.
+     *
+     * @param points         normalized gesture
+     * @param cx             x coordinate of the gesture centroid
+     * @param cy             y coordinate of the gesture centroid
+     * @param templatePoints normalized template
+     * @param rotations      the template's rotation table, or null
+     * @param abandon        whether evaluations may stop early
+     * @param stats          where to count evaluations, or null
+     * @return best distance
+     */
+    private double distanceAtBestAngle(GesturePath points, double cx, double cy, GesturePath templatePoints,
+            RotationTable rotations, boolean abandon, PruningStats stats) {
+        return goldenSectionSearch(points, cx, cy, templatePoints, rotations, abandon, stats, null);
+    }
+
+    /**
+     * The golden section search behind distanceAtBestAngle. The cosines and sines of the angles it
+     * tries are looked up in GoldenSectionAngles rather than computed. With a rotation table, every
+     * angle is rounded to the closest one in the table and the template's stored rotation is used
+     * instead of rotating the gesture.
+     *
+     * @param rotations the template's rotation table, or null to rotate the gesture
+     * @param angle     if not null, receives the rotation the best distance was found at in angle[0]
+     */
+    private double goldenSectionSearch(GesturePath points, double cx, double cy, GesturePath templatePoints,
+            RotationTable rotations, boolean abandon, PruningStats stats, double[] angle) {
+        double range = angleRange;
+        double thetaA = -range;
+        double thetaB = range;
+        double phi = GoldenSectionAngles.PHI;
+        int evaluations = 2;
+        int abandoned = 0;
+        // The precomputed angles only cover the default range; node 0 means compute them
+        boolean precomputed = range == GoldenSectionAngles.RANGE;
+        int node = precomputed ? 1 : 0;
+        double x1 = precomputed ? GoldenSectionAngles.FIRST : phi * thetaA + (1 - phi) * thetaB;
+        double f1 = rotations != null
+                ? tableDistance(points, cx, cy, rotations, x1, Double.POSITIVE_INFINITY)
+                : precomputed
+                        ? distanceAtAngle(points, cx, cy, templatePoints, GoldenSectionAngles.FIRST_COS,
+                                GoldenSectionAngles.FIRST_SIN, Double.POSITIVE_INFINITY)
+                        : distanceAtAngle(points, cx, cy, templatePoints, x1, Double.POSITIVE_INFINITY);
+        double x2 = precomputed ? GoldenSectionAngles.SECOND : (1 - phi) * thetaA + phi * thetaB;
+        double f2 = rotations != null
+                ? tableDistance(points, cx, cy, rotations, x2, abandon ? f1 : Double.POSITIVE_INFINITY)
+                : precomputed
+                        ? distanceAtAngle(points, cx, cy, templatePoints, GoldenSectionAngles.SECOND_COS,
+                                GoldenSectionAngles.SECOND_SIN, abandon ? f1 : Double.POSITIVE_INFINITY)
+                        : distanceAtAngle(points, cx, cy, templatePoints, x2, abandon ? f1 : Double.POSITIVE_INFINITY);
+        if (f2 == Double.POSITIVE_INFINITY) {
+            abandoned++;
+        }
+        while (Math.abs(thetaB - thetaA) > GoldenSectionAngles.TOLERANCE) {
             if (f1 < f2) {
+                node = 2 * node;
                 thetaB = x2;
                 x2 = x1;
                 f2 = f1;
                 x1 = phi * thetaA + (1 - phi) * thetaB;
-                f1 = distanceAtAngle(points, templatePoints, x1);
+                f1 = probe(points, cx, cy, templatePoints, rotations, node, x1,
+                        abandon ? f2 : Double.POSITIVE_INFINITY);
+                if (f1 == Double.POSITIVE_INFINITY) {
+                    abandoned++;
+                }
             } else {
+                node = 2 * node + 1;
                 thetaA = x1;
                 x1 = x2;
                 f1 = f2;
                 x2 = (1 - phi) * thetaA + phi * thetaB;
-                f2 = distanceAtAngle(points, templatePoints, x2);
+                f2 = probe(points, cx, cy, templatePoints, rotations, node, x2,
+                        abandon ? f1 : Double.POSITIVE_INFINITY);
+                if (f2 == Double.POSITIVE_INFINITY) {
+                    abandoned++;
+                }
             }
+            evaluations++;
+        }
+        if (stats != null) {
+            stats.recordFullSearch(evaluations, abandoned);
+        }
+        metrics.recordDistanceEvaluations(evaluations);
+        if (angle != null) {
+            double best = f1 < f2 ? x1 : x2;
+            angle[0] = rotations != null ? rotations.angle(rotations.nearest(best)) : best;
         }
         return Math.min(f1, f2);
     }
 
-    private double distanceAtAngle(Deque<Point> points, Deque<Point> templatePoints, double theta) {
-        Deque<Point> rotatedPoints = null;
-        rotatedPoints = rotateBy(points, theta);
-        return pathDistance(rotatedPoints, templatePoints);
+    /**
+     * Distance at one of the angles the golden section search tries after its first two
+     *
+     * @param node  the search's position in the GoldenSectionAngles tree, or 0 if the search is
+     *              not over the range the tree covers
+     * @param theta the angle itself
+     */
+    private double probe(GesturePath points, double cx, double cy, GesturePath templatePoints,
+            RotationTable rotations, int node, double theta, double limit) {
+        if (rotations != null) {
+            return tableDistance(points, cx, cy, rotations, theta, limit);
+        }
+        if (node > 0 && GoldenSectionAngles.contains(node)) {
+            return distanceAtAngle(points, cx, cy, templatePoints, GoldenSectionAngles.cos(node),
+                    GoldenSectionAngles.sin(node), limit);
+        }
+        return distanceAtAngle(points, cx, cy, templatePoints, theta, limit);
+    }
+
+    /**
+     * Path distance at the angle in the rotation table closest to theta
+     */
+    private double tableDistance(GesturePath points, double cx, double cy, RotationTable rotations, double theta,
+            double limit) {
+        int n = points.size();
+        double sumLimit = limit * n * (1 + 1e-9);
+        return rotations.distanceSum(kernel, points.xs(), points.ys(), n, cx, cy, rotations.nearest(theta), sumLimit)
+                / n;
+    }
+
+    /**
+     * Path distance between the gesture rotated by theta around its centroid and the template. The
+     * rotated points are computed on the fly instead of being stored.
+     */
+    private double distanceAtAngle(GesturePath points, GesturePath templatePoints, double theta) {
+        return distanceAtAngle(points, meanX(points), meanY(points), templatePoints, theta, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Path distance between the gesture rotated by theta around (cx, cy) and the template. Returns
+     * positive infinity as soon as the distance is certain to be larger than limit.
+     */
+    private double distanceAtAngle(GesturePath points, double cx, double cy, GesturePath templatePoints,
+            double theta, double limit) {
+        return distanceAtAngle(points, cx, cy, templatePoints, Math.cos(theta), Math.sin(theta), limit);
+    }
+
+    /**
+     * Path distance at the rotation with the given cosine and sine
+     */
+    private double distanceAtAngle(GesturePath points, double cx, double cy, GesturePath templatePoints,
+            double cos, double sin, double limit) {
+        int n = points.size();
+        // Slightly above limit * n, so a partial sum past it guarantees the final average is too
+        double sumLimit = limit * n * (1 + 1e-9);
+        double distance = kernel.rotatedDistanceSum(points.xs(), points.ys(), cx, cy, templatePoints.xs(),
+                templatePoints.ys(), n, cos, sin, sumLimit);
+        return distance / n;
+    }
+
+    /**
+     * Runs a template through the pruning cascade. Rotating the gesture around its centroid c does
+     * not change how far each point is from c, so by the triangle inequality
+     * |R(g - c) + c - t| &gt;= ||g - c| - |t|| - |c| for every rotation R. Averaged over the points
+     * this is a lower bound on the distance at any angle, and so on the result of the golden section
+     * search. The bound is first taken over every fourth point, then over all of them; if either one
+     * is already above the bound to beat, the template cannot win and the search is skipped.
+     *
+     * @param gesture prepared gesture
+     * @param template template to match
+     * @param bound   distance the template has to beat
+     * @param stats   where to count what was pruned
+     * @return the golden section distance, or positive infinity if the template was pruned
+     */
+    private double cascadeDistance(PreparedGesture gesture, Template template, double bound, PruningStats stats) {
+        double[] radii = gesture.radii;
+        double[] templateRadii = template.getRadii();
+        int n = gesture.points.size();
+        // Allow for rounding so that a pruned template could never have tied or won
+        double sumBound = (bound + BOUND_SLACK) * n;
+        stats.recordConsidered();
+
+        double sum = 0;
+        int counted = 0;
+        for (int i = 0; i < n; i += COARSE_STEP) {
+            sum += Math.abs(radii[i] - templateRadii[i]);
+            counted++;
+        }
+        if (sum - counted * gesture.centroidOffset > sumBound) {
+            stats.recordCoarsePruned();
+            return Double.POSITIVE_INFINITY;
+        }
+        for (int i = 0; i < n; i++) {
+            if (i % COARSE_STEP != 0) {
+                sum += Math.abs(radii[i] - templateRadii[i]);
+            }
+        }
+        if (sum - n * gesture.centroidOffset > sumBound) {
+            stats.recordRadialPruned();
+            return Double.POSITIVE_INFINITY;
+        }
+        return distanceAtBestAngle(gesture.points, gesture.centroidX, gesture.centroidY, template.getPath(),
+                rotations(template), true, stats);
+    }
+
+    /**
+     * Turns a normalized path into the vector form used by Protractor: the coordinates interleaved
+     * as x0, y0, x1, y1, ... and scaled to unit length.
+     *
+     * @param points normalized path, centered on the origin
+     * @return unit length vector of the points
+     */
+    public static double[] vectorize(GesturePath points) {
+        double[] vector = new double[points.size() * 2];
+        vectorize(points, vector);
+        return vector;
+    }
+
+    /**
+     * Writes the Protractor vector form of a normalized path into an existing array
+     *
+     * @param points normalized path, centered on the origin
+     * @param vector array of at least twice the path size
+     */
+    static void vectorize(GesturePath points, double[] vector) {
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double sum = 0;
+
+        for (int i = 0; i < points.size(); i++) {
+            vector[2 * i] = xs[i];
+            vector[2 * i + 1] = ys[i];
+            sum += xs[i] * xs[i] + ys[i] * ys[i];
+        }
+        double magnitude = Math.sqrt(sum);
+        if (magnitude > 0) {
+            for (int i = 0; i < points.size() * 2; i++) {
+                vector[i] /= magnitude;
+            }
+        }
+    }
+
+    /**
+     * Finds the rotation of the gesture vector that best lines it up with the template vector. Since
+     * the dot product of the rotated gesture and the template is a*cos(theta) + b*sin(theta), the
+     * best angle is atan2(b, a); it is clamped to the same range the golden section search covers.
+     *
+     * @param vector         unit vector of the gesture
+     * @param templateVector unit vector of the template
+     * @return best rotation angle in radians
+     */
+    static double protractorAngle(double[] vector, double[] templateVector) {
+        return protractorAngle(vector, templateVector, ANGLE_RANGE);
+    }
+
+    /**
+     * @param range largest rotation allowed either way, in radians
+     * @see #protractorAngle(double[], double[])
+     */
+    static double protractorAngle(double[] vector, double[] templateVector, double range) {
+        double a = 0;
+        double b = 0;
+        for (int i = 0; i < templateVector.length; i += 2) {
+            a += templateVector[i] * vector[i] + templateVector[i + 1] * vector[i + 1];
+            b += templateVector[i + 1] * vector[i] - templateVector[i] * vector[i + 1];
+        }
+        return bestAngle(a, b, range);
+    }
+
+    /**
+     * The angle that maximizes a*cos(theta) + b*sin(theta) within +/-range
+     */
+    private static double bestAngle(double a, double b, double range) {
+        return Math.max(-range, Math.min(range, Math.atan2(b, a)));
+    }
+
+    /**
+     * Protractor's angular distance between a gesture vector and a template vector: the angle between
+     * the two unit vectors once the gesture is rotated by the best angle.
+     *
+     * @param vector         unit vector of the gesture
+     * @param templateVector unit vector of the template
+     * @return angular distance in radians
+     */
+    static double protractorDistance(double[] vector, double[] templateVector) {
+        return protractorDistance(vector, templateVector, ANGLE_RANGE);
+    }
+
+    /**
+     * @param range largest rotation allowed either way, in radians
+     * @see #protractorDistance(double[], double[])
+     */
+    static double protractorDistance(double[] vector, double[] templateVector, double range) {
+        double a = 0;
+        double b = 0;
+        for (int i = 0; i < templateVector.length; i += 2) {
+            a += templateVector[i] * vector[i] + templateVector[i + 1] * vector[i + 1];
+            b += templateVector[i + 1] * vector[i] - templateVector[i] * vector[i + 1];
+        }
+        double angle = bestAngle(a, b, range);
+        double similarity = a * Math.cos(angle) + b * Math.sin(angle);
+        return Math.acos(Math.max(-1.0, Math.min(1.0, similarity)));
     }
 
     /**
@@ -101,20 +570,24 @@ public class Recognizer {
      * @return double: length of the original path
      */
     public double pathDistance(Deque<Point> a, Deque<Point> b) {
-        Iterator<Point> aIterator = a.iterator();
-        Iterator<Point> bIterator = b.iterator();
-        double distance = 0;
-        double avgDistance = 0;
-
-        while (aIterator.hasNext()) {
-            Point aCurrent = aIterator.next();
-            Point bCurrent = bIterator.next();
-            distance += aCurrent.distance(bCurrent);
-        }
-
-        avgDistance = distance / a.size();
+        return pathDistance(GesturePath.fromPoints(a), GesturePath.fromPoints(b));
+    }
 
-        return avgDistance;
+    /**
+     * Finds the average distance between corresponding points of two paths
+     *
+     * @param a rotated Points
+     * @param b templatePoints
+     * @return average point to point distance
+     */
+    public double pathDistance(GesturePath a, GesturePath b) {
+        double[] axs = a.xs();
+        double[] ays = a.ys();
+        double[] bxs = b.xs();
+        double[] bys = b.ys();
+        int n = a.size();
+        double distance = kernel.distanceSum(axs, ays, bxs, bys, n);
+        return distance / n;
     }
 
     /**
@@ -124,20 +597,24 @@ public class Recognizer {
      * @return double: path length
      */
     public double pathLength(Deque<Point> path) {
-        double length = 0;
-        Point currentPoint; // initial point to compare
-        Point nextPoint; // final point to compare (initial + 1)
-
-        Iterator<Point> iterator = path.iterator();
-        currentPoint = iterator.next();
-
-        while (iterator.hasNext()) {
-            nextPoint = iterator.next(); // Does that make them equla or one after the other?
+        return pathLength(GesturePath.fromPoints(path));
+    }
 
-            double deltaPoints = currentPoint.distance(nextPoint); // distance between points
+    /**
+     * finds length of path by incrementing the distance between each consecutive points
+     *
+     * @param path input path
+     * @return double: path length
+     */
+    public double pathLength(GesturePath path) {
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        double length = 0;
 
-            length += deltaPoints;
-            currentPoint = nextPoint;
+        for (int i = 1; i < path.size(); i++) {
+            double dx = xs[i] - xs[i - 1];
+            double dy = ys[i] - ys[i - 1];
+            length += Math.sqrt(dx * dx + dy * dy);
         }
         return length;
     }
@@ -145,42 +622,32 @@ public class Recognizer {
     /**
      * resamples input points into evenly spaced points equal to the remaple interval
      * 
-     * @param startingPoint
-     * @param inPathLength
-     * @param a
+     * @param path input points
+     * @param n    number of points to resample to
+     * @return resampled points
      */
     public Deque<Point> resample(Deque<Point> path, int n) {
-        Deque<Point> resampledPoints = new ArrayDeque<>();
-        double resampleInterval = pathLength(path) / (n - 1);
-
-        double cumDistance = 0;
-
-        resampledPoints.offer(path.peekFirst());
-
-        Iterator<Point> iterator = path.iterator();
-        Point p0 = iterator.next();
-        Point p1 = iterator.next();
-
-        while (iterator.hasNext()) {
-            double segmentDistance = p0.distance(p1);
-            if (segmentDistance + cumDistance >= resampleInterval) {
-                double alpha = (resampleInterval - cumDistance) / segmentDistance;
-                Point nextPoint = Point.interpolate(p0, p1, alpha);
-                resampledPoints.offerLast(nextPoint);
-                p0 = nextPoint;
-                cumDistance = 0;
-            } else {
-                cumDistance += segmentDistance;
-                p0 = p1;
-                p1 = iterator.next();
-            }
-        }
+        GesturePath resampled = new GesturePath(n);
+        resample(GesturePath.fromPoints(path), n, resampled);
+        return resampled.toPoints();
+    }
 
-        if (resampledPoints.size() < n) {
-            resampledPoints.add(path.getLast());
-        }
+    /**
+     * resamples input points into evenly spaced points equal to the remaple interval
+     *
+     * @param path input points, left unchanged
+     * @param n    number of points to resample to
+     * @param out  path that receives the resampled points
+     */
+    public void resample(GesturePath path, int n, GesturePath out) {
+        resample(path, n, pathLength(path), out);
+    }
 
-        return resampledPoints;
+    /**
+     * resamples input points using an already known path length
+     */
+    void resample(GesturePath path, int n, double length, GesturePath out) {
+        new NormalizationKernel().resample(path, n, length, out);
     }
 
 
@@ -191,9 +658,17 @@ public class Recognizer {
      * @return indicative angle
      */
     public double indicativeAngle(Deque<Point> resampled) {
+        return indicativeAngle(GesturePath.fromPoints(resampled));
+    }
 
-        double angle = findCentroid(resampled).subtract(resampled.peek()).angle();
-        return angle;
+    /**
+     * returns the indicative angle of points path
+     *
+     * @param resampled points path
+     * @return indicative angle
+     */
+    public double indicativeAngle(GesturePath resampled) {
+        return Math.atan2(meanY(resampled) - resampled.getY(0), meanX(resampled) - resampled.getX(0));
     }
 
     /**
@@ -205,14 +680,31 @@ public class Recognizer {
      * @return dequeue of rotated points
      */
     public Deque<Point> rotateBy(Deque<Point> inputDeque, double degree) {
-        Deque<Point> rotatedPoints = new ArrayDeque<>();
+        GesturePath path = GesturePath.fromPoints(inputDeque);
+        rotateBy(path, degree);
+        return path.toPoints();
+    }
 
-        for (Point point : inputDeque) {
-            point = point.rotate(degree, findCentroid(inputDeque));
-            rotatedPoints.add(point);
+    /**
+     * rotates all points in a path around its centroid, in place
+     *
+     * @param path   points to rotate
+     * @param degree degree in radians
+     */
+    public void rotateBy(GesturePath path, double degree) {
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        double cx = meanX(path);
+        double cy = meanY(path);
+        double cos = Math.cos(degree);
+        double sin = Math.sin(degree);
+
+        for (int i = 0; i < path.size(); i++) {
+            double dx = xs[i] - cx;
+            double dy = ys[i] - cy;
+            xs[i] = dx * cos - dy * sin + cx;
+            ys[i] = dx * sin + dy * cos + cy;
         }
-
-        return rotatedPoints;
     }
 
 
@@ -223,19 +715,26 @@ public class Recognizer {
      * @return centroid point
      */
     public static Point findCentroid(Deque<Point> inputDeque) {
-        double xTotal = 0;
-        double yTotal = 0;
-        Point centroid;
+        GesturePath path = GesturePath.fromPoints(inputDeque);
+        return new Point(meanX(path), meanY(path));
+    }
 
-        for (Point point : inputDeque) {
-            xTotal += point.getX();
-            yTotal += point.getY();
+    private static double meanX(GesturePath path) {
+        double[] xs = path.xs();
+        double total = 0;
+        for (int i = 0; i < path.size(); i++) {
+            total += xs[i];
         }
-        double centX = (xTotal / inputDeque.size());
-        double centY = (yTotal / inputDeque.size());
+        return total / path.size();
+    }
 
-        centroid = new Point(centX, centY);
-        return centroid;
+    private static double meanY(GesturePath path) {
+        double[] ys = path.ys();
+        double total = 0;
+        for (int i = 0; i < path.size(); i++) {
+            total += ys[i];
+        }
+        return total / path.size();
     }
 
 
@@ -247,16 +746,27 @@ public class Recognizer {
      * @return scaled points dequeue
      */
     public Deque<Point> scaleTo(Deque<Point> input, double size) {
-        Deque<Point> scaledPoints = new ArrayDeque<>();
-        double heightScale = size / findHeight(input);
-        double widthScale = size / findWidth(input);
+        GesturePath path = GesturePath.fromPoints(input);
+        scaleTo(path, size);
+        return path.toPoints();
+    }
 
-        for (Point point : input) {
-            Point scaledPoint = new Point(point.getX() * widthScale, point.getY() * heightScale);
-            scaledPoints.add(scaledPoint);
+    /**
+     * scales a path in place so that its bounding box has the given width and height
+     *
+     * @param path points to scale
+     * @param size size to scale to
+     */
+    public void scaleTo(GesturePath path, double size) {
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        double heightScale = size / findHeight(path);
+        double widthScale = size / findWidth(path);
+
+        for (int i = 0; i < path.size(); i++) {
+            xs[i] *= widthScale;
+            ys[i] *= heightScale;
         }
-
-        return scaledPoints;
     }
 
 
@@ -266,18 +776,17 @@ public class Recognizer {
      * @param input path
      * @return height
      */
-    private double findHeight(Deque<Point> input) {
+    private double findHeight(GesturePath input) {
+        double[] ys = input.ys();
         double maxY = Double.MIN_VALUE;
         double minY = Double.MAX_VALUE;
 
-        for (Point point : input) {
-            maxY = Math.max(point.getY(), maxY);
-            minY = Math.min(point.getY(), minY);
+        for (int i = 0; i < input.size(); i++) {
+            maxY = Math.max(ys[i], maxY);
+            minY = Math.min(ys[i], minY);
         }
 
-        double height = maxY - minY;
-
-        return height;
+        return maxY - minY;
     }
 
 
@@ -287,18 +796,17 @@ public class Recognizer {
      * @param input path
      * @return width
      */
-    private double findWidth(Deque<Point> input) {
+    private double findWidth(GesturePath input) {
+        double[] xs = input.xs();
         double maxX = Double.MIN_VALUE;
         double minX = Double.MAX_VALUE;
 
-        for (Point point : input) {
-            maxX = Math.max(point.getX(), maxX);
-            minX = Math.min(point.getX(), minX);
+        for (int i = 0; i < input.size(); i++) {
+            maxX = Math.max(xs[i], maxX);
+            minX = Math.min(xs[i], minX);
         }
 
-        double width = maxX - minX;
-
-        return width;
+        return maxX - minX;
     }
 
     /**
@@ -309,50 +817,783 @@ public class Recognizer {
      * @return
      */
     public Deque<Point> translateTo(Deque<Point> input, Point centerPoint) {
-        Deque<Point> translatedPath = new ArrayDeque<>();
-        Point centroid;
-        Point k = new Point(0, 0);
-
-        centroid = findCentroid(input);
+        GesturePath path = GesturePath.fromPoints(input);
+        translateTo(path, centerPoint.getX(), centerPoint.getY());
+        return path.toPoints();
+    }
 
-        for (Point point : input) {
-            point = point.add(k);
-            point = point.subtract(centroid);
-            translatedPath.add(point);
+    /**
+     * Moves a path in place so that its centroid lands on the given point
+     *
+     * @param path    points to translate
+     * @param centerX x coordinate of the new centroid
+     * @param centerY y coordinate of the new centroid
+     */
+    public void translateTo(GesturePath path, double centerX, double centerY) {
+        double[] xs = path.xs();
+        double[] ys = path.ys();
+        double dx = centerX - meanX(path);
+        double dy = centerY - meanY(path);
+
+        for (int i = 0; i < path.size(); i++) {
+            xs[i] += dx;
+            ys[i] += dy;
         }
-        return translatedPath;
     }
 
     /**
      * finds the best matching template to the gesture and its score
      * 
-     * @param input     gestrure dequeue
-     * @param arrayList array of possible templates
+     * @param input gestrure dequeue
      * @return closest template
      */
     public Template recognize(Deque<Point> input) {
-        Deque<Point> resampledPath = resample(input, RESAMPLEINTERVAL);
-        Deque<Point> rotatedPath = rotateBy(resampledPath, -indicativeAngle(resampledPath));
-        Deque<Point> scaledPath = scaleTo(rotatedPath, SIZE);
-        Deque<Point> translatedPath = translateTo(scaledPath, new Point(0, 0));
+        return recognize(GesturePath.fromPoints(input));
+    }
 
-        double bestDistance = Double.MAX_VALUE;
+    /**
+     * finds the best matching template to the gesture and its score
+     *
+     * @param input gesture path, left unchanged
+     * @return closest template, or null if there are no templates
+     */
+    public Template recognize(GesturePath input) {
+        RecognitionCache cache = this.cache;
+        // Read before anything depends on the settings, so a change during the match is noticed
+        long generation = cache != null ? cache.getGeneration() : 0;
+        PreparedGesture gesture = new PreparedGesture(RESAMPLEINTERVAL);
+        long prepareNanos = prepare(input, gesture);
+
+        long matchStart = metrics.start();
+        TemplateSnapshot templates = snapshot.get();
+        if (cache != null) {
+            RecognitionResult result = cachedMatch(cache, generation, gesture, templates);
+            metrics.recordMatch(matchStart, prepareNanos);
+            return result == null ? null : result.getTemplate().withScore(result.getScore());
+        }
+        Match best = findClosest(gesture, templates);
         Template closestTemplateNew = null;
-
-        for (Template temp : tempList) {
-            double distanceAtBestAngle = distanceAtBestAngle(translatedPath, temp.getTemplate());
-            if (distanceAtBestAngle < bestDistance){
-                bestDistance = distanceAtBestAngle;
-                closestTemplateNew = temp;
-            }            
+        if (best != null) {
+            Template template = templates.templates.get(best.index);
+            closestTemplateNew = template.withScore(score(gesture, template, best));
         }
-        double score = 1 - (bestDistance / (0.5 * Math.sqrt(SIZE * SIZE + SIZE * SIZE)));
-        closestTemplateNew.setScore(score);
+        metrics.recordMatch(matchStart, prepareNanos);
         return closestTemplateNew;
     }
 
+    /**
+     * Recognizes a gesture and describes the match in full
+     *
+     * @param input gesture points
+     * @return the match, or null if there are no templates
+     */
+    public RecognitionResult classify(Deque<Point> input) {
+        return classify(GesturePath.fromPoints(input));
+    }
+
+    /**
+     * Recognizes a gesture and describes the match in full: the template, its score, the distance
+     * the score is based on, and the rotation the gesture was matched at. Safe to call from many
+     * threads at once, also while templates are being added or removed.
+     *
+     * @param input gesture path, left unchanged
+     * @return the match, or null if there are no templates
+     */
+    public RecognitionResult classify(GesturePath input) {
+        RecognitionCache cache = this.cache;
+        long generation = cache != null ? cache.getGeneration() : 0;
+        PreparedGesture gesture = new PreparedGesture(RESAMPLEINTERVAL);
+        long prepareNanos = prepare(input, gesture);
+
+        long matchStart = metrics.start();
+        TemplateSnapshot templates = snapshot.get();
+        RecognitionResult result;
+        if (cache != null) {
+            result = cachedMatch(cache, generation, gesture, templates);
+        } else {
+            result = closest(gesture, templates);
+        }
+        metrics.recordMatch(matchStart, prepareNanos);
+        return result;
+    }
+
+    /**
+     * @return the closest template described in full, or null if there are no templates
+     */
+    private RecognitionResult closest(PreparedGesture gesture, TemplateSnapshot templates) {
+        Match best = findClosest(gesture, templates);
+        if (best == null) {
+            return null;
+        }
+        return describe(gesture, templates.templates.get(best.index), best.distance);
+    }
+
+    /**
+     * Looks the gesture up in the cache, and on a miss finds the closest template and caches it
+     *
+     * @param generation the cache's settings generation from before the gesture was prepared; if
+     *                   a setting has changed since, the cache is neither read nor written
+     */
+    private RecognitionResult cachedMatch(RecognitionCache cache, long generation, PreparedGesture gesture,
+            TemplateSnapshot templates) {
+        RecognitionCache.Key key = cache.key(gesture.points);
+        RecognitionResult result = cache.get(key, templates, generation);
+        if (result == null) {
+            result = closest(gesture, templates);
+            if (result != null) {
+                cache.put(key, templates, generation, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the k closest templates to a gesture
+     *
+     * @param input gesture points
+     * @param k     number of templates wanted, at least 1
+     * @return up to k matches, closest first
+     */
+    public List<RecognitionResult> recognizeTopK(Deque<Point> input, int k) {
+        return recognizeTopK(GesturePath.fromPoints(input), k);
+    }
+
+    /**
+     * Finds the k closest templates to a gesture in one pass over the templates. The candidates are
+     * kept in a heap of size k, and the k-th best distance so far is the bound the pruning cascade and
+     * the template index prune against, so asking for a few candidates costs little more than asking
+     * for one. The first result is always the template recognize would return.
+     *
+     * @param input gesture path, left unchanged
+     * @param k     number of templates wanted, at least 1
+     * @return up to k matches, closest first; fewer if there are fewer templates
+     */
+    public List<RecognitionResult> recognizeTopK(GesturePath input, int k) {
+        CandidateHeap candidates = new CandidateHeap(k);
+        PreparedGesture gesture = new PreparedGesture(RESAMPLEINTERVAL);
+        long prepareNanos = prepare(input, gesture);
+
+        long matchStart = metrics.start();
+        TemplateSnapshot templates = snapshot.get();
+        findClosest(gesture, templates, candidates);
+        List<Match> matches = candidates.sorted();
+        List<RecognitionResult> results = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            results.add(describe(gesture, templates.templates.get(match.index), match.distance));
+        }
+        metrics.recordMatch(matchStart, prepareNanos);
+        return results;
+    }
+
+    /**
+     * Works out the score, $1 distance and rotation of a matched template
+     *
+     * @param distance the template's distance in the current matching mode
+     */
+    RecognitionResult describe(PreparedGesture gesture, Template template, double distance) {
+        double angle;
+        if (matchingMode == MatchingMode.PROTRACTOR) {
+            angle = protractorAngle(gesture.vector, template.getVector(), angleRange);
+            metrics.recordDistanceEvaluations(1);
+            distance = distanceAtAngle(gesture.points, template.getPath(), angle);
+        } else {
+            double[] bestAngle = new double[1];
+            goldenSectionSearch(gesture.points, gesture.centroidX, gesture.centroidY, template.getPath(),
+                    rotations(template), false, null, bestAngle);
+            angle = bestAngle[0];
+        }
+        return new RecognitionResult(template, score(distance), distance, angle);
+    }
+
+    /**
+     * Recognizes a batch of gestures against the same templates. The gestures are independent, so
+     * the batch is split into chunks of BATCH_CHUNK_SIZE that are recognized in parallel on the
+     * fork/join pool; each chunk reuses one set of buffers for normalizing its gestures. Batches no
+     * bigger than one chunk are recognized on the calling thread.
+     *
+     * Every result is a separate Template object carrying its own score, so the same template
+     * winning for several gestures does not overwrite earlier scores.
+     *
+     * @param inputs gestures to recognize
+     * @return the closest template for each gesture, in input order; entries are null if there are
+     *         no templates
+     */
+    public List<Template> recognizeAll(Collection<Deque<Point>> inputs) {
+        List<Deque<Point>> gestures = new ArrayList<>(inputs);
+        Template[] results = new Template[gestures.size()];
+        BatchTask batch = new BatchTask(snapshot.get(), gestures, 0, gestures.size(), results);
+        if (gestures.size() <= BATCH_CHUNK_SIZE) {
+            batch.compute();
+        } else {
+            pool.invoke(batch);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Recognizes gestures[from, to) on the calling thread, reusing one set of buffers, and stores
+     * each result at its gesture's index
+     */
+    private void recognizeRange(TemplateSnapshot templates, List<Deque<Point>> gestures, int from, int to,
+            Template[] results) {
+        GesturePath raw = new GesturePath();
+        PreparedGesture gesture = new PreparedGesture(RESAMPLEINTERVAL);
+        for (int i = from; i < to; i++) {
+            raw.setPoints(gestures.get(i));
+            long prepareNanos = prepare(raw, gesture);
+            long matchStart = metrics.start();
+            Match best = findClosest(gesture, templates);
+            if (best != null) {
+                Template template = templates.templates.get(best.index);
+                results[i] = template.withScore(score(gesture, template, best));
+            }
+            metrics.recordMatch(matchStart, prepareNanos);
+        }
+    }
+
+    /**
+     * Normalizes a gesture and computes the values matching needs from it
+     *
+     * @param input raw gesture, left unchanged
+     * @param out   receives the prepared gesture
+     * @return time spent in nanoseconds, for the metrics, or 0 when metrics are off
+     */
+    long prepare(GesturePath input, PreparedGesture out) {
+        long start = metrics.start();
+        InputFilter filter = inputFilter;
+        if (filter != null) {
+            filter.apply(input, out.filtered);
+            input = out.filtered;
+        }
+        return prepare(input, pathLength(input), out, start);
+    }
+
+    /**
+     * Prepares a gesture whose path length is already known, skipping the pass that measures it. The
+     * input filter is not applied; the caller has already filtered the points if it is set.
+     */
+    long prepare(GesturePath input, double length, PreparedGesture out) {
+        return prepare(input, length, out, metrics.start());
+    }
+
+    private long prepare(GesturePath input, double length, PreparedGesture out, long start) {
+        NormalizationKernel kernel = new NormalizationKernel();
+        kernel.resample(input, RESAMPLEINTERVAL, length, out.points);
+        long resampled = metrics.record(RecognizerMetrics.Stage.RESAMPLE, start);
+        kernel.align(out.points, SIZE);
+        out.update(kernel.getSumX(), kernel.getSumY(), kernel.getSumSquares());
+        long prepared = metrics.record(RecognizerMetrics.Stage.NORMALIZE, resampled);
+        return prepared - start;
+    }
+
+    /**
+     * Starts recognizing a gesture while it is still being drawn
+     *
+     * @return a session to feed the gesture's points to
+     */
+    public RecognitionSession startSession() {
+        return new RecognitionSession(this);
+    }
+
+    /**
+     * Finds the closest template to a prepared gesture, using the index, the fork/join pool or a
+     * plain scan depending on the settings
+     *
+     * @param gesture   prepared gesture
+     * @param templates templates to search
+     * @return closest template, or null if there are none
+     */
+    Match findClosest(PreparedGesture gesture, TemplateSnapshot templates) {
+        return findClosest(gesture, templates, -1);
+    }
+
+    /**
+     * Finds the closest template to a prepared gesture, starting from a template that is expected to
+     * be close. With pruning on, the hint's distance becomes the bound to beat from the very first
+     * template, so more templates are pruned. The result is the same as without a hint.
+     *
+     * @param gesture   prepared gesture
+     * @param snapshot  templates to search
+     * @param hint      index of a template likely to be close, or -1
+     * @return closest template, or null if there are none
+     */
+    Match findClosest(PreparedGesture gesture, TemplateSnapshot snapshot, int hint) {
+        List<Template> templates = snapshot.templates;
+        TemplateIndex index = snapshot.index;
+        Match seed = null;
+        if (hint >= 0 && hint < templates.size() && pruning && matchingMode == MatchingMode.GOLDEN_SECTION) {
+            seed = new Match(hint, matchDistance(gesture, templates.get(hint), Double.MAX_VALUE));
+            metrics.recordTemplatesEvaluated(1);
+        }
+        if (index != null && matchingMode == MatchingMode.GOLDEN_SECTION) {
+            int[] evaluated = new int[1];
+            Match best = index.nearest(gesture.radii, gesture.centroidOffset, BOUND_SLACK, indexApproximation, seed,
+                    (id, bound) -> {
+                        evaluated[0]++;
+                        return cascadeDistance(gesture, templates.get(id), bound, pruningStats);
+                    }, pruningStats);
+            metrics.recordTemplatesEvaluated(evaluated[0]);
+            return best;
+        }
+        AtomicLong sharedBound = null;
+        if (seed != null) {
+            sharedBound = new AtomicLong(Double.doubleToLongBits(seed.distance));
+        }
+        if (parallelMatching && templates.size() >= parallelThreshold) {
+            if (sharedBound == null) {
+                sharedBound = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+            }
+            return Match.closer(seed, pool.invoke(new MatchTask(templates, 0, templates.size(), gesture, sharedBound)));
+        }
+        return Match.closer(seed, matchRange(templates, 0, templates.size(), gesture, sharedBound));
+    }
+
+    /**
+     * Finds the closest templates to a prepared gesture, one at a time on the calling thread
+     *
+     * @param gesture    prepared gesture
+     * @param snapshot   templates to search
+     * @param candidates receives the closest templates
+     */
+    void findClosest(PreparedGesture gesture, TemplateSnapshot snapshot, CandidateHeap candidates) {
+        List<Template> templates = snapshot.templates;
+        if (snapshot.index != null && matchingMode == MatchingMode.GOLDEN_SECTION) {
+            int[] evaluated = new int[1];
+            snapshot.index.nearest(gesture.radii, gesture.centroidOffset, BOUND_SLACK, indexApproximation, candidates,
+                    (id, bound) -> {
+                        evaluated[0]++;
+                        return cascadeDistance(gesture, templates.get(id), bound, pruningStats);
+                    }, pruningStats);
+            metrics.recordTemplatesEvaluated(evaluated[0]);
+            return;
+        }
+        metrics.recordTemplatesEvaluated(templates.size());
+        for (int i = 0; i < templates.size(); i++) {
+            double distance = matchDistance(gesture, templates.get(i), candidates.bound());
+            if (distance != Double.POSITIVE_INFINITY) {
+                candidates.offer(new Match(i, distance));
+            }
+        }
+    }
+
+    /**
+     * Score of the closest template found by findClosest
+     */
+    double score(PreparedGesture gesture, Template template, Match match) {
+        return score(matchDistanceForScore(gesture, template, match.distance));
+    }
+
+    /**
+     * Distance between the gesture and one template, using the current matching mode
+     *
+     * @param bound distance the template has to beat; with pruning on, templates that cannot beat it
+     *              get positive infinity
+     */
+    private double matchDistance(PreparedGesture gesture, Template template, double bound) {
+        if (matchingMode == MatchingMode.PROTRACTOR) {
+            return protractorDistance(gesture.vector, template.getVector(), angleRange);
+        }
+        if (pruning) {
+            return cascadeDistance(gesture, template, bound, pruningStats);
+        }
+        return distanceAtBestAngle(gesture.points, gesture.centroidX, gesture.centroidY, template.getPath(),
+                rotations(template), false, null);
+    }
+
+    /**
+     * The average point distance the score of the winning template is based on. Protractor's angular
+     * distance is not on the $1 scale, so in that mode the winner is measured again with the $1 path
+     * distance at the rotation Protractor picked. That keeps scores comparable between the two modes.
+     */
+    private double matchDistanceForScore(PreparedGesture gesture, Template template, double distance) {
+        if (matchingMode == MatchingMode.PROTRACTOR) {
+            double angle = protractorAngle(gesture.vector, template.getVector(), angleRange);
+            metrics.recordDistanceEvaluations(1);
+            return distanceAtAngle(gesture.points, template.getPath(), angle);
+        }
+        return distance;
+    }
+
+    /**
+     * Scans templates[from, to) for the closest template. Ties go to the lower index, so the result
+     * does not depend on how the list was split up.
+     *
+     * @param sharedBound best distance found by any thread so far, as the bits of a double, or null.
+     *                    Distances are never negative, so the bits order the same way the values do.
+     * @return closest template in the range, or null if the range is empty
+     */
+    private Match matchRange(List<Template> templates, int from, int to, PreparedGesture gesture, AtomicLong sharedBound) {
+        double bestDistance = Double.MAX_VALUE;
+        int bestIndex = -1;
+
+        metrics.recordTemplatesEvaluated(to - from);
+        for (int i = from; i < to; i++) {
+            double bound = bestDistance;
+            if (sharedBound != null) {
+                bound = Math.min(bound, Double.longBitsToDouble(sharedBound.get()));
+            }
+            double distance = matchDistance(gesture, templates.get(i), bound);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestIndex = i;
+                if (sharedBound != null) {
+                    sharedBound.accumulateAndGet(Double.doubleToLongBits(distance), Math::min);
+                }
+            }
+        }
+        return bestIndex < 0 ? null : new Match(bestIndex, bestDistance);
+    }
+
+    /**
+     * Turns the pruning cascade on or off. Pruning never changes which template is returned or its
+     * score; turning it off is only useful for comparing against an exhaustive search.
+     *
+     * @param pruning whether to prune templates with lower bounds before searching
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    public boolean isPruning() {
+        return pruning;
+    }
+
+    /**
+     * Stores every template rotated to evenly spaced angles across the search range, so matching
+     * looks the rotations up instead of rotating the gesture for every distance. The golden section
+     * search then rounds each angle it tries to the closest stored one, so the distances it finds
+     * can be slightly larger than without the tables, by at most what half a step of rotation costs.
+     *
+     * The tables cost 2 * points * (90 / degrees + 1) doubles per template: about 47 KB per template
+     * at 64 points and 2 degrees, 93 KB at 1 degree. They are built for the current templates when
+     * this is called and for new templates as they are added.
+     *
+     * @param degrees spacing of the stored rotations, or 0 to rotate gestures on the fly, which is
+     *                the default
+     */
+    public void setRotationResolution(double degrees) {
+        if (degrees < 0 || Double.isNaN(degrees)) {
+            throw new IllegalArgumentException("Rotation resolution must be positive, or 0 to turn it off: " + degrees);
+        }
+        rotationResolution = Math.toRadians(degrees);
+        buildRotations();
+        settingsChanged();
+    }
+
+    /**
+     * Builds rotation tables for the current templates, if they are turned on
+     */
+    private void buildRotations() {
+        double resolution = rotationResolution;
+        if (resolution > 0) {
+            for (Template template : snapshot.get().templates) {
+                template.buildRotations(resolution, angleRange);
+            }
+        }
+    }
+
+    /**
+     * Sets how far gestures may be rotated either way to line up with a template. The default, 45
+     * degrees, is the $1 paper's; a smaller range is faster to search and keeps gestures that only
+     * differ by rotation apart, a larger one tolerates more tilted drawing. Rotation tables are
+     * rebuilt for the new range.
+     *
+     * @param degrees largest rotation either way, more than 0 and at most 180
+     */
+    public void setAngleRange(double degrees) {
+        if (!(degrees > 0 && degrees <= 180)) {
+            throw new IllegalArgumentException("Angle range must be more than 0 and at most 180 degrees: " + degrees);
+        }
+        angleRange = Math.toRadians(degrees);
+        buildRotations();
+        settingsChanged();
+    }
+
+    /**
+     * Thins out raw points before they are resampled, which saves time on gestures from devices
+     * that report many more points than resampling needs. Templates added from now on and every
+     * gesture recognized are filtered; templates already added are left as they are. Off by default.
+     *
+     * @param inputFilter the filter, or null to use every point
+     */
+    public void setInputFilter(InputFilter inputFilter) {
+        this.inputFilter = inputFilter;
+        settingsChanged();
+    }
+
+    /**
+     * @return the filter applied to raw points, or null if there is none
+     */
+    public InputFilter getInputFilter() {
+        return inputFilter;
+    }
+
+    /**
+     * @return largest rotation either way, in degrees
+     */
+    public double getAngleRange() {
+        return Math.toDegrees(angleRange);
+    }
+
+    /**
+     * @return spacing of the stored template rotations in degrees, or 0 if they are not used
+     */
+    public double getRotationResolution() {
+        return Math.toDegrees(rotationResolution);
+    }
+
+    /**
+     * @return the template's rotation table if it was built for the current resolution, otherwise
+     *         null
+     */
+    private RotationTable rotations(Template template) {
+        double resolution = rotationResolution;
+        if (resolution == 0) {
+            return null;
+        }
+        RotationTable rotations = template.rotations;
+        return rotations != null && rotations.resolution == resolution && rotations.range == angleRange ? rotations
+                : null;
+    }
+
+    /**
+     * Turns the SIMD distance kernel on or off. It is on by default whenever it is available, which
+     * needs the JVM to be started with --add-modules jdk.incubator.vector; otherwise the distances
+     * are always computed one point at a time. Both give the same matches, and scores that agree to
+     * within rounding.
+     *
+     * @param vectorized whether to use the SIMD kernel when it is available
+     */
+    public void setVectorized(boolean vectorized) {
+        kernel = vectorized ? DistanceKernels.preferred() : DistanceKernels.scalar();
+    }
+
+    /**
+     * @return whether distances are computed with the SIMD kernel
+     */
+    public boolean isVectorized() {
+        return kernel != DistanceKernels.scalar();
+    }
+
+    /**
+     * Turns the template index on or off. The index is a vantage point tree over the templates that
+     * lets large libraries be searched without looking at every template. It is built from the
+     * current templates when turned on and updated as templates are added or removed. It is used in
+     * GOLDEN_SECTION mode; Protractor matching always scans the whole list.
+     *
+     * @param indexing whether to use the template index
+     */
+    public void setIndexing(boolean indexing) {
+        snapshot.updateAndGet(current -> current.withIndexing(indexing));
+    }
+
+    public boolean isIndexing() {
+        return snapshot.get().index != null;
+    }
+
+    /**
+     * Trades accuracy for speed when the template index is used. At 0, the default, the index
+     * always finds the same template as a full scan. A value of a lets the search skip any group of
+     * templates that could at best come within a factor of 1 + a of the closest template found so
+     * far, so larger values search fewer templates but may return a slightly worse match.
+     *
+     * @param indexApproximation a value of at least 0
+     */
+    public void setIndexApproximation(double indexApproximation) {
+        if (!(indexApproximation >= 0)) {
+            throw new IllegalArgumentException("The index approximation cannot be negative");
+        }
+        this.indexApproximation = indexApproximation;
+        settingsChanged();
+    }
+
+    /**
+     * Caches the results of recognize and classify, so recognizing a gesture that normalizes to the
+     * same points as a recent one skips matching. The cache is emptied whenever templates are added
+     * or removed, and whenever a setting that changes results is changed. With a cache, recognize
+     * scores the winning template in the same way as classify. Off by default.
+     *
+     * @param cache the cache, or null to match every gesture
+     */
+    public void setCache(RecognitionCache cache) {
+        if (cache != null) {
+            cache.clear();
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * @return the result cache, or null if there is none
+     */
+    public RecognitionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Called after a setting that changes results was changed: empties the cache and moves the
+     * settings generation on
+     */
+    private void settingsChanged() {
+        settingsGeneration.incrementAndGet();
+        RecognitionCache cache = this.cache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return a number that changes whenever a setting that changes results is changed, so results
+     *         kept from earlier can be checked
+     */
+    long getSettingsGeneration() {
+        return settingsGeneration.get();
+    }
+
+    public double getIndexApproximation() {
+        return indexApproximation;
+    }
+
+    /**
+     * @return how many templates each stage of the pruning cascade has removed so far
+     */
+    public PruningStats getPruningStats() {
+        return pruningStats;
+    }
+
+    /**
+     * Latency and throughput measurements for this recognizer. They are on by default; see
+     * RecognizerMetrics.setEnabled and RecognizerMetrics.registerMBeans.
+     *
+     * @return the metrics
+     */
+    public RecognizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Turns parallel template matching on or off. When on, template libraries with at least
+     * getParallelThreshold() templates are split across the fork/join pool; smaller libraries are
+     * still scanned on the calling thread.
+     *
+     * @param parallelMatching whether to match in parallel
+     */
+    public void setParallelMatching(boolean parallelMatching) {
+        this.parallelMatching = parallelMatching;
+    }
+
+    public boolean isParallelMatching() {
+        return parallelMatching;
+    }
+
+    /**
+     * Sets the smallest template library that gets matched in parallel
+     *
+     * @param parallelThreshold number of templates
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("The parallel threshold must be at least 1");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the pool used for parallel matching, batch recognition and adding many templates at once.
+     * Defaults to the common pool.
+     *
+     * @param pool fork/join pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Matches a range of templates by splitting it in half until the pieces are small enough to scan
+     * directly
+     */
+    private final class MatchTask extends RecursiveTask<Match> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Template> templates;
+        private final int from;
+        private final int to;
+        private final PreparedGesture gesture;
+        private final AtomicLong sharedBound;
+
+        MatchTask(List<Template> templates, int from, int to, PreparedGesture gesture, AtomicLong sharedBound) {
+            this.templates = templates;
+            this.from = from;
+            this.to = to;
+            this.gesture = gesture;
+            this.sharedBound = sharedBound;
+        }
+
+        @Override
+        protected Match compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                return matchRange(templates, from, to, gesture, sharedBound);
+            }
+            int middle = (from + to) >>> 1;
+            MatchTask left = new MatchTask(templates, from, middle, gesture, sharedBound);
+            left.fork();
+            Match right = new MatchTask(templates, middle, to, gesture, sharedBound).compute();
+            return Match.closer(left.join(), right);
+        }
+    }
+
+    /**
+     * Recognizes a range of a batch by splitting it in half until the pieces are small enough to
+     * recognize directly
+     */
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TemplateSnapshot templates;
+        private final List<Deque<Point>> gestures;
+        private final int from;
+        private final int to;
+        private final Template[] results;
+
+        BatchTask(TemplateSnapshot templates, List<Deque<Point>> gestures, int from, int to, Template[] results) {
+            this.templates = templates;
+            this.gestures = gestures;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_CHUNK_SIZE) {
+                recognizeRange(templates, gestures, from, to, results);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(templates, gestures, from, middle, results),
+                    new BatchTask(templates, gestures, middle, to, results));
+        }
+    }
+
+    /**
+     * Converts an average point distance into a score between 0 and 1
+     */
+    double score(double distance) {
+        return 1 - (distance / (0.5 * Math.sqrt(SIZE * SIZE + SIZE * SIZE)));
+    }
+
+    /**
+     * @return a copy of the current templates, in the order they were added
+     */
     public ArrayList<Template> getTempList() {
-        return tempList;
+        return new ArrayList<>(snapshot.get().templates);
     }
 
-}
\ No newline at end of file
+}
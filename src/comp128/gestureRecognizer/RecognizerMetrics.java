@@ -0,0 +1,256 @@
+package comp128.gestureRecognizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency and throughput measurements for one Recognizer: how long each stage of recognition takes,
+ * how many templates and rotations were evaluated, and how many recognitions are being done per
+ * second. Everything is recorded with lock free counters, and each recognition only reads the clock
+ * five times, so the cost is a tiny fraction of even the fastest recognition and metrics can be left
+ * on. They are on by default.
+ *
+ * The metrics can be read directly, or registered as JMX MBeans and watched with tools such as
+ * JConsole.
+ */
+public class RecognizerMetrics implements RecognizerMetricsMBean {
+
+    /**
+     * The stages of recognition that are timed
+     */
+    public enum Stage {
+        /**
+         * Filtering the raw points, if there is an input filter, measuring the path and resampling it
+         */
+        RESAMPLE,
+        /**
+         * Rotating, scaling and translating the resampled points, and computing the values matching
+         * needs from them
+         */
+        NORMALIZE,
+        /**
+         * Finding the closest template and scoring it
+         */
+        MATCH,
+        /**
+         * The whole recognition
+         */
+        TOTAL
+    }
+
+    /**
+     * Number of one second slots kept for the recognition rate, including the current, unfinished
+     * second
+     */
+    private static final int RATE_SLOTS = 8;
+
+    /**
+     * Number of finished seconds the recognition rate is averaged over
+     */
+    private static final int RATE_WINDOW = 5;
+
+    private volatile boolean enabled = true;
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final LongAdder templatesEvaluated = new LongAdder();
+    private final LongAdder distanceEvaluations = new LongAdder();
+    private final AtomicLongArray rateSeconds = new AtomicLongArray(RATE_SLOTS);
+    private final AtomicLongArray rateCounts = new AtomicLongArray(RATE_SLOTS);
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    RecognizerMetrics() {
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @return the current time to measure a stage from, or 0 when metrics are off
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start for a stage
+     *
+     * @return the current time, for timing the next stage, or 0 when metrics are off
+     */
+    long record(Stage stage, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        latencies.get(stage).record(now - start);
+        return now;
+    }
+
+    /**
+     * Records the matching stage of a recognition and the recognition as a whole
+     *
+     * @param start        time matching started, from start()
+     * @param prepareNanos time spent resampling and normalizing the gesture before matching
+     */
+    void recordMatch(long start, long prepareNanos) {
+        if (start == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        latencies.get(Stage.MATCH).record(now - start);
+        latencies.get(Stage.TOTAL).record(prepareNanos + now - start);
+        long second = now / 1_000_000_000L;
+        int slot = (int) Math.floorMod(second, (long) RATE_SLOTS);
+        long slotSecond = rateSeconds.get(slot);
+        if (slotSecond != second && rateSeconds.compareAndSet(slot, slotSecond, second)) {
+            rateCounts.set(slot, 0);
+        }
+        rateCounts.incrementAndGet(slot);
+    }
+
+    void recordTemplatesEvaluated(int count) {
+        if (enabled) {
+            templatesEvaluated.add(count);
+        }
+    }
+
+    void recordDistanceEvaluations(int count) {
+        if (enabled) {
+            distanceEvaluations.add(count);
+        }
+    }
+
+    /**
+     * @param stage stage of recognition
+     * @return latency histogram of the stage
+     */
+    public LatencyHistogram getLatency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    @Override
+    public long getRecognitions() {
+        return latencies.get(Stage.TOTAL).getCount();
+    }
+
+    /**
+     * @return recognitions per second, averaged over the last few whole seconds
+     */
+    @Override
+    public double getRecognitionsPerSecond() {
+        long current = System.nanoTime() / 1_000_000_000L;
+        long sum = 0;
+        for (int slot = 0; slot < RATE_SLOTS; slot++) {
+            long age = current - rateSeconds.get(slot);
+            if (age >= 1 && age <= RATE_WINDOW) {
+                sum += rateCounts.get(slot);
+            }
+        }
+        return sum / (double) RATE_WINDOW;
+    }
+
+    /**
+     * @return templates whose distance to a gesture was looked at, including those that were then
+     *         pruned by a lower bound
+     */
+    @Override
+    public long getTemplatesEvaluated() {
+        return templatesEvaluated.sum();
+    }
+
+    /**
+     * @return path distances computed at a particular rotation, whether run to the end or abandoned
+     */
+    @Override
+    public long getDistanceEvaluations() {
+        return distanceEvaluations.sum();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Recognitions already under way when this changes may be partly
+     * recorded.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram latency : latencies.values()) {
+            latency.reset();
+        }
+        templatesEvaluated.reset();
+        distanceEvaluations.reset();
+        for (int slot = 0; slot < RATE_SLOTS; slot++) {
+            rateSeconds.set(slot, 0);
+            rateCounts.set(slot, 0);
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, as
+     * comp128.gestureRecognizer:type=Recognizer,name=NAME and one
+     * comp128.gestureRecognizer:type=Recognizer,name=NAME,stage=STAGE latency histogram per stage
+     *
+     * @param name name telling this recognizer apart from others in the same process
+     * @throws JMException if the name is not valid or is already registered
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String base = "comp128.gestureRecognizer:type=Recognizer,name=" + ObjectName.quote(name);
+        try {
+            register(server, this, new ObjectName(base));
+            for (Stage stage : Stage.values()) {
+                register(server, latencies.get(stage),
+                        new ObjectName(base + ",stage=" + stage.name().toLowerCase(Locale.ROOT)));
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw e;
+        }
+    }
+
+    private void register(MBeanServer server, Object mbean, ObjectName objectName) throws JMException {
+        server.registerMBean(mbean, objectName);
+        registered.add(objectName);
+    }
+
+    /**
+     * Removes the MBeans added by registerMBeans
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already gone
+            }
+        }
+        registered.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "recognitions=%d (%.1f/s) templatesEvaluated=%d distanceEvaluations=%d",
+                getRecognitions(), getRecognitionsPerSecond(), getTemplatesEvaluated(), getDistanceEvaluations()));
+        for (Stage stage : Stage.values()) {
+            text.append('\n').append(stage.name().toLowerCase(Locale.ROOT)).append(": ").append(latencies.get(stage));
+        }
+        return text.toString();
+    }
+}
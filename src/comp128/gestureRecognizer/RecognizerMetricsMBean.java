@@ -0,0 +1,22 @@
+package comp128.gestureRecognizer;
+
+/**
+ * JMX view of a RecognizerMetrics. The latency of each stage is registered as its own
+ * LatencyHistogramMBean.
+ */
+public interface RecognizerMetricsMBean {
+
+    long getRecognitions();
+
+    double getRecognitionsPerSecond();
+
+    long getTemplatesEvaluated();
+
+    long getDistanceEvaluations();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+}
@@ -0,0 +1,112 @@
+package comp128.gestureRecognizer;
+
+/**
+ * A template rotated ahead of time to evenly spaced angles across the golden section search range.
+ *
+ * Rotating the gesture by theta around its centroid c and comparing it with template point t gives
+ * the same distance as comparing the unrotated gesture point with c + R(-theta)(t - c), since
+ * rotations preserve length. That is R(-theta)t plus an offset that is the same for every point. So
+ * with R(-theta)t stored for each angle, a distance at one of those angles is a lookup and a plain
+ * point to point distance with no trigonometry or rotation at all.
+ *
+ * Each table takes 2 * points * angles doubles; at 64 points and a 2 degree resolution, 46 angles,
+ * about 47 KB per template.
+ */
+final class RotationTable {
+
+    /**
+     * Resolution the table was built for, in radians
+     */
+    final double resolution;
+
+    /**
+     * Largest rotation either way, in radians
+     */
+    final double range;
+
+    /**
+     * Number of angles, from -range to range inclusive
+     */
+    final int count;
+
+    /**
+     * Spacing of the angles, no larger than resolution
+     */
+    final double step;
+
+    private final double[][] xs;
+    private final double[][] ys;
+    private final double[] cos;
+    private final double[] sin;
+
+    private RotationTable(double resolution, double range, int count) {
+        this.resolution = resolution;
+        this.range = range;
+        this.count = count;
+        this.step = 2 * range / (count - 1);
+        xs = new double[count][];
+        ys = new double[count][];
+        cos = new double[count];
+        sin = new double[count];
+    }
+
+    /**
+     * @param template   normalized template points
+     * @param resolution largest spacing between angles, in radians
+     * @param range      largest rotation either way, in radians
+     * @return the template rotated to every angle
+     */
+    static RotationTable build(GesturePath template, double resolution, double range) {
+        int count = (int) Math.ceil(2 * range / resolution - 1e-9) + 1;
+        RotationTable table = new RotationTable(resolution, range, Math.max(count, 2));
+        double[] txs = template.xs();
+        double[] tys = template.ys();
+        int n = template.size();
+        for (int k = 0; k < table.count; k++) {
+            double theta = table.angle(k);
+            double c = Math.cos(theta);
+            double s = Math.sin(theta);
+            table.cos[k] = c;
+            table.sin[k] = s;
+            double[] rxs = new double[n];
+            double[] rys = new double[n];
+            for (int i = 0; i < n; i++) {
+                rxs[i] = txs[i] * c + tys[i] * s;
+                rys[i] = -txs[i] * s + tys[i] * c;
+            }
+            table.xs[k] = rxs;
+            table.ys[k] = rys;
+        }
+        return table;
+    }
+
+    /**
+     * @param k angle number
+     * @return the angle, in radians
+     */
+    double angle(int k) {
+        return -range + k * step;
+    }
+
+    /**
+     * @param angle angle in radians, within the search range
+     * @return number of the closest angle in the table
+     */
+    int nearest(double angle) {
+        int k = (int) Math.round((angle + range) / step);
+        return Math.max(0, Math.min(count - 1, k));
+    }
+
+    /**
+     * Sum of the distances between the gesture rotated by angle k around (cx, cy) and the template
+     *
+     * @return the sum, or positive infinity once it is past sumLimit
+     */
+    double distanceSum(DistanceKernel kernel, double[] gxs, double[] gys, int n, double cx, double cy, int k,
+            double sumLimit) {
+        // c - R(-theta)c
+        double ox = cx - (cx * cos[k] + cy * sin[k]);
+        double oy = cy - (-cx * sin[k] + cy * cos[k]);
+        return kernel.translatedDistanceSum(gxs, gys, ox, oy, xs[k], ys[k], n, sumLimit);
+    }
+}
@@ -0,0 +1,166 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.GraphicsGroup;
+import edu.macalester.graphics.Path;
+import edu.macalester.graphics.Point;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws the stroke being drawn as a polyline instead of one Line per mouse event. Points closer than
+ * a minimum distance to the last vertex are merged into it, and new points are only handed to the
+ * graphics once per frame by flush(), so a fast stroke costs one vertex update per frame rather
+ * than one graphics object per event.
+ *
+ * Setting a path's vertices takes time proportional to their number, so a long stroke is split
+ * into segments of at most SEGMENT_VERTICES vertices. Only the newest segment ever changes, which
+ * keeps the cost of a frame the same however long the stroke gets.
+ *
+ * Like the rest of the UI, a renderer should only be used from the UI thread.
+ */
+final class StrokeRenderer {
+
+    /**
+     * Default distance in pixels below which points are merged
+     */
+    static final double DEFAULT_MIN_DISTANCE = 2;
+
+    /**
+     * Most vertices in one segment before a new one is started
+     */
+    static final int SEGMENT_VERTICES = 256;
+
+    private final GraphicsGroup layer;
+    private final double minDistanceSquared;
+    private final List<Point> vertices = new ArrayList<>();
+    private Color strokeColor = Color.BLACK;
+    private double strokeWidth = 1;
+
+    private Path segment;
+    private Point tail;
+    private boolean dirty;
+    private int vertexCount;
+    private int segmentCount;
+
+    /**
+     * @param layer       group the stroke is drawn into; clear() empties it
+     * @param minDistance points closer than this many pixels to the last vertex are merged into it
+     */
+    StrokeRenderer(GraphicsGroup layer, double minDistance) {
+        this.layer = layer;
+        this.minDistanceSquared = minDistance * minDistance;
+    }
+
+    /**
+     * Starts a new stroke. The previous stroke stays on screen until clear() is called.
+     *
+     * @param start first point of the stroke
+     */
+    void begin(Point start) {
+        vertices.clear();
+        vertices.add(start);
+        segment = null;
+        tail = null;
+        dirty = false;
+        vertexCount = 1;
+        segmentCount = 0;
+    }
+
+    /**
+     * Adds the next point of the stroke. Nothing is drawn until the next flush().
+     *
+     * @param point point
+     */
+    void add(Point point) {
+        if (vertices.isEmpty()) {
+            begin(point);
+            return;
+        }
+        Point last = vertices.get(vertices.size() - 1);
+        double dx = point.getX() - last.getX();
+        double dy = point.getY() - last.getY();
+        if (dx * dx + dy * dy < minDistanceSquared) {
+            // Drawn as the end of the line for now, so the ink still reaches the pointer
+            tail = point;
+        } else {
+            vertices.add(point);
+            vertexCount++;
+            tail = null;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Shows the points added since the last flush. Call it once per frame.
+     *
+     * @return whether anything changed on screen
+     */
+    boolean flush() {
+        if (!dirty) {
+            return false;
+        }
+        dirty = false;
+        List<Point> shown = vertices;
+        if (tail != null) {
+            shown = new ArrayList<>(vertices.size() + 1);
+            shown.addAll(vertices);
+            shown.add(tail);
+        }
+        if (segment == null) {
+            segment = new Path(shown, false);
+            segment.setFilled(false);
+            segment.setStrokeColor(strokeColor);
+            segment.setStrokeWidth(strokeWidth);
+            layer.add(segment);
+            segmentCount++;
+        } else {
+            segment.setVertices(shown);
+        }
+
+        if (vertices.size() >= SEGMENT_VERTICES) {
+            // The next segment picks up from the last vertex, so the line stays joined
+            Point end = vertices.get(vertices.size() - 1);
+            vertices.clear();
+            vertices.add(end);
+            segment = null;
+        }
+        return true;
+    }
+
+    /**
+     * Removes every stroke from the layer
+     */
+    void clear() {
+        layer.removeAll();
+        vertices.clear();
+        segment = null;
+        tail = null;
+        dirty = false;
+        vertexCount = 0;
+        segmentCount = 0;
+    }
+
+    void setStrokeColor(Color strokeColor) {
+        this.strokeColor = strokeColor;
+    }
+
+    void setStrokeWidth(double strokeWidth) {
+        this.strokeWidth = strokeWidth;
+    }
+
+    /**
+     * @return vertices kept in the current stroke after merging close points
+     */
+    int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return paths the current stroke has been drawn with so far
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
+}
@@ -1,5 +1,3 @@
-
-
 package comp128.gestureRecognizer;
 
 import java.util.Deque;
@@ -7,38 +5,139 @@ import edu.macalester.graphics.Point;
 
 /**
  * This is a template class that store the path of a certain shape (e.g. circle), and it contains
- * information about its score which indicates how close is it to another template when comparing
+ * information about its score which indicates how close is it to another template when comparing.
+ *
+ * Templates are immutable, so a recognizer can share them between threads and keep matching data
+ * derived from their points. The path is handed out as a read only view; recognition results are
+ * copies that carry their own score and remember the template they were copied from.
  */
 public class Template {
-    private String name;
-    Deque<Point> template;
-    double score;
+    private final String name;
+    private final GesturePath template;
+    private final double[] vector;
+    private final double[] radii;
+    private final double score;
+    private final Template original;
 
+    /**
+     * Template rotated ahead of time for the Recognizer's rotation resolution, or null. Derived
+     * from the points, so copies share it.
+     */
+    volatile RotationTable rotations;
 
     public Template(String name, Deque<Point> points) {
+        this(name, GesturePath.fromPoints(points));
+    }
+
+    /**
+     * Creates a template from normalized points
+     *
+     * @param name   name of the template
+     * @param points normalized points, which are copied
+     */
+    public Template(String name, GesturePath points) {
+        this(name, points.copy(), null, null);
+    }
+
+    /**
+     * Creates a template from normalized points whose vector and radii were already computed, such
+     * as one read back from a template library snapshot. The points are not copied, so the caller
+     * must not change them afterwards.
+     *
+     * @param vector precomputed Protractor vector, or null to compute it
+     * @param radii  precomputed radii, or null to compute them
+     */
+    Template(String name, GesturePath points, double[] vector, double[] radii) {
         this.name = name;
-        this.template = points;
+        this.template = points.readOnly();
+        this.vector = vector != null ? vector : Recognizer.vectorize(points);
+        this.radii = radii != null ? radii : radii(points);
         this.score = 0;
+        this.original = this;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    private Template(Template source, double score) {
+        this.name = source.name;
+        this.template = source.template;
+        this.vector = source.vector;
+        this.radii = source.radii;
+        this.score = score;
+        this.original = source.original;
+        this.rotations = source.rotations;
+    }
+
+    /**
+     * Creates a copy of this template with the given score. The copy shares the point data and
+     * remembers the template it came from.
+     *
+     * @param score score of the copy
+     * @return new template
+     */
+    Template withScore(double score) {
+        return new Template(this, score);
     }
 
-    public void setTemplate(Deque<Point> template) {
-        this.template = template;
+    /**
+     * @return the template this one was copied from by withScore, or this template if it is not a
+     *         copy
+     */
+    Template getOriginal() {
+        return original;
+    }
+
+    /**
+     * Builds the rotation table for the given resolution and range, unless the template already has
+     * one
+     *
+     * @param resolution spacing of the rotations in radians
+     * @param range      largest rotation either way, in radians
+     */
+    void buildRotations(double resolution, double range) {
+        RotationTable current = rotations;
+        if (current == null || current.resolution != resolution || current.range != range) {
+            rotations = RotationTable.build(template, resolution, range);
+        }
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return a copy of the template points as a deque
+     */
     public Deque<Point> getTemplate() {
+        return template.toPoints();
+    }
+
+    /**
+     * @return the normalized template points used for matching, as a read only view
+     */
+    public GesturePath getPath() {
         return template;
     }
 
-    public void setScore(double score) {
-        this.score = score;
+    /**
+     * @return the template points as a unit length vector, precomputed for Protractor matching
+     */
+    double[] getVector() {
+        return vector;
+    }
+
+    /**
+     * @return the distance of every template point from the origin, precomputed for the
+     *         rotation invariant lower bound the Recognizer prunes with
+     */
+    double[] getRadii() {
+        return radii;
+    }
+
+    private static double[] radii(GesturePath points) {
+        double[] radii = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            radii[i] = Math.sqrt(points.getX(i) * points.getX(i) + points.getY(i) * points.getY(i));
+        }
+        return radii;
     }
 
     public double getScore() {
@@ -0,0 +1,334 @@
+package comp128.gestureRecognizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shrinks a template library that has collected many near-identical samples of the same gesture.
+ * Every template costs a distance search in every recognition, but a dozen samples of a circle
+ * that all look alike recognize circles no better than two or three of them.
+ *
+ * The templates of each name are clustered by their $1 distance from each other with k-medoids,
+ * and only the medoids are kept: the template of each cluster closest to the rest of it. At most
+ * maxPerName templates are kept per name; with a maxDistance, fewer are kept when every template
+ * is already within that distance of a kept one.
+ *
+ * The report says how the templates that were removed are recognized, against the whole library
+ * before (leaving each one out of its own match) and against the templates kept after. The
+ * difference shows what compaction cost in accuracy on the samples the user gave.
+ */
+public final class TemplateCompactor {
+
+    private static final int MAX_ITERATIONS = 20;
+
+    private final int maxPerName;
+    private final double maxDistance;
+
+    /**
+     * @param maxPerName  most templates kept for each name, at least 1
+     * @param maxDistance keep fewer templates when every template of a name is within this $1
+     *                    distance of a kept one, or 0 to always keep maxPerName
+     */
+    public TemplateCompactor(int maxPerName, double maxDistance) {
+        if (maxPerName < 1) {
+            throw new IllegalArgumentException("At least one template per name has to be kept: " + maxPerName);
+        }
+        if (!(maxDistance >= 0)) {
+            throw new IllegalArgumentException("Distance must be 0 or more: " + maxDistance);
+        }
+        this.maxPerName = maxPerName;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Removes the templates that are not needed from a recognizer. Templates added while this runs
+     * are kept.
+     *
+     * @param recognizer recognizer whose templates to compact
+     * @return what was removed and how those templates are recognized before and after
+     */
+    public Report compact(Recognizer recognizer) {
+        List<Template> templates = recognizer.getTempList();
+        List<Template> kept = select(recognizer, templates);
+        Set<Template> keptSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        keptSet.addAll(kept);
+        List<Template> removed = new ArrayList<>();
+        for (Template template : templates) {
+            if (!keptSet.contains(template)) {
+                removed.add(template);
+            }
+        }
+
+        // Each removed template against every other template, before anything is removed
+        int correctBefore = 0;
+        for (Template template : removed) {
+            for (RecognitionResult result : recognizer.recognizeTopK(template.getPath(), 2)) {
+                if (result.getTemplate() != template) {
+                    correctBefore += result.getName().equals(template.getName()) ? 1 : 0;
+                    break;
+                }
+            }
+        }
+
+        Set<Template> removedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedSet.addAll(removed);
+        recognizer.removeTemplates(removedSet::contains);
+
+        int correctAfter = 0;
+        for (Template template : removed) {
+            RecognitionResult result = recognizer.classify(template.getPath());
+            correctAfter += result != null && result.getName().equals(template.getName()) ? 1 : 0;
+        }
+        return new Report(templates.size(), kept.size(), removed.size(), correctBefore, correctAfter);
+    }
+
+    /**
+     * Picks the templates to keep, without changing the recognizer
+     *
+     * @param recognizer recognizer whose distance and angle range to use
+     * @param templates  templates to choose from
+     * @return the templates to keep, in their original order
+     */
+    public List<Template> select(Recognizer recognizer, List<Template> templates) {
+        Map<String, List<Integer>> byName = new LinkedHashMap<>();
+        for (int i = 0; i < templates.size(); i++) {
+            byName.computeIfAbsent(templates.get(i).getName(), name -> new ArrayList<>()).add(i);
+        }
+        boolean[] keep = new boolean[templates.size()];
+        for (List<Integer> members : byName.values()) {
+            if (members.size() <= maxPerName && maxDistance == 0) {
+                for (int member : members) {
+                    keep[member] = true;
+                }
+                continue;
+            }
+            double[][] distances = distances(recognizer, templates, members);
+            for (int medoid : medoids(distances)) {
+                keep[members.get(medoid)] = true;
+            }
+        }
+        List<Template> kept = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                kept.add(templates.get(i));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * $1 distances between every pair of templates of one name, averaged over both directions
+     */
+    private static double[][] distances(Recognizer recognizer, List<Template> templates, List<Integer> members) {
+        int m = members.size();
+        double[][] distances = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            GesturePath a = templates.get(members.get(i)).getPath();
+            for (int j = i + 1; j < m; j++) {
+                GesturePath b = templates.get(members.get(j)).getPath();
+                double d = (recognizer.distanceAtBestAngle(a, b) + recognizer.distanceAtBestAngle(b, a)) / 2;
+                distances[i][j] = d;
+                distances[j][i] = d;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * The fewest medoids, up to maxPerName, that bring every template within maxDistance of one
+     */
+    int[] medoids(double[][] distances) {
+        int limit = Math.min(maxPerName, distances.length);
+        int[] medoids = null;
+        for (int k = maxDistance > 0 ? 1 : limit; k <= limit; k++) {
+            medoids = kMedoids(distances, k);
+            if (maxDistance > 0 && radius(distances, medoids) <= maxDistance) {
+                break;
+            }
+        }
+        return medoids;
+    }
+
+    /**
+     * Alternates between assigning every template to its closest medoid and moving each medoid to
+     * the member of its cluster with the smallest total distance to the others. Starts from the
+     * overall medoid, adding the template furthest from the medoids so far until there are k.
+     */
+    static int[] kMedoids(double[][] distances, int k) {
+        int m = distances.length;
+        int[] medoids = new int[k];
+        medoids[0] = medoid(distances, allOf(m));
+        for (int c = 1; c < k; c++) {
+            int furthest = -1;
+            double furthestDistance = -1;
+            for (int i = 0; i < m; i++) {
+                if (contains(medoids, c, i)) {
+                    continue;
+                }
+                double d = distanceToMedoids(distances, medoids, c, i);
+                if (d > furthestDistance) {
+                    furthestDistance = d;
+                    furthest = i;
+                }
+            }
+            medoids[c] = furthest;
+        }
+
+        int[] assignment = new int[m];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            for (int i = 0; i < m; i++) {
+                assignment[i] = closestMedoid(distances, medoids, i);
+            }
+            boolean changed = false;
+            for (int c = 0; c < k; c++) {
+                List<Integer> cluster = new ArrayList<>();
+                for (int i = 0; i < m; i++) {
+                    if (assignment[i] == c) {
+                        cluster.add(i);
+                    }
+                }
+                // A medoid is always closest to itself unless it ties with an earlier one, which
+                // leaves its cluster empty; it then stays where it is
+                if (cluster.isEmpty()) {
+                    continue;
+                }
+                int medoid = medoid(distances, cluster);
+                if (medoid != medoids[c]) {
+                    medoids[c] = medoid;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+        Arrays.sort(medoids);
+        return medoids;
+    }
+
+    /**
+     * Largest distance of any template from its closest medoid
+     */
+    static double radius(double[][] distances, int[] medoids) {
+        double radius = 0;
+        for (int i = 0; i < distances.length; i++) {
+            radius = Math.max(radius, distanceToMedoids(distances, medoids, medoids.length, i));
+        }
+        return radius;
+    }
+
+    private static List<Integer> allOf(int m) {
+        List<Integer> all = new ArrayList<>(m);
+        for (int i = 0; i < m; i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    /**
+     * Member of the cluster with the smallest total distance to the other members
+     */
+    private static int medoid(double[][] distances, List<Integer> cluster) {
+        int best = cluster.get(0);
+        double bestSum = Double.MAX_VALUE;
+        for (int i : cluster) {
+            double sum = 0;
+            for (int j : cluster) {
+                sum += distances[i][j];
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static boolean contains(int[] medoids, int count, int i) {
+        for (int c = 0; c < count; c++) {
+            if (medoids[c] == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int closestMedoid(double[][] distances, int[] medoids, int i) {
+        int closest = 0;
+        for (int c = 1; c < medoids.length; c++) {
+            if (distances[i][medoids[c]] < distances[i][medoids[closest]]) {
+                closest = c;
+            }
+        }
+        return closest;
+    }
+
+    private static double distanceToMedoids(double[][] distances, int[] medoids, int count, int i) {
+        double closest = Double.MAX_VALUE;
+        for (int c = 0; c < count; c++) {
+            closest = Math.min(closest, distances[i][medoids[c]]);
+        }
+        return closest;
+    }
+
+    /**
+     * What a compaction removed, and how the removed templates are recognized before and after
+     */
+    public static final class Report {
+        private final int before;
+        private final int after;
+        private final int removed;
+        private final int correctBefore;
+        private final int correctAfter;
+
+        Report(int before, int after, int removed, int correctBefore, int correctAfter) {
+            this.before = before;
+            this.after = after;
+            this.removed = removed;
+            this.correctBefore = correctBefore;
+            this.correctAfter = correctAfter;
+        }
+
+        public int getTemplatesBefore() {
+            return before;
+        }
+
+        public int getTemplatesAfter() {
+            return after;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return fraction of the removed templates whose closest other template had the same name
+         *         before compaction, or 1 if none were removed
+         */
+        public double getAccuracyBefore() {
+            return removed == 0 ? 1 : (double) correctBefore / removed;
+        }
+
+        /**
+         * @return fraction of the removed templates recognized as their own name by the templates
+         *         kept, or 1 if none were removed
+         */
+        public double getAccuracyAfter() {
+            return removed == 0 ? 1 : (double) correctAfter / removed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Kept %d of %d templates; removed templates recognized correctly %.1f%% before, %.1f%% after",
+                    after, before, 100 * getAccuracyBefore(), 100 * getAccuracyAfter());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package comp128.gestureRecognizer;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A vantage point tree over the radial profiles of the templates: for each template, the distance of
+ * every normalized point from the origin. Profiles are compared with the average absolute
+ * difference, which is a metric, and which minus the gesture's centroid offset is also a lower bound
+ * on the $1 distance at any rotation (see Recognizer.cascadeDistance). So whole subtrees can be ruled
+ * out with the triangle inequality before any of their templates are searched.
+ *
+ * The tree is persistent: insert returns a new tree that shares every node off the insertion path
+ * with the old one, so a tree that is being searched is never modified.
+ */
+final class TemplateIndex {
+
+    private static final int LEAF_SIZE = 16;
+
+    /**
+     * Works out the distance between the gesture and one indexed template
+     */
+    interface Evaluator {
+
+        /**
+         * @param id    template id given to insert
+         * @param bound distance the template has to beat
+         * @return the template's distance, or positive infinity if it cannot beat bound
+         */
+        double distance(int id, double bound);
+    }
+
+    private final Node root;
+    private final int size;
+
+    TemplateIndex() {
+        this(null, 0);
+    }
+
+    private TemplateIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a tree that also contains the given template
+     *
+     * @param id      template id handed back to the Evaluator, usually its index in the template list
+     * @param profile the template's radial profile
+     * @return new tree
+     */
+    TemplateIndex insert(int id, double[] profile) {
+        return new TemplateIndex(insert(root, id, profile), size + 1);
+    }
+
+    private static Node insert(Node node, int id, double[] profile) {
+        if (node == null) {
+            return new Leaf(new int[] {id}, new double[][] {profile});
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int[] ids = Arrays.copyOf(leaf.ids, leaf.ids.length + 1);
+            double[][] profiles = Arrays.copyOf(leaf.profiles, leaf.profiles.length + 1);
+            ids[ids.length - 1] = id;
+            profiles[profiles.length - 1] = profile;
+            return ids.length > LEAF_SIZE ? split(ids, profiles) : new Leaf(ids, profiles);
+        }
+        Inner inner = (Inner) node;
+        double d = distance(inner.profile, profile);
+        if (d < inner.radius) {
+            return new Inner(inner.id, inner.profile, inner.radius, insert(inner.inside, id, profile),
+                    Math.min(inner.insideLow, d), Math.max(inner.insideHigh, d), inner.outside, inner.outsideLow,
+                    inner.outsideHigh);
+        }
+        return new Inner(inner.id, inner.profile, inner.radius, inner.inside, inner.insideLow, inner.insideHigh,
+                insert(inner.outside, id, profile), Math.min(inner.outsideLow, d), Math.max(inner.outsideHigh, d));
+    }
+
+    /**
+     * Turns an overfull leaf into an inner node. The first entry becomes the vantage point and the
+     * rest are split at the median distance from it.
+     */
+    private static Node split(int[] ids, double[][] profiles) {
+        int count = ids.length - 1;
+        double[] distances = new double[count];
+        for (int i = 0; i < count; i++) {
+            distances[i] = distance(profiles[0], profiles[i + 1]);
+        }
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        double radius = sorted[count / 2];
+
+        Node inside = null;
+        Node outside = null;
+        double insideLow = Double.MAX_VALUE;
+        double insideHigh = 0;
+        double outsideLow = Double.MAX_VALUE;
+        double outsideHigh = 0;
+        for (int i = 0; i < count; i++) {
+            double d = distances[i];
+            if (d < radius) {
+                inside = insert(inside, ids[i + 1], profiles[i + 1]);
+                insideLow = Math.min(insideLow, d);
+                insideHigh = Math.max(insideHigh, d);
+            } else {
+                outside = insert(outside, ids[i + 1], profiles[i + 1]);
+                outsideLow = Math.min(outsideLow, d);
+                outsideHigh = Math.max(outsideHigh, d);
+            }
+        }
+        return new Inner(ids[0], profiles[0], radius, inside, insideLow, insideHigh, outside, outsideLow,
+                outsideHigh);
+    }
+
+    /**
+     * Finds the closest template. Nodes are visited in order of their lower bound, so the best
+     * candidates are searched first and the bound to beat drops quickly.
+     *
+     * @param query         the gesture's radial profile, measured from its own centroid
+     * @param offset        distance of the gesture's centroid from the origin
+     * @param slack         rounding allowance; a subtree is only skipped when its bound is above the
+     *                      best distance by more than this
+     * @param approximation 0 for an exact search. Larger values skip subtrees whose bound is within
+     *                      a factor of 1 + approximation of the best distance, which is faster but can
+     *                      miss the closest template.
+     * @param initial       a template already known to be close, or null
+     * @param evaluator     computes full distances
+     * @param stats         where to count the templates that were never looked at
+     * @return closest template, or null if the tree is empty
+     */
+    Match nearest(double[] query, double offset, double slack, double approximation, Match initial,
+            Evaluator evaluator, PruningStats stats) {
+        CandidateHeap candidates = new CandidateHeap(1);
+        candidates.offer(initial);
+        nearest(query, offset, slack, approximation, candidates, evaluator, stats);
+        return candidates.best();
+    }
+
+    /**
+     * Finds the closest templates, keeping them in a heap. The bound a subtree has to beat is the
+     * heap's, so with k candidates it is the k-th best distance found so far.
+     *
+     * @param candidates receives the closest templates; it may already hold some
+     * @see #nearest(double[], double, double, double, Match, Evaluator, PruningStats)
+     */
+    void nearest(double[] query, double offset, double slack, double approximation, CandidateHeap candidates,
+            Evaluator evaluator, PruningStats stats) {
+        if (root == null) {
+            return;
+        }
+        int visited = 0;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(root, 0));
+
+        while (!queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            double bestDistance = candidates.bound();
+            if (cannotBeat(candidate.bound - offset, bestDistance, slack, approximation)) {
+                break;
+            }
+            if (candidate.node instanceof Leaf) {
+                Leaf leaf = (Leaf) candidate.node;
+                for (int i = 0; i < leaf.ids.length; i++) {
+                    visited++;
+                    consider(leaf.ids[i], candidates, evaluator);
+                }
+                continue;
+            }
+            Inner inner = (Inner) candidate.node;
+            double d = distance(query, inner.profile);
+            if (!cannotBeat(d - offset, bestDistance, slack, 0)) {
+                visited++;
+                consider(inner.id, candidates, evaluator);
+            }
+            if (inner.inside != null) {
+                double bound = Math.max(inner.insideLow - d, d - inner.insideHigh);
+                queue.add(new Candidate(inner.inside, Math.max(candidate.bound, bound)));
+            }
+            if (inner.outside != null) {
+                double bound = Math.max(inner.outsideLow - d, d - inner.outsideHigh);
+                queue.add(new Candidate(inner.outside, Math.max(candidate.bound, bound)));
+            }
+        }
+        stats.recordIndexPruned(size - visited);
+    }
+
+    private static boolean cannotBeat(double lowerBound, double bestDistance, double slack, double approximation) {
+        return lowerBound * (1 + approximation) > bestDistance + slack;
+    }
+
+    private static void consider(int id, CandidateHeap candidates, Evaluator evaluator) {
+        double distance = evaluator.distance(id, candidates.bound());
+        if (distance != Double.POSITIVE_INFINITY) {
+            candidates.offer(new Match(id, distance));
+        }
+    }
+
+    /**
+     * Average absolute difference between two radial profiles
+     */
+    static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < b.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return sum / b.length;
+    }
+
+    private abstract static class Node {
+    }
+
+    private static final class Leaf extends Node {
+        final int[] ids;
+        final double[][] profiles;
+
+        Leaf(int[] ids, double[][] profiles) {
+            this.ids = ids;
+            this.profiles = profiles;
+        }
+    }
+
+    /**
+     * A vantage point with the templates closer to it than radius on the inside and the rest on the
+     * outside. The low and high fields record the range of distances from the vantage point actually
+     * found in each subtree, which gives tighter bounds than the radius alone.
+     */
+    private static final class Inner extends Node {
+        final int id;
+        final double[] profile;
+        final double radius;
+        final Node inside;
+        final double insideLow;
+        final double insideHigh;
+        final Node outside;
+        final double outsideLow;
+        final double outsideHigh;
+
+        Inner(int id, double[] profile, double radius, Node inside, double insideLow, double insideHigh,
+                Node outside, double outsideLow, double outsideHigh) {
+            this.id = id;
+            this.profile = profile;
+            this.radius = radius;
+            this.inside = inside;
+            this.insideLow = insideLow;
+            this.insideHigh = insideHigh;
+            this.outside = outside;
+            this.outsideLow = outsideLow;
+            this.outsideHigh = outsideHigh;
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final Node node;
+        final double bound;
+
+        Candidate(Node node, double bound) {
+            this.node = node;
+            this.bound = bound;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(bound, other.bound);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package comp128.gestureRecognizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes snapshots of a recognizer's normalized templates. Unlike a gesture library,
+ * which holds raw points, a snapshot holds each template exactly as the recognizer matches against
+ * it: the normalized points, the Protractor vector and the radial profile. Loading one is a bulk copy
+ * out of a memory mapped file with no resampling, rotating or scaling.
+ *
+ * Normalized points only make sense to a recognizer that resamples to the same number of points and
+ * scales to the same size, so both are recorded in the header and checked on load.
+ *
+ * Layout, little endian:
+ * <pre>
+ * int    magic, "GSTN"
+ * short  format version
+ * short  reserved, 0
+ * int    number of points per template (RESAMPLEINTERVAL)
+ * double size templates are scaled to (SIZE)
+ * int    number of templates
+ * then for each template:
+ *   short  length of the name in bytes
+ *   byte[] name, UTF-8
+ *   x coordinates of all points, then y coordinates of all points
+ *   Protractor vector, two values per point
+ *   distance of each point from the origin
+ * </pre>
+ */
+final class TemplateLibraryFormat {
+
+    static final int MAGIC = 0x4E545347; // "GSTN" when read as little endian bytes
+    static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private TemplateLibraryFormat() {
+    }
+
+    /**
+     * Writes templates to a snapshot file, replacing it if it exists
+     *
+     * @param templates normalized templates, all with numPoints points
+     * @param numPoints points per template
+     * @param size      size the templates were scaled to
+     * @param file      snapshot file
+     */
+    static void write(List<Template> templates, int numPoints, double size, Path file) throws IOException {
+        List<byte[]> names = new ArrayList<>(templates.size());
+        long fileSize = HEADER_SIZE;
+        for (Template template : templates) {
+            byte[] name = template.getName().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IOException("Template name is too long: " + template.getName());
+            }
+            if (template.getPath().size() != numPoints) {
+                throw new IOException("Template " + template.getName() + " has " + template.getPath().size()
+                        + " points instead of " + numPoints);
+            }
+            names.add(name);
+            fileSize += Short.BYTES + name.length + 5L * numPoints * Double.BYTES;
+        }
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Template library is too large for one file: " + fileSize + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort((short) 0);
+            buffer.putInt(numPoints);
+            buffer.putDouble(size);
+            buffer.putInt(templates.size());
+
+            for (int i = 0; i < templates.size(); i++) {
+                Template template = templates.get(i);
+                buffer.putShort((short) names.get(i).length);
+                buffer.put(names.get(i));
+                GesturePath path = template.getPath();
+                buffer.asDoubleBuffer()
+                        .put(path.xs(), 0, numPoints)
+                        .put(path.ys(), 0, numPoints)
+                        .put(template.getVector(), 0, 2 * numPoints)
+                        .put(template.getRadii(), 0, numPoints);
+                buffer.position(buffer.position() + 5 * numPoints * Double.BYTES);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Reads every template in a snapshot file
+     *
+     * @param file      snapshot file
+     * @param numPoints points per template the reading recognizer expects
+     * @param size      size the reading recognizer scales to
+     * @return templates in the order they were written
+     * @throws IOException if the file is not a snapshot, is corrupt, or was written by a recognizer
+     *                     with different settings
+     */
+    static List<Template> read(Path file, int numPoints, double size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Template library is too large to map: " + fileSize + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return read(buffer, file, numPoints, size);
+        }
+    }
+
+    private static List<Template> read(ByteBuffer buffer, Path file, int numPoints, double size) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a template library");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported format version " + version);
+        }
+        buffer.getShort();
+        int savedPoints = buffer.getInt();
+        double savedSize = buffer.getDouble();
+        if (savedPoints != numPoints || savedSize != size) {
+            throw new IOException(file + " holds templates with " + savedPoints + " points scaled to " + savedSize
+                    + ", but the recognizer uses " + numPoints + " points scaled to " + size);
+        }
+        int count = buffer.getInt();
+
+        List<Template> templates = new ArrayList<>(Math.max(0, Math.min(count, 1 << 16)));
+        for (int i = 0; i < count; i++) {
+            require(buffer, Short.BYTES, file);
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            require(buffer, name.length + 5L * numPoints * Double.BYTES, file);
+            buffer.get(name);
+
+            double[] xs = new double[numPoints];
+            double[] ys = new double[numPoints];
+            double[] vector = new double[2 * numPoints];
+            double[] radii = new double[numPoints];
+            DoubleBuffer values = buffer.asDoubleBuffer();
+            values.get(xs).get(ys).get(vector).get(radii);
+            buffer.position(buffer.position() + 5 * numPoints * Double.BYTES);
+            templates.add(new Template(new String(name, StandardCharsets.UTF_8), new GesturePath(xs, ys, numPoints),
+                    vector, radii));
+        }
+        return templates;
+    }
+
+    private static void require(ByteBuffer buffer, long bytes, Path file) throws IOException {
+        if (buffer.remaining() < bytes) {
+            throw new IOException(file + " is corrupt: it ends in the middle of a template");
+        }
+    }
+}
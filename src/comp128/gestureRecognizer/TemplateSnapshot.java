@@ -0,0 +1,87 @@
+package comp128.gestureRecognizer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An immutable view of a recognizer's templates: the template list and, when indexing is on, the
+ * template index built over exactly that list. The Recognizer swaps in a new snapshot for every
+ * change, so a recognition works against one consistent snapshot from start to finish no matter
+ * what other threads add or remove meanwhile.
+ *
+ * Adding copies the list, which is cheap next to normalizing the new template, and inserts into
+ * the persistent index, which shares everything off the insertion path. Removing renumbers the
+ * templates after the removed ones, so the index is rebuilt.
+ */
+final class TemplateSnapshot {
+
+    static final TemplateSnapshot EMPTY = new TemplateSnapshot(new Template[0], null);
+
+    /**
+     * Templates in the order they were added
+     */
+    final List<Template> templates;
+
+    /**
+     * Index over templates, using positions in the list as ids, or null when indexing is off
+     */
+    final TemplateIndex index;
+
+    private final Template[] array;
+
+    private TemplateSnapshot(Template[] array, TemplateIndex index) {
+        this.array = array;
+        this.templates = Collections.unmodifiableList(Arrays.asList(array));
+        this.index = index;
+    }
+
+    /**
+     * @param added templates to append
+     * @return a snapshot with the templates appended
+     */
+    TemplateSnapshot withAdded(List<Template> added) {
+        Template[] grown = Arrays.copyOf(array, array.length + added.size());
+        TemplateIndex grownIndex = index;
+        for (int i = 0; i < added.size(); i++) {
+            Template template = added.get(i);
+            grown[array.length + i] = template;
+            if (grownIndex != null) {
+                grownIndex = grownIndex.insert(array.length + i, template.getRadii());
+            }
+        }
+        return new TemplateSnapshot(grown, grownIndex);
+    }
+
+    /**
+     * @param removed which templates to remove
+     * @return a snapshot without the matching templates, or this snapshot if none match
+     */
+    TemplateSnapshot without(Predicate<Template> removed) {
+        Template[] kept = Arrays.stream(array).filter(removed.negate()).toArray(Template[]::new);
+        if (kept.length == array.length) {
+            return this;
+        }
+        return new TemplateSnapshot(kept, index == null ? null : buildIndex(kept));
+    }
+
+    /**
+     * @param indexing whether the snapshot should have an index
+     * @return a snapshot with an index built, or dropped, as requested
+     */
+    TemplateSnapshot withIndexing(boolean indexing) {
+        if (indexing == (index != null)) {
+            return this;
+        }
+        return new TemplateSnapshot(array, indexing ? buildIndex(array) : null);
+    }
+
+    private static TemplateIndex buildIndex(Template[] templates) {
+        TemplateIndex index = new TemplateIndex();
+        for (int i = 0; i < templates.length; i++) {
+            index = index.insert(i, templates[i].getRadii());
+        }
+        return index;
+    }
+}
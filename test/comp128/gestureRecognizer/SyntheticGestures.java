@@ -0,0 +1,77 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Generates noisy synthetic gestures for tests that need more templates than the files in res.
+ */
+class SyntheticGestures {
+
+    static final String[] SHAPES = {"circle", "zigzag", "check", "triangle", "spiral", "caret"};
+
+    /**
+     * Creates a gesture of one of the SHAPES, randomly scaled, rotated a little, moved, and jittered
+     *
+     * @param random    source of the variation
+     * @param shape     index into SHAPES
+     * @param numPoints number of raw points
+     * @return gesture points in canvas coordinates
+     */
+    static Deque<Point> create(Random random, int shape, int numPoints) {
+        double scale = 80 + random.nextDouble() * 120;
+        double angle = Math.toRadians(random.nextDouble() * 20 - 10);
+        double offsetX = 150 + random.nextDouble() * 300;
+        double offsetY = 150 + random.nextDouble() * 300;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+
+        Deque<Point> points = new ArrayDeque<>(numPoints);
+        for (int i = 0; i < numPoints; i++) {
+            double t = i / (numPoints - 1.0);
+            double[] xy = shapePoint(shape, t);
+            double x = xy[0] * scale + random.nextGaussian();
+            double y = xy[1] * scale + random.nextGaussian();
+            points.add(new Point(x * cos - y * sin + offsetX, x * sin + y * cos + offsetY));
+        }
+        return points;
+    }
+
+    /**
+     * A point on the unit sized outline of a shape
+     *
+     * @param shape index into SHAPES
+     * @param t     position along the stroke from 0 to 1
+     * @return x and y
+     */
+    static double[] shapePoint(int shape, double t) {
+        switch (shape) {
+            case 0:
+                return new double[] {Math.cos(2 * Math.PI * t), Math.sin(2 * Math.PI * t)};
+            case 1: {
+                double phase = (t * 4) % 1;
+                double y = phase < 0.5 ? phase * 2 : 2 - phase * 2;
+                return new double[] {t * 2 - 1, y};
+            }
+            case 2:
+                return t < 0.3 ? new double[] {t / 0.3 * 0.4, t / 0.3 * 0.4}
+                        : new double[] {0.4 + (t - 0.3) / 0.7 * 0.8, 0.4 - (t - 0.3) / 0.7 * 1.2};
+            case 3: {
+                double side = t * 3;
+                double[][] corners = {{0, -1}, {0.87, 0.5}, {-0.87, 0.5}, {0, -1}};
+                int k = Math.min((int) side, 2);
+                double f = side - k;
+                return new double[] {corners[k][0] + (corners[k + 1][0] - corners[k][0]) * f,
+                        corners[k][1] + (corners[k + 1][1] - corners[k][1]) * f};
+            }
+            case 4:
+                return new double[] {t * Math.cos(6 * Math.PI * t), t * Math.sin(6 * Math.PI * t)};
+            default:
+                return t < 0.5 ? new double[] {t * 2 - 1, -t * 2}
+                        : new double[] {t * 2 - 1, -2 + t * 2};
+        }
+    }
+}
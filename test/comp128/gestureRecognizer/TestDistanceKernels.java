@@ -0,0 +1,93 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that the SIMD distance kernel agrees with the scalar one. When the JVM running the tests
+ * does not have jdk.incubator.vector, preferred() is the scalar kernel and these compare it with
+ * itself.
+ */
+public class TestDistanceKernels {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private final DistanceKernel scalar = DistanceKernels.scalar();
+    private final DistanceKernel vector = DistanceKernels.preferred();
+
+    @Test
+    public void testRotatedDistanceSumAgrees() {
+        Random random = new Random(16);
+        // Lengths that leave every possible remainder for 2, 4 and 8 lanes
+        for (int n = 1; n <= 67; n++) {
+            double[][] paths = randomPaths(random, n);
+            double theta = random.nextDouble() - 0.5;
+            double cos = Math.cos(theta);
+            double sin = Math.sin(theta);
+            double expected = scalar.rotatedDistanceSum(paths[0], paths[1], 3, -2, paths[2], paths[3], n, cos, sin,
+                    Double.POSITIVE_INFINITY);
+            double actual = vector.rotatedDistanceSum(paths[0], paths[1], 3, -2, paths[2], paths[3], n, cos, sin,
+                    Double.POSITIVE_INFINITY);
+            assertEquals(expected, actual, expected * TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testRotatedDistanceSumAbandons() {
+        double[][] paths = randomPaths(new Random(17), 64);
+        double full = scalar.rotatedDistanceSum(paths[0], paths[1], 0, 0, paths[2], paths[3], 64, 1, 0,
+                Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY,
+                vector.rotatedDistanceSum(paths[0], paths[1], 0, 0, paths[2], paths[3], 64, 1, 0, full / 2));
+        assertEquals(full, vector.rotatedDistanceSum(paths[0], paths[1], 0, 0, paths[2], paths[3], 64, 1, 0,
+                full * 1.01), full * TOLERANCE);
+    }
+
+    @Test
+    public void testDistanceSumAgrees() {
+        Random random = new Random(18);
+        for (int n = 1; n <= 67; n++) {
+            double[][] paths = randomPaths(random, n);
+            double expected = scalar.distanceSum(paths[0], paths[1], paths[2], paths[3], n);
+            assertEquals(expected, vector.distanceSum(paths[0], paths[1], paths[2], paths[3], n),
+                    expected * TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testVectorizedRecognizerMatchesScalar() {
+        Recognizer vectorized = new Recognizer();
+        Recognizer scalarRecognizer = new Recognizer();
+        scalarRecognizer.setVectorized(false);
+        assertFalse(scalarRecognizer.isVectorized());
+        Random random = new Random(19);
+        for (int i = 0; i < 36; i++) {
+            Deque<Point> template = SyntheticGestures.create(random, i % 6, 70);
+            vectorized.addTemplate(SyntheticGestures.SHAPES[i % 6], template);
+            scalarRecognizer.addTemplate(SyntheticGestures.SHAPES[i % 6], template);
+        }
+        for (int i = 0; i < 24; i++) {
+            Deque<Point> gesture = SyntheticGestures.create(random, i % 6, 80);
+            Template expected = scalarRecognizer.recognize(gesture);
+            Template actual = vectorized.recognize(gesture);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getScore(), actual.getScore(), TOLERANCE);
+        }
+    }
+
+    private static double[][] randomPaths(Random random, int n) {
+        double[][] paths = new double[4][n];
+        for (double[] coordinates : paths) {
+            for (int i = 0; i < n; i++) {
+                coordinates[i] = random.nextDouble() * 250 - 125;
+            }
+        }
+        return paths;
+    }
+}
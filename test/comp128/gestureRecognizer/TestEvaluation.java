@@ -0,0 +1,183 @@
+package comp128.gestureRecognizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestEvaluation {
+
+    private static final int USERS = 3;
+    private static final int SAMPLES_PER_CLASS = 4;
+
+    private List<Evaluation.Sample> samples;
+    private Path directory;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        Random random = new Random(20);
+        samples = new ArrayList<>();
+        for (int user = 0; user < USERS; user++) {
+            for (int shape = 0; shape < SyntheticGestures.SHAPES.length; shape++) {
+                for (int i = 0; i < SAMPLES_PER_CLASS; i++) {
+                    samples.add(new Evaluation.Sample(SyntheticGestures.SHAPES[shape], "user" + user,
+                            SyntheticGestures.create(random, shape, 60)));
+                }
+            }
+        }
+        directory = Files.createTempDirectory("corpus");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Tests that every configuration and mode gets a report covering every trial, with accuracies
+     * a working recognizer should reach on clean synthetic shapes.
+     */
+    @Test
+    public void testReports() {
+        Evaluation evaluation = new Evaluation(samples, 1, 3, 2, 1);
+        List<Evaluation.Report> reports = evaluation.run(Evaluation.configurations(
+                new int[] {32, 64}, new double[] {45}, new String[] {"dollar", "protractor", "pointcloud"}));
+
+        assertEquals(10, reports.size());
+        int tests = USERS * 3 * SyntheticGestures.SHAPES.length;
+        for (Evaluation.Report report : reports) {
+            assertEquals(tests, report.getTotal(), report.toString());
+            assertEquals(tests, report.getLatency().getCount());
+            assertTrue(report.getAccuracy() > 0.8, report.toString());
+            double[] interval = report.getConfidenceInterval();
+            assertTrue(interval[0] <= report.getAccuracy() && report.getAccuracy() <= interval[1]);
+            assertTrue(report.confusionTable().contains("triangle"));
+
+            // Each shape is tested once per user and trial
+            for (long[] row : report.getConfusion()) {
+                assertEquals(USERS * 3, Arrays.stream(row).sum());
+            }
+        }
+    }
+
+    /**
+     * Tests that configurations see the same trials, so running one twice gives the same matrix
+     */
+    @Test
+    public void testDeterministic() {
+        List<Evaluation.Configuration> configurations = Evaluation.configurations(
+                new int[] {64}, new double[] {45}, new String[] {"dollar"});
+        Evaluation.Report first = new Evaluation(samples, 2, 2, 2, 7)
+                .evaluate(configurations.get(0), Evaluation.Mode.USER_INDEPENDENT);
+        Evaluation.Report second = new Evaluation(samples, 2, 2, 1, 7)
+                .evaluate(configurations.get(0), Evaluation.Mode.USER_INDEPENDENT);
+        assertTrue(Arrays.deepEquals(first.getConfusion(), second.getConfusion()));
+    }
+
+    /**
+     * Tests that an evaluation can be run again after a run, since each run uses its own threads
+     */
+    @Test
+    public void testRunTwice() {
+        Evaluation evaluation = new Evaluation(samples, 1, 2, 2, 5);
+        List<Evaluation.Configuration> configurations = Evaluation.configurations(
+                new int[] {64}, new double[] {45}, new String[] {"dollar"});
+        List<Evaluation.Report> first = evaluation.run(configurations);
+        List<Evaluation.Report> second = evaluation.run(configurations);
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertTrue(Arrays.deepEquals(first.get(i).getConfusion(), second.get(i).getConfusion()));
+        }
+    }
+
+    /**
+     * Tests that the corpus is read with one user per folder and the class taken from the name
+     */
+    @Test
+    public void testLoadCorpus() {
+        IOManager ioManager = new IOManager();
+        for (int user = 0; user < 2; user++) {
+            String name = "user" + user;
+            List<NamedGesture> gestures = samples.stream()
+                    .filter(sample -> sample.getUser().equals(name))
+                    .map(sample -> new NamedGesture(sample.getLabel(), GesturePath.fromPoints(sample.getPoints())))
+                    .collect(Collectors.toList());
+            Path library = directory.resolve("library" + user + ".bin");
+            ioManager.saveGestureLibrary(gestures, library, false);
+            ioManager.convertLibraryToXml(library, directory.resolve(name).resolve("session"));
+        }
+
+        List<Evaluation.Sample> corpus = Evaluation.loadCorpus(directory);
+        assertNotNull(corpus);
+        assertEquals(2 * SyntheticGestures.SHAPES.length * SAMPLES_PER_CLASS, corpus.size());
+        assertEquals(2, corpus.stream().map(Evaluation.Sample::getUser).distinct().count());
+        assertEquals(SyntheticGestures.SHAPES.length,
+                corpus.stream().map(Evaluation.Sample::getLabel).distinct().count());
+    }
+
+    /**
+     * Tests that compacted configurations run on the same trials as the full ones
+     */
+    @Test
+    public void testCompaction() {
+        List<Evaluation.Configuration> configurations = Evaluation.configurations(
+                new int[] {64}, new double[] {45}, new String[] {"dollar"}, new int[] {0, 1});
+        assertEquals(2, configurations.size());
+        assertEquals("dollar n=64 angle=45 compact=1", configurations.get(1).getName());
+
+        Evaluation evaluation = new Evaluation(samples, 3, 2, 2, 3);
+        Evaluation.Report full = evaluation.evaluate(configurations.get(0), Evaluation.Mode.USER_INDEPENDENT);
+        Evaluation.Report compacted = evaluation.evaluate(configurations.get(1), Evaluation.Mode.USER_INDEPENDENT);
+        assertEquals(full.getTotal(), compacted.getTotal());
+        assertTrue(compacted.getAccuracy() > 0.8, compacted.toString());
+    }
+
+    /**
+     * Tests that packed template storage recognizes the same samples as double precision
+     */
+    @Test
+    public void testPackedStorage() {
+        List<Evaluation.Configuration> configurations = Evaluation.configurations(
+                new int[] {64}, new double[] {45}, new String[] {"dollar", "dollar-float", "dollar-int16"});
+        assertEquals(3, configurations.size());
+        assertEquals("dollar-int16 n=64 angle=45", configurations.get(2).getName());
+
+        Evaluation evaluation = new Evaluation(samples, 2, 2, 2, 3);
+        Evaluation.Report doubles = evaluation.evaluate(configurations.get(0), Evaluation.Mode.USER_DEPENDENT);
+        for (int i = 1; i < 3; i++) {
+            Evaluation.Report packed = evaluation.evaluate(configurations.get(i), Evaluation.Mode.USER_DEPENDENT);
+            assertEquals(doubles.getTotal(), packed.getTotal());
+            assertEquals(doubles.getCorrect(), packed.getCorrect(), packed.toString());
+        }
+    }
+
+    @Test
+    public void testLabel() {
+        assertEquals("arrow", Evaluation.label("arrow01"));
+        assertEquals("x2y", Evaluation.label("x2y"));
+        assertEquals("42", Evaluation.label("42"));
+    }
+
+    @Test
+    public void testUnknownMatcher() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Evaluation.configurations(new int[] {64}, new double[] {45}, new String[] {"nearest"}));
+    }
+}
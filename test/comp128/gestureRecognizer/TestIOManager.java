@@ -0,0 +1,210 @@
+package comp128.gestureRecognizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import edu.macalester.graphics.Point;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TestIOManager {
+
+    private IOManager ioManager;
+    private Path directory;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        ioManager = new IOManager();
+        directory = Files.createTempDirectory("gestures");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private Path resource(String fileName) throws Exception {
+        return Paths.get(getClass().getClassLoader().getResource(fileName).toURI());
+    }
+
+    /**
+     * Tests that xml gestures converted to a binary library and back keep their names and points.
+     */
+    @Test
+    public void testBinaryLibraryRoundTrip() throws Exception {
+        Path library = directory.resolve("library.gstb");
+        List<Path> xmlFiles = Arrays.asList(resource("arrowTemplate.xml"), resource("circleTemplate.xml"),
+            resource("arrowTest.xml"));
+        ioManager.convertXmlToLibrary(xmlFiles, library, false);
+
+        List<NamedGesture> gestures = ioManager.loadGestureLibrary(library);
+        assertEquals(3, gestures.size());
+        assertEquals("arrowTemplate", gestures.get(0).getName());
+        assertEquals("circleTemplate", gestures.get(1).getName());
+        assertPointsEqual(ioManager.loadGesture("arrowTemplate.xml"), gestures.get(0).getPath(), 0.0);
+        assertPointsEqual(ioManager.loadGesture("arrowTest.xml"), gestures.get(2).getPath(), 0.0);
+
+        Path xmlDirectory = directory.resolve("xml");
+        ioManager.convertLibraryToXml(library, xmlDirectory);
+        NamedGesture circle = ioManager.loadNamedGesture(xmlDirectory.resolve("circleTemplate.xml"));
+        assertEquals("circleTemplate", circle.getName());
+        assertPointsEqual(ioManager.loadGesture("circleTemplate.xml"), circle.getPath(), 0.0);
+    }
+
+    /**
+     * Tests that single precision libraries are half the size and close to the original points.
+     */
+    @Test
+    public void testSinglePrecisionLibrary() throws Exception {
+        List<NamedGesture> gestures = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            gestures.add(new NamedGesture("gesture" + (i % 5), GesturePath.fromPoints(SyntheticGestures.create(random, i % 6, 90))));
+        }
+        Path doubles = directory.resolve("doubles.gstb");
+        Path floats = directory.resolve("floats.gstb");
+        ioManager.saveGestureLibrary(gestures, doubles, false);
+        ioManager.saveGestureLibrary(gestures, floats, true);
+
+        assertTrue(Files.size(floats) < Files.size(doubles) * 0.55);
+        List<NamedGesture> loaded = ioManager.loadGestureLibrary(floats);
+        assertEquals(gestures.size(), loaded.size());
+        for (int i = 0; i < gestures.size(); i++) {
+            assertEquals(gestures.get(i).getName(), loaded.get(i).getName());
+            assertPointsEqual(gestures.get(i).getPath().toPoints(), loaded.get(i).getPath(), 0.001);
+        }
+    }
+
+    /**
+     * Tests that files that are not gesture libraries are rejected.
+     */
+    @Test
+    public void testRejectsOtherFiles() throws Exception {
+        Path file = directory.resolve("notALibrary.gstb");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+        assertNull(ioManager.loadGestureLibrary(file));
+    }
+
+    /**
+     * Tests that a folder of xml gestures, including one that is broken, is imported in file order.
+     */
+    @Test
+    public void testImportDirectory() throws Exception {
+        Path nested = Files.createDirectories(directory.resolve("nested"));
+        Files.copy(resource("arrowTemplate.xml"), directory.resolve("a.xml"));
+        Files.copy(resource("circleTemplate.xml"), nested.resolve("b.xml"));
+        Files.write(directory.resolve("broken.xml"), "<Gesture><Point X=\"1\"".getBytes("UTF-8"));
+        Files.write(directory.resolve("notes.txt"), "not a gesture".getBytes("UTF-8"));
+
+        List<NamedGesture> gestures = ioManager.loadGestureDirectory(directory);
+        assertEquals(2, gestures.size());
+        assertEquals("arrowTemplate", gestures.get(0).getName());
+        assertPointsEqual(ioManager.loadGesture("arrowTemplate.xml"), gestures.get(0).getPath(), 0.0);
+        assertEquals("circleTemplate", gestures.get(1).getName());
+
+        Recognizer recognizer = new Recognizer();
+        assertEquals(2, ioManager.importTemplates(directory, recognizer));
+        assertEquals("arrowTemplate", recognizer.getTempList().get(0).getName());
+        assertEquals("arrowTemplate", recognizer.recognize(ioManager.loadGesture("arrowTest.xml")).getName());
+    }
+
+    /**
+     * Tests that a gesture with a single point is skipped instead of failing the whole import.
+     */
+    @Test
+    public void testImportSkipsSinglePoints() throws Exception {
+        Files.copy(resource("arrowTemplate.xml"), directory.resolve("a.xml"));
+        Files.write(directory.resolve("dot.xml"),
+                "<Gesture Name=\"dot\"><Point X=\"1\" Y=\"2\"/></Gesture>".getBytes("UTF-8"));
+        Files.write(directory.resolve("empty.xml"), "<Gesture Name=\"empty\"></Gesture>".getBytes("UTF-8"));
+
+        Recognizer recognizer = new Recognizer();
+        assertEquals(1, ioManager.importTemplates(directory, recognizer));
+        assertEquals(1, recognizer.getTempList().size());
+        assertEquals("arrowTemplate", recognizer.getTempList().get(0).getName());
+    }
+
+    /**
+     * Tests that the gestures in a zip archive are imported as templates.
+     */
+    @Test
+    public void testImportArchive() throws Exception {
+        Path archive = directory.resolve("gestures.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (String fileName : Arrays.asList("arrowTemplate.xml", "circleTemplate.xml")) {
+                zip.putNextEntry(new ZipEntry("templates/" + fileName));
+                Files.copy(resource(fileName), zip);
+                zip.closeEntry();
+            }
+        }
+
+        Recognizer recognizer = new Recognizer();
+        assertEquals(2, ioManager.importTemplates(archive, recognizer));
+        assertEquals("arrowTemplate", recognizer.getTempList().get(0).getName());
+        assertEquals("circleTemplate", recognizer.getTempList().get(1).getName());
+        assertEquals("arrowTemplate", recognizer.recognize(ioManager.loadGesture("arrowTest.xml")).getName());
+        assertNull(ioManager.loadGesture("missing.xml"));
+    }
+
+    /**
+     * Tests that a saved template library restores templates that match exactly like the originals.
+     */
+    @Test
+    public void testTemplateLibraryRoundTrip() throws Exception {
+        Recognizer original = new Recognizer();
+        Random random = new Random(3);
+        for (int i = 0; i < 30; i++) {
+            original.addTemplate(SyntheticGestures.SHAPES[i % 6], SyntheticGestures.create(random, i % 6, 70));
+        }
+        Path library = directory.resolve("templates.gstn");
+        ioManager.saveTemplateLibrary(original, library);
+
+        Recognizer restored = new Recognizer();
+        assertEquals(30, ioManager.loadTemplateLibrary(library, restored));
+        for (int i = 0; i < 30; i++) {
+            Template expected = original.getTempList().get(i);
+            Template actual = restored.getTempList().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertArrayEquals(expected.getVector(), actual.getVector(), 0.0);
+            assertArrayEquals(expected.getRadii(), actual.getRadii(), 0.0);
+            assertPointsEqual(expected.getTemplate(), actual.getPath(), 0.0);
+        }
+        for (int i = 0; i < 12; i++) {
+            Deque<Point> gesture = SyntheticGestures.create(random, i % 6, 80);
+            Template expected = original.recognize(gesture);
+            Template actual = restored.recognize(gesture);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getScore(), actual.getScore(), 0.0);
+        }
+
+        // A library saved with a different number of resampled points is refused
+        byte[] bytes = Files.readAllBytes(library);
+        bytes[8] = 32;
+        Path other = directory.resolve("other.gstn");
+        Files.write(other, bytes);
+        assertEquals(0, ioManager.loadTemplateLibrary(other, new Recognizer()));
+    }
+
+    private static void assertPointsEqual(Deque<Point> expected, GesturePath actual, double delta) {
+        assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for (Point point : expected) {
+            assertEquals(point.getX(), actual.getX(i), delta);
+            assertEquals(point.getY(), actual.getY(i), delta);
+            i++;
+        }
+    }
+}
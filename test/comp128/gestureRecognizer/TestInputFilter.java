@@ -0,0 +1,174 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestInputFilter {
+
+    private static final InputFilter FILTER = new InputFilter(2, 1);
+
+    /**
+     * Tests that a straight line comes down to its end points
+     */
+    @Test
+    public void testStraightLine() {
+        GesturePath line = new GesturePath();
+        for (int i = 0; i <= 1000; i++) {
+            line.add(i * 0.25, 10 + i * 0.125);
+        }
+        GesturePath out = new GesturePath();
+        FILTER.apply(line, out);
+        assertEquals(2, out.size());
+        assertEquals(250, out.getX(1), 0.0);
+
+        // The incremental filter cannot look ahead, but keeps a point at most every WINDOW points
+        InputFilter.Incremental incremental = FILTER.start(out);
+        for (int i = 0; i < line.size(); i++) {
+            incremental.add(line.getX(i), line.getY(i));
+        }
+        incremental.finish();
+        assertTrue(out.size() <= 2 + line.size() / 4 / InputFilter.WINDOW + 1, "kept " + out.size());
+        assertEquals(250, out.getX(out.size() - 1), 0.0);
+        assertEquals(1, FILTER.getTolerance(), 0.0);
+    }
+
+    /**
+     * Tests that points closer than the minimum distance are dropped but the end point is kept
+     */
+    @Test
+    public void testMinDistance() {
+        InputFilter filter = new InputFilter(2, 0);
+        GesturePath path = new GesturePath();
+        for (int i = 0; i <= 21; i++) {
+            path.add(i * 0.5, Math.sin(i));
+        }
+        GesturePath out = new GesturePath();
+        filter.apply(path, out);
+        for (int i = 1; i < out.size() - 1; i++) {
+            assertTrue(Math.hypot(out.getX(i) - out.getX(i - 1), out.getY(i) - out.getY(i - 1)) >= 2);
+        }
+        assertEquals(10.5, out.getX(out.size() - 1), 0.0);
+    }
+
+    /**
+     * Tests that no point the filters drop is further than the error bound from the filtered path
+     */
+    @Test
+    public void testErrorBound() {
+        Random random = new Random(22);
+        for (int shape = 0; shape < SyntheticGestures.SHAPES.length; shape++) {
+            GesturePath raw = GesturePath.fromPoints(SyntheticGestures.create(random, shape, 800));
+
+            GesturePath batch = new GesturePath();
+            FILTER.apply(raw, batch);
+            GesturePath streamed = new GesturePath();
+            InputFilter.Incremental incremental = FILTER.start(streamed);
+            for (int i = 0; i < raw.size(); i++) {
+                incremental.add(raw.getX(i), raw.getY(i));
+            }
+            incremental.finish();
+            assertEquals(raw.size(), incremental.getReceived());
+
+            for (GesturePath filtered : List.of(batch, streamed)) {
+                assertTrue(filtered.size() < raw.size(), "kept " + filtered.size() + " of " + raw.size());
+                assertEquals(raw.getX(0), filtered.getX(0), 0.0);
+                assertEquals(raw.getX(raw.size() - 1), filtered.getX(filtered.size() - 1), 0.0);
+                for (int i = 0; i < raw.size(); i++) {
+                    assertTrue(distanceToPath(raw.getX(i), raw.getY(i), filtered) <= 3 + 1e-9);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that filtering dense input leaves recognition of the bundled gestures and of synthetic
+     * shapes unchanged, to within a small difference in score. The synthetic shapes are jittered by
+     * about a pixel at every point, so half a pixel of tolerance already drops a quarter of them.
+     */
+    @Test
+    public void testRecognitionUnchanged() {
+        IOManager ioManager = new IOManager();
+        Recognizer plain = new Recognizer();
+        Recognizer filtered = new Recognizer();
+        filtered.setInputFilter(new InputFilter(1, 0.5));
+        for (Recognizer recognizer : List.of(plain, filtered)) {
+            recognizer.addTemplate("arrow", densify(ioManager.loadGesture("arrowTemplate.xml")));
+            recognizer.addTemplate("circle", densify(ioManager.loadGesture("circleTemplate.xml")));
+        }
+        Deque<Point> arrow = densify(ioManager.loadGesture("arrowTest.xml"));
+        Template expected = plain.recognize(arrow);
+        Template actual = filtered.recognize(arrow);
+        assertEquals("arrow", actual.getName());
+        assertEquals(expected.getScore(), actual.getScore(), 0.02);
+
+        Random random = new Random(23);
+        List<Deque<Point>> gestures = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            Deque<Point> gesture = SyntheticGestures.create(random, shape, 400);
+            if (i < 24) {
+                plain.addTemplate(SyntheticGestures.SHAPES[shape], gesture);
+                filtered.addTemplate(SyntheticGestures.SHAPES[shape], gesture);
+            } else {
+                gestures.add(gesture);
+            }
+        }
+        for (Deque<Point> gesture : gestures) {
+            expected = plain.recognize(gesture);
+            actual = filtered.recognize(gesture);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getScore(), actual.getScore(), 0.02);
+
+            // Filtering while the points stream in gives the same match
+            RecognitionSession session = filtered.startSession();
+            for (Point point : gesture) {
+                session.addPoint(point);
+            }
+            Template streamed = session.finish();
+            assertTrue(session.size() < gesture.size() * 0.9);
+            assertEquals(expected.getName(), streamed.getName());
+            assertEquals(expected.getScore(), streamed.getScore(), 0.02);
+        }
+    }
+
+    @Test
+    public void testNegativeDistance() {
+        assertThrows(IllegalArgumentException.class, () -> new InputFilter(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new InputFilter(0, Double.NaN));
+    }
+
+    /**
+     * Adds nine points between each pair of points, as a high rate pen would report
+     */
+    private static Deque<Point> densify(Deque<Point> points) {
+        GesturePath path = GesturePath.fromPoints(points);
+        GesturePath dense = new GesturePath();
+        for (int i = 1; i < path.size(); i++) {
+            for (int j = 0; j < 10; j++) {
+                double t = j / 10.0;
+                dense.add(path.getX(i - 1) + t * (path.getX(i) - path.getX(i - 1)),
+                        path.getY(i - 1) + t * (path.getY(i) - path.getY(i - 1)));
+            }
+        }
+        dense.add(path.getX(path.size() - 1), path.getY(path.size() - 1));
+        return dense.toPoints();
+    }
+
+    private static double distanceToPath(double x, double y, GesturePath path) {
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < path.size(); i++) {
+            best = Math.min(best, InputFilter.segmentDistanceSquared(x, y, path.getX(i - 1), path.getY(i - 1),
+                    path.getX(i), path.getY(i)));
+        }
+        return Math.sqrt(best);
+    }
+}
@@ -0,0 +1,175 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPackedTemplateLibrary {
+
+    private Recognizer recognizer;
+    private Random random;
+
+    @BeforeEach
+    public void setup() {
+        recognizer = new Recognizer();
+        random = new Random(25);
+        for (int i = 0; i < 60; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+        }
+    }
+
+    private PackedTemplateLibrary packed(PackedTemplateLibrary.Precision precision) {
+        PackedTemplateLibrary library = new PackedTemplateLibrary(precision);
+        library.addTemplates(recognizer.getTempList());
+        return library;
+    }
+
+    /**
+     * Tests that both packed precisions pick the same templates as double precision, at nearly the
+     * same distance
+     */
+    @Test
+    public void testMatchesDoublePrecision() {
+        PackedTemplateLibrary floats = packed(PackedTemplateLibrary.Precision.FLOAT);
+        PackedTemplateLibrary shorts = packed(PackedTemplateLibrary.Precision.INT16);
+        for (int i = 0; i < 100; i++) {
+            Deque<Point> gesture = SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 80);
+            RecognitionResult expected = recognizer.classify(gesture);
+            RecognitionResult single = floats.classify(gesture);
+            RecognitionResult fixed = shorts.classify(gesture);
+            assertEquals(expected.getName(), single.getName());
+            assertEquals(expected.getName(), fixed.getName());
+            assertEquals(expected.getDistance(), single.getDistance(), 1e-4);
+            assertEquals(expected.getDistance(), fixed.getDistance(), 0.01);
+            assertEquals(expected.getScore(), fixed.getScore(), 1e-4);
+            assertEquals(expected.getAngle(), single.getAngle(), 1e-9);
+        }
+    }
+
+    /**
+     * Tests that the top k matches come closest first and start with the one classify returns
+     */
+    @Test
+    public void testTopK() {
+        PackedTemplateLibrary library = packed(PackedTemplateLibrary.Precision.INT16);
+        Deque<Point> gesture = SyntheticGestures.create(random, 3, 80);
+        List<RecognitionResult> results = library.recognizeTopK(gesture, 5);
+        assertEquals(5, results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getDistance() <= results.get(i).getDistance());
+        }
+        assertEquals(library.classify(gesture).getDistance(), results.get(0).getDistance(), 0.0);
+
+        List<RecognitionResult> expected = recognizer.recognizeTopK(gesture, 5);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(expected.get(i).getDistance(), results.get(i).getDistance(), 0.01);
+        }
+        assertEquals(60, library.recognizeTopK(gesture, Integer.MAX_VALUE).size());
+    }
+
+    /**
+     * Tests that templates added as raw points are normalized like a recognizer's and stored to
+     * within half an INT16 step
+     */
+    @Test
+    public void testAddTemplate() {
+        PackedTemplateLibrary library = new PackedTemplateLibrary(PackedTemplateLibrary.Precision.INT16);
+        Deque<Point> points = SyntheticGestures.create(random, 4, 70);
+        Template stored = library.addTemplate("spiral", points);
+        Template expected = recognizer.addTemplate("spiral", points);
+        assertEquals("spiral", stored.getName());
+        assertEquals(expected.getPath().size(), stored.getPath().size());
+        for (int i = 0; i < stored.getPath().size(); i++) {
+            assertEquals(expected.getPath().getX(i), stored.getPath().getX(i), PackedTemplateLibrary.INT16_STEP / 2);
+            assertEquals(expected.getPath().getY(i), stored.getPath().getY(i), PackedTemplateLibrary.INT16_STEP / 2);
+        }
+        assertEquals(1, library.size());
+        assertEquals("spiral", library.classify(points).getName());
+    }
+
+    /**
+     * Tests that removing a name keeps the other templates and their names
+     */
+    @Test
+    public void testRemove() {
+        PackedTemplateLibrary library = packed(PackedTemplateLibrary.Precision.FLOAT);
+        assertEquals(10, library.removeTemplates("circle"));
+        assertEquals(50, library.size());
+        assertEquals(0, library.removeTemplates("circle"));
+
+        List<Template> expected = new ArrayList<>(recognizer.getTempList());
+        expected.removeIf(template -> template.getName().equals("circle"));
+        List<Template> remaining = library.getTempList();
+        assertEquals(expected.size(), remaining.size());
+        for (int i = 0; i < remaining.size(); i++) {
+            assertEquals(expected.get(i).getName(), remaining.get(i).getName());
+            assertEquals(expected.get(i).getPath().getX(7), remaining.get(i).getPath().getX(7), 1e-4);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertNotEquals("circle", library.classify(SyntheticGestures.create(random, 0, 80)).getName());
+        }
+        library.addTemplate("circle", SyntheticGestures.create(random, 0, 60));
+        assertEquals("circle", library.classify(SyntheticGestures.create(random, 0, 80)).getName());
+    }
+
+    /**
+     * Tests the storage each template takes, and that growing the library keeps what was stored
+     */
+    @Test
+    public void testStorage() {
+        PackedTemplateLibrary floats = new PackedTemplateLibrary(PackedTemplateLibrary.Precision.FLOAT);
+        PackedTemplateLibrary shorts = new PackedTemplateLibrary(PackedTemplateLibrary.Precision.INT16);
+        assertEquals(64 * 2 * 4 + 4, floats.getBytesPerTemplate());
+        assertEquals(64 * 2 * 2 + 4, shorts.getBytesPerTemplate());
+
+        shorts.ensureCapacity(1000);
+        assertEquals(1000L * shorts.getBytesPerTemplate(), shorts.getStorageBytes());
+        List<Template> templates = recognizer.getTempList();
+        for (int i = 0; i < 1000; i += templates.size()) {
+            shorts.addTemplates(templates.subList(0, Math.min(templates.size(), 1000 - i)));
+        }
+        assertEquals(1000, shorts.size());
+        assertEquals(1000L * shorts.getBytesPerTemplate(), shorts.getStorageBytes());
+
+        for (int i = 0; i < 100; i++) {
+            floats.addTemplates(templates.subList(i % templates.size(), i % templates.size() + 1));
+        }
+        assertEquals(100, floats.size());
+        assertTrue(floats.getStorageBytes() < 2L * 100 * floats.getBytesPerTemplate());
+        List<Template> stored = floats.getTempList();
+        for (int i = 0; i < 100; i++) {
+            Template template = templates.get(i % templates.size());
+            assertEquals(template.getName(), stored.get(i).getName());
+            assertEquals(template.getPath().getY(63), stored.get(i).getPath().getY(63), 1e-4);
+        }
+    }
+
+    /**
+     * Tests that templates with the wrong number of points or outside the fixed point range are
+     * refused, and an empty library matches nothing
+     */
+    @Test
+    public void testInvalid() {
+        PackedTemplateLibrary library = new PackedTemplateLibrary(PackedTemplateLibrary.Precision.INT16);
+        assertNull(library.classify(SyntheticGestures.create(random, 1, 60)));
+        assertTrue(library.recognizeTopK(SyntheticGestures.create(random, 1, 60), 3).isEmpty());
+
+        Recognizer coarse = new Recognizer(32);
+        coarse.addTemplate("zigzag", SyntheticGestures.create(random, 1, 60));
+        assertThrows(IllegalArgumentException.class, () -> library.addTemplates(coarse.getTempList()));
+        assertThrows(IllegalArgumentException.class, () -> PackedTemplateLibrary.toInt16(600));
+        assertEquals(0, library.size());
+    }
+}
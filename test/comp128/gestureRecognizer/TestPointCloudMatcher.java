@@ -0,0 +1,138 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPointCloudMatcher {
+
+    private PointCloudMatcher matcher;
+    private Random random;
+
+    @BeforeEach
+    public void setup() {
+        matcher = new PointCloudMatcher();
+        random = new Random(18);
+        for (int i = 0; i < 18; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            matcher.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+        }
+    }
+
+    /**
+     * Tests that new samples of each shape are recognized
+     */
+    @Test
+    public void testRecognizesShapes() {
+        for (int i = 0; i < 30; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            RecognitionResult result = matcher.classify(SyntheticGestures.create(random, shape, 75));
+            assertEquals(SyntheticGestures.SHAPES[shape], result.getName());
+            assertTrue(result.getScore() > 0 && result.getScore() <= 1);
+        }
+    }
+
+    /**
+     * Tests that a stroke drawn backwards matches the same template as drawn forwards
+     */
+    @Test
+    public void testDirectionDoesNotMatter() {
+        for (int shape = 0; shape < SyntheticGestures.SHAPES.length; shape++) {
+            Deque<Point> forwards = SyntheticGestures.create(random, shape, 70);
+            Deque<Point> backwards = new ArrayDeque<>();
+            for (Iterator<Point> it = forwards.descendingIterator(); it.hasNext();) {
+                backwards.add(it.next());
+            }
+            assertEquals(SyntheticGestures.SHAPES[shape], matcher.classify(forwards).getName());
+            assertEquals(SyntheticGestures.SHAPES[shape], matcher.classify(backwards).getName());
+        }
+    }
+
+    /**
+     * Tests that a two stroke gesture is recognized whatever order and direction its strokes are
+     * drawn in
+     */
+    @Test
+    public void testMultistroke() {
+        matcher.addTemplate("x", Arrays.asList(line(0, 0, 100, 100), line(100, 0, 0, 100)));
+        matcher.addTemplate("plus", Arrays.asList(line(50, 0, 50, 100), line(0, 50, 100, 50)));
+        assertEquals("x", matcher.classify(Arrays.asList(line(210, 10, 110, 110), line(210, 110, 110, 10))).getName());
+        assertEquals("plus", matcher.classify(Arrays.asList(line(0, 30, 60, 30), line(30, 60, 30, 0))).getName());
+    }
+
+    /**
+     * Tests that skipping starts by their lower bounds finds the same templates as matching every
+     * start
+     */
+    @Test
+    public void testLowerBoundsAgreeWithFullMatching() {
+        PointCloudMatcher full = new PointCloudMatcher();
+        full.setLowerBounds(false);
+        for (Template template : matcher.getTempList()) {
+            full.addTemplate(template.getName(), template.getPath().toPoints());
+        }
+        for (int i = 0; i < 24; i++) {
+            Deque<Point> gesture = SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 64);
+            assertEquals(full.classify(gesture).getName(), matcher.classify(gesture).getName());
+        }
+    }
+
+    /**
+     * Tests that the top k are in order and removal takes templates out of matching
+     */
+    @Test
+    public void testTopKAndRemove() {
+        List<RecognitionResult> top = matcher.recognizeTopK(SyntheticGestures.create(random, 0, 70), 5);
+        assertEquals(5, top.size());
+        assertEquals("circle", top.get(0).getName());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getDistance() <= top.get(i).getDistance());
+        }
+        assertThrows(IllegalArgumentException.class, () -> matcher.recognizeTopK(line(0, 0, 1, 1), 0));
+        assertEquals(matcher.getTempList().size(),
+                matcher.recognizeTopK(line(0, 0, 1, 1), Integer.MAX_VALUE).size());
+
+        assertEquals(3, matcher.removeTemplates("circle"));
+        assertEquals(15, matcher.getTempList().size());
+        assertTrue(!matcher.classify(SyntheticGestures.create(random, 0, 70)).getName().equals("circle"));
+        for (String shape : SyntheticGestures.SHAPES) {
+            matcher.removeTemplates(shape);
+        }
+        assertNull(matcher.classify(line(0, 0, 1, 1)));
+    }
+
+    /**
+     * Tests that both engines work through the GestureMatcher interface, with $1 joining strokes
+     */
+    @Test
+    public void testEnginesAreInterchangeable() {
+        for (GestureMatcher engine : new GestureMatcher[] {new Recognizer(), new PointCloudMatcher()}) {
+            engine.addTemplate("corner", Arrays.asList(line(0, 0, 100, 0), line(100, 0, 100, 100)));
+            engine.addTemplate("line", line(0, 0, 100, 100));
+            assertEquals(2, engine.getTempList().size());
+            assertEquals("corner", engine.classify(Arrays.asList(line(10, 10, 90, 10), line(90, 10, 90, 90)))
+                    .getName());
+        }
+    }
+
+    private static Deque<Point> line(double x0, double y0, double x1, double y1) {
+        Deque<Point> points = new ArrayDeque<>();
+        for (int i = 0; i <= 20; i++) {
+            double t = i / 20.0;
+            points.add(new Point(x0 + t * (x1 - x0), y0 + t * (y1 - y0)));
+        }
+        return points;
+    }
+}
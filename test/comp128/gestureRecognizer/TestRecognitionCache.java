@@ -0,0 +1,178 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestRecognitionCache {
+
+    private Recognizer recognizer;
+    private RecognitionCache cache;
+    private Random random;
+
+    @BeforeEach
+    public void setup() {
+        recognizer = new Recognizer();
+        random = new Random(23);
+        for (int i = 0; i < 30; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+        }
+        cache = new RecognitionCache(4);
+        recognizer.setCache(cache);
+    }
+
+    /**
+     * Tests that a repeated gesture is served from the cache with the same result as matching it,
+     * also when it is drawn somewhere else at another size
+     */
+    @Test
+    public void testHit() {
+        Deque<Point> gesture = SyntheticGestures.create(random, 2, 80);
+        RecognitionResult first = recognizer.classify(gesture);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        RecognitionResult again = recognizer.classify(moved(gesture, 1.5, 40));
+        assertEquals(1, cache.getHits());
+        assertEquals(first.getName(), again.getName());
+        assertEquals(first.getScore(), again.getScore(), 0.0);
+
+        Template template = recognizer.recognize(gesture);
+        assertEquals(2, cache.getHits());
+        assertEquals(first.getName(), template.getName());
+        assertEquals(first.getScore(), template.getScore(), 0.0);
+
+        recognizer.setCache(null);
+        RecognitionResult uncached = recognizer.classify(gesture);
+        assertEquals(first.getName(), uncached.getName());
+        assertEquals(first.getScore(), uncached.getScore(), 1e-9);
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted when the cache is full
+     */
+    @Test
+    public void testEviction() {
+        List<Deque<Point>> gestures = gestures(5);
+        for (int i = 0; i < 4; i++) {
+            recognizer.classify(gestures.get(i));
+        }
+        recognizer.classify(gestures.get(0));
+        recognizer.classify(gestures.get(4));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(4, cache.size());
+
+        // The second gesture was used least recently, the first was used again before the eviction
+        long hits = cache.getHits();
+        recognizer.classify(gestures.get(0));
+        assertEquals(hits + 1, cache.getHits());
+        recognizer.classify(gestures.get(1));
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    /**
+     * Tests that adding and removing templates, and changing settings, empty the cache
+     */
+    @Test
+    public void testInvalidation() {
+        Deque<Point> gesture = SyntheticGestures.create(random, 0, 80);
+        RecognitionResult before = recognizer.classify(gesture);
+
+        // The gesture itself as a template is a better match than any other
+        recognizer.addTemplate("exact", gesture);
+        RecognitionResult after = recognizer.classify(gesture);
+        assertEquals("exact", after.getName());
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(0, cache.getHits());
+
+        recognizer.removeTemplates("exact");
+        assertEquals(before.getName(), recognizer.classify(gesture).getName());
+        assertEquals(2, cache.getInvalidations());
+
+        recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+        assertEquals(0, cache.size());
+        recognizer.classify(gesture);
+        assertEquals(0, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    /**
+     * Tests that gestures that differ by more than the grid get their own entries
+     */
+    @Test
+    public void testDifferentGestures() {
+        Deque<Point> a = SyntheticGestures.create(random, 4, 80);
+        Deque<Point> b = SyntheticGestures.create(random, 4, 80);
+        assertNotEquals(cache.key(prepared(a)), cache.key(prepared(b)));
+        assertEquals(cache.key(prepared(a)), cache.key(prepared(moved(a, 0.5, -20))));
+    }
+
+    @Test
+    public void testEmpty() {
+        recognizer.removeTemplates(template -> true);
+        assertNull(recognizer.classify(SyntheticGestures.create(random, 1, 80)));
+        assertNull(recognizer.recognize(SyntheticGestures.create(random, 1, 80)));
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new RecognitionCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new RecognitionCache(8, 0));
+    }
+
+    /**
+     * Tests that a result computed before a setting changed is not stored or served after it, as
+     * when a recognition still running with the old matching mode finishes after the change
+     */
+    @Test
+    public void testSettingChangeDuringMatch() {
+        Deque<Point> gesture = SyntheticGestures.create(random, 2, 80);
+        RecognitionResult golden = recognizer.classify(gesture);
+        RecognitionCache.Key key = cache.key(prepared(gesture));
+        TemplateSnapshot snapshot = recognizer.snapshot();
+        long generation = cache.getGeneration();
+
+        recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+        assertEquals(0, cache.size());
+        cache.put(key, snapshot, generation, golden);
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key, snapshot, generation));
+
+        RecognitionResult protractor = recognizer.classify(gesture);
+        assertEquals(1, cache.size());
+        assertEquals(protractor.getScore(), recognizer.classify(gesture).getScore(), 0.0);
+        recognizer.setCache(null);
+        assertEquals(protractor.getScore(), recognizer.classify(gesture).getScore(), 1e-9);
+    }
+
+    private List<Deque<Point>> gestures(int count) {
+        List<Deque<Point>> gestures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            gestures.add(SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 80));
+        }
+        return gestures;
+    }
+
+    private GesturePath prepared(Deque<Point> gesture) {
+        GesturePath normalized = new GesturePath();
+        recognizer.normalize(GesturePath.fromPoints(gesture), normalized);
+        return normalized;
+    }
+
+    private static Deque<Point> moved(Deque<Point> gesture, double scale, double offset) {
+        Deque<Point> moved = new ArrayDeque<>();
+        for (Point point : gesture) {
+            moved.add(new Point(point.getX() * scale + offset, point.getY() * scale + offset));
+        }
+        return moved;
+    }
+}
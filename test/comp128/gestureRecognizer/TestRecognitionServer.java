@@ -0,0 +1,167 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestRecognitionServer {
+
+    private RecognitionServer server;
+    private HttpClient client;
+    private Random random;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        Recognizer recognizer = new Recognizer();
+        random = new Random(20);
+        for (int i = 0; i < 12; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+        }
+        server = new RecognitionServer(recognizer, 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Tests recognizing one gesture, its top matches, and a batch
+     */
+    @Test
+    public void testRecognize() throws Exception {
+        Deque<Point> circle = SyntheticGestures.create(random, 0, 70);
+        HttpResponse<String> response = post("/recognize", PointArrays.toJson(circle));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"name\":\"circle\""), response.body());
+
+        response = post("/recognize?k=3", PointArrays.toJson(circle));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("[{\"name\":\"circle\""), response.body());
+        assertEquals(3, response.body().split("\"name\"").length - 1);
+
+        String batch = "[" + PointArrays.toJson(SyntheticGestures.create(random, 1, 70)) + ","
+                + PointArrays.toJson(SyntheticGestures.create(random, 3, 70)) + "]";
+        response = post("/recognize/batch", batch);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().matches("\\[\\{\"name\":\"zigzag\".*\\},\\{\"name\":\"triangle\".*\\}\\]"),
+                response.body());
+        assertEquals(1, awaitCount(server.getBatchLatency(), 1));
+    }
+
+    /**
+     * Tests that malformed requests get errors instead of failing the server
+     */
+    @Test
+    public void testBadRequests() throws Exception {
+        assertEquals(400, post("/recognize", "[[1, 2], [3]]").statusCode());
+        assertEquals(400, post("/recognize", "not json").statusCode());
+        assertEquals(400, post("/recognize?k=0", "[[1, 2], [3, 4]]").statusCode());
+        assertEquals(400, post("/recognize/batch", "[1, 2]").statusCode());
+        assertEquals(404, post("/recognizer", "[[1, 2], [3, 4]]").statusCode());
+        HttpResponse<String> get = client.send(HttpRequest.newBuilder(server.getUri().resolve("/recognize")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+        assertEquals(200, post("/recognize", "[[1, 2], [3, 4], [5, 7]]").statusCode());
+        assertEquals(400, post("/recognize?k=" + (RecognitionServer.MAX_K + 1), "[[1, 2], [3, 4]]").statusCode());
+        assertEquals(400, post("/recognize?k=2147483647", "[[1, 2], [3, 4]]").statusCode());
+        assertEquals(200, post("/recognize?k=" + RecognitionServer.MAX_K, "[[1, 2], [3, 4]]").statusCode());
+    }
+
+    /**
+     * Tests that a failure inside the matcher gets a 500 response and is still counted and timed
+     */
+    @Test
+    public void testMatcherFailure() throws Exception {
+        server.stop();
+        server = new RecognitionServer(new Recognizer() {
+            @Override
+            public RecognitionResult classify(Deque<Point> input) {
+                throw new IllegalStateException("broken matcher");
+            }
+        }, 0);
+        server.start();
+        HttpResponse<String> response = post("/recognize", "[[1, 2], [3, 4]]");
+        assertEquals(500, response.statusCode());
+        assertTrue(response.body().contains("broken matcher"), response.body());
+        assertEquals(500, post("/recognize/batch", "[[[1, 2], [3, 4]]]").statusCode());
+        assertEquals(1, awaitCount(server.getRequestLatency(), 1));
+        assertEquals(1, awaitCount(server.getBatchLatency(), 1));
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(server.getUri().resolve("/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(stats.body().contains("\"errors\":2"), stats.body());
+    }
+
+    /**
+     * Tests the parser on strokes, multistroke gestures and batches
+     */
+    @Test
+    public void testPointArrays() {
+        assertEquals(1, PointArrays.parseGesture(" [ [1, 2.5], [-3e2, 4] ] ").size());
+        assertEquals(-300, PointArrays.parseGesture("[[1, 2.5], [-3e2, 4]]").get(0).getLast().getX(), 0);
+        assertEquals(2, PointArrays.parseGesture("[[[0, 0], [1, 1]], [[1, 0], [0, 1]]]").size());
+        assertEquals(2, PointArrays.parseBatch("[[[0, 0], [1, 1]], [[[1, 0]], [[0, 1]]]]").size());
+        assertThrows(IllegalArgumentException.class, () -> PointArrays.parseGesture("[]"));
+        assertThrows(IllegalArgumentException.class, () -> PointArrays.parseGesture("[[1, 2]"));
+        assertThrows(IllegalArgumentException.class, () -> PointArrays.parseGesture("[[1, 2]] x"));
+        assertThrows(IllegalArgumentException.class, () -> PointArrays.parseBatch("[[[[[1, 2]]]]]"));
+        String deep = "[".repeat(500_000);
+        assertThrows(IllegalArgumentException.class, () -> PointArrays.parseGesture(deep));
+        assertEquals("\"a\\\"b\"", PointArrays.quote("a\"b"));
+    }
+
+    /**
+     * Tests that the load generator gets every request answered and the server counts them
+     */
+    @Test
+    public void testLoadGenerator() throws Exception {
+        LoadGenerator.Report report = new LoadGenerator(server.getUri(), 4, 10, 1).run();
+        assertEquals(40, report.getRequests());
+        assertEquals(0, report.getErrors());
+        assertEquals(40, awaitCount(server.getRequestLatency(), 40));
+        assertTrue(report.getLatency().getP50Micros() <= report.getLatency().getP99Micros());
+
+        report = new LoadGenerator(server.getUri(), 2, 3, 8).run();
+        assertEquals(6, report.getRequests());
+        assertEquals(6, awaitCount(server.getBatchLatency(), 6));
+
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(server.getUri().resolve("/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertTrue(stats.body().contains("\"gestures\":88"), stats.body());
+    }
+
+    /**
+     * The server records a request's latency after sending the response, so the client can see the
+     * response a moment before it is counted
+     */
+    private static long awaitCount(LatencyHistogram histogram, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (histogram.getCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return histogram.getCount();
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        URI uri = server.getUri().resolve(path);
+        return client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
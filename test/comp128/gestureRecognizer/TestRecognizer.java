@@ -3,7 +3,12 @@ package comp128.gestureRecognizer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import edu.macalester.graphics.Point;
 
@@ -220,6 +225,534 @@ public class TestRecognizer {
        assertEquals(1.0, score, 0.01); 
 
    }
-}
 
+   /**
+    * Tests that normalizing a GesturePath in place gives the same points as the deque pipeline.
+    */
+   @Test
+   public void testNormalizeMatchesDequePipeline(){
+       IOManager ioManager = new IOManager();
+       Deque<Point> gesture = ioManager.loadGesture("arrowTest.xml");
+
+       Deque<Point> resampled = recognizer.resample(gesture, 64);
+       Deque<Point> rotated = recognizer.rotateBy(resampled, -recognizer.indicativeAngle(resampled));
+       Deque<Point> scaled = recognizer.scaleTo(rotated, 250);
+       Deque<Point> translated = recognizer.translateTo(scaled, new Point(0, 0));
+
+       GesturePath normalized = new GesturePath();
+       recognizer.normalize(GesturePath.fromPoints(gesture), normalized);
+
+       assertEquals(translated.size(), normalized.size());
+       int i = 0;
+       for (Point point : translated) {
+           assertEquals(point.getX(), normalized.getX(i), 0.000001);
+           assertEquals(point.getY(), normalized.getY(i), 0.000001);
+           i++;
+       }
+       assertEquals(102, gesture.size());
+   }
+
+   /**
+    * Tests that the fused normalization and the prepared values computed from it agree with running
+    * each stage on its own.
+    */
+   @Test
+   public void testFusedNormalizeMatchesStages(){
+       Random random = new Random(8);
+       for (int i = 0; i < 60; i++) {
+           GesturePath gesture = GesturePath.fromPoints(SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 20 + i * 7));
+
+           GesturePath staged = new GesturePath();
+           recognizer.resample(gesture, 64, staged);
+           recognizer.rotateBy(staged, -recognizer.indicativeAngle(staged));
+           recognizer.scaleTo(staged, 250);
+           recognizer.translateTo(staged, 0, 0);
+
+           PreparedGesture prepared = new PreparedGesture(64);
+           recognizer.prepare(gesture, prepared);
+           assertEquals(64, prepared.points.size());
+           double[] vector = Recognizer.vectorize(staged);
+           for (int j = 0; j < 64; j++) {
+               assertEquals(staged.getX(j), prepared.points.getX(j), 0.000001);
+               assertEquals(staged.getY(j), prepared.points.getY(j), 0.000001);
+               assertEquals(vector[2 * j], prepared.vector[2 * j], 0.000000001);
+               assertEquals(vector[2 * j + 1], prepared.vector[2 * j + 1], 0.000000001);
+               assertEquals(Math.hypot(staged.getX(j), staged.getY(j)), prepared.radii[j], 0.000001);
+           }
+           assertEquals(0, prepared.centroidOffset, 0.000001);
+       }
+   }
+
+   /**
+    * Tests that Protractor matching picks the same template as the golden section search and reports
+    * a score on the same scale.
+    */
+   @Test
+   public void testRecognizeProtractor(){
+       IOManager ioManager = new IOManager();
+       recognizer.addTemplate("arrow", ioManager.loadGesture("arrowTemplate.xml"));
+       recognizer.addTemplate("circle", ioManager.loadGesture("circleTemplate.xml"));
+       Deque<Point> testGesture = ioManager.loadGesture("arrowTest.xml");
+
+       double goldenScore = recognizer.recognize(testGesture).getScore();
+
+       recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+       Template closestTemplate = recognizer.recognize(testGesture);
+       assertEquals("arrow", closestTemplate.getName());
+       assertEquals(goldenScore, closestTemplate.getScore(), 0.01);
+
+       recognizer.addTemplate("testGesture", testGesture);
+       Template selfRecognize = recognizer.recognize(testGesture);
+       assertEquals("testGesture", selfRecognize.getName());
+       assertEquals(1.0, selfRecognize.getScore(), 0.01);
+   }
+
+   /**
+    * Tests that splitting a large template library across threads finds the same template and score as
+    * a sequential scan.
+    */
+   @Test
+   public void testParallelRecognizeMatchesSequential(){
+       Random random = new Random(42);
+       for (int i = 0; i < 600; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 80));
+       }
+       for (MatchingMode mode : MatchingMode.values()) {
+           recognizer.setMatchingMode(mode);
+           for (int shape = 0; shape < SyntheticGestures.SHAPES.length; shape++) {
+               Deque<Point> gesture = SyntheticGestures.create(random, shape, 80);
+
+               recognizer.setParallelMatching(false);
+               Template sequential = recognizer.recognize(gesture);
+               double sequentialScore = sequential.getScore();
+
+               recognizer.setParallelMatching(true);
+               recognizer.setParallelThreshold(1);
+               Template parallel = recognizer.recognize(gesture);
+
+               assertSame(sequential.getPath(), parallel.getPath());
+               assertEquals(sequentialScore, parallel.getScore(), 0.0);
+           }
+       }
+   }
+
+   /**
+    * Tests that the pruning cascade returns exactly what the exhaustive search returns, and that it
+    * actually skips templates.
+    */
+   @Test
+   public void testPruningMatchesExhaustiveSearch(){
+       Random random = new Random(7);
+       for (int i = 0; i < 300; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       for (int i = 0; i < 30; i++) {
+           Deque<Point> gesture = SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 60);
+
+           recognizer.setPruning(false);
+           Template exhaustive = recognizer.recognize(gesture);
+           double exhaustiveScore = exhaustive.getScore();
+
+           recognizer.setPruning(true);
+           Template pruned = recognizer.recognize(gesture);
+
+           assertSame(exhaustive.getPath(), pruned.getPath());
+           assertEquals(exhaustiveScore, pruned.getScore(), 0.0);
+       }
+
+       PruningStats stats = recognizer.getPruningStats();
+       assertEquals(30 * 300, stats.getTemplatesConsidered());
+       assertEquals(stats.getTemplatesConsidered(),
+           stats.getPrunedByCoarseBound() + stats.getPrunedByRadialBound() + stats.getFullSearches());
+       assertTrue(stats.getPrunedByCoarseBound() + stats.getPrunedByRadialBound() > 0);
+       assertTrue(stats.getAbandonedEvaluations() > 0);
+
+       stats.reset();
+       assertEquals(0, stats.getTemplatesConsidered());
+   }
+
+   /**
+    * Tests that the exact template index finds the same template as a linear scan, including for
+    * templates added after the index was built, and that it skips templates.
+    */
+   @Test
+   public void testIndexMatchesLinearScan(){
+       Random random = new Random(11);
+       for (int i = 0; i < 400; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       recognizer.setIndexing(true);
+       for (int i = 0; i < 200; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       recognizer.getPruningStats().reset();
+
+       for (int i = 0; i < 30; i++) {
+           Deque<Point> gesture = SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 60);
+
+           recognizer.setIndexing(false);
+           Template linear = recognizer.recognize(gesture);
+           double linearScore = linear.getScore();
+
+           recognizer.setIndexing(true);
+           Template indexed = recognizer.recognize(gesture);
+           assertSame(linear.getPath(), indexed.getPath());
+           assertEquals(linearScore, indexed.getScore(), 0.0);
+
+           recognizer.setIndexApproximation(0.5);
+           Template approximate = recognizer.recognize(gesture);
+           assertTrue(approximate.getScore() <= linearScore);
+           recognizer.setIndexApproximation(0);
+       }
+       assertTrue(recognizer.getPruningStats().getPrunedByIndex() > 0);
+   }
+
+   /**
+    * Tests that batch recognition gives the same templates and scores as recognizing one at a time,
+    * in input order.
+    */
+   @Test
+   public void testRecognizeAllMatchesRecognize(){
+       Random random = new Random(3);
+       for (int i = 0; i < 60; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       List<Deque<Point>> gestures = new ArrayList<>();
+       for (int i = 0; i < 40; i++) {
+           gestures.add(SyntheticGestures.create(random, (i * 5) % SyntheticGestures.SHAPES.length, 50 + i));
+       }
+
+       List<Template> results = recognizer.recognizeAll(gestures);
+
+       assertEquals(gestures.size(), results.size());
+       for (int i = 0; i < gestures.size(); i++) {
+           Template single = recognizer.recognize(gestures.get(i));
+           assertEquals(single.getName(), results.get(i).getName());
+           assertEquals(single.getScore(), results.get(i).getScore(), 0.0);
+       }
+   }
+
+   /**
+    * Tests that a batch big enough to be split across the pool keeps input order and gives the
+    * results recognize does, in both matching modes.
+    */
+   @Test
+   public void testRecognizeAllInParallel() throws InterruptedException {
+       Random random = new Random(6);
+       for (int i = 0; i < 90; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       List<Deque<Point>> gestures = new ArrayList<>();
+       for (int i = 0; i < 150; i++) {
+           gestures.add(SyntheticGestures.create(random, (i * 7) % SyntheticGestures.SHAPES.length, 40 + i % 50));
+       }
+
+       ForkJoinPool pool = new ForkJoinPool(4);
+       recognizer.setPool(pool);
+       try {
+           for (MatchingMode mode : MatchingMode.values()) {
+               recognizer.setMatchingMode(mode);
+               List<Template> results = recognizer.recognizeAll(gestures);
+               assertEquals(gestures.size(), results.size());
+               for (int i = 0; i < gestures.size(); i++) {
+                   Template single = recognizer.recognize(gestures.get(i));
+                   assertEquals(single.getName(), results.get(i).getName(), "gesture " + i);
+                   assertEquals(single.getScore(), results.get(i).getScore(), 0.0, "gesture " + i);
+               }
+           }
+       } finally {
+           pool.shutdown();
+       }
+       assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+   }
+
+   /**
+    * Tests that a streaming session reports provisional matches and finishes with the same result as
+    * recognizing the whole gesture at once.
+    */
+   @Test
+   public void testSessionMatchesRecognize(){
+       Random random = new Random(5);
+       for (int i = 0; i < 120; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       for (int shape = 0; shape < SyntheticGestures.SHAPES.length; shape++) {
+           Deque<Point> gesture = SyntheticGestures.create(random, shape, 95);
+           RecognitionSession session = recognizer.startSession();
+           List<Template> provisional = new ArrayList<>();
+           session.onProvisionalMatch(provisional::add);
+           for (Point point : gesture) {
+               session.addPoint(point);
+           }
+           assertEquals(9, provisional.size());
+           assertEquals(recognizer.pathLength(gesture), session.getPathLength(), 0.000001);
+
+           Template finished = session.finish();
+           Template whole = recognizer.recognize(gesture);
+           assertEquals(whole.getName(), finished.getName());
+           assertEquals(whole.getScore(), finished.getScore(), 0.0);
+       }
+   }
+
+   /**
+    * Tests that provisional matches run on the session's executor one at a time, are only reported
+    * until the session finishes.
+    */
+   @Test
+   public void testSessionProvisionalExecutor(){
+       Random random = new Random(8);
+       for (int i = 0; i < 60; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       List<Point> gesture = new ArrayList<>(SyntheticGestures.create(random, 3, 90));
+       RecognitionSession session = recognizer.startSession();
+       List<Runnable> queued = new ArrayList<>();
+       List<Template> provisional = new ArrayList<>();
+       session.setProvisionalExecutor(queued::add);
+       session.onProvisionalMatch(provisional::add);
+
+       // Later intervals are skipped while the first recognition is still queued
+       for (Point point : gesture.subList(0, 35)) {
+           session.addPoint(point);
+       }
+       assertEquals(1, queued.size());
+       assertNull(session.getProvisionalMatch());
+       queued.remove(0).run();
+       assertEquals(1, provisional.size());
+       assertSame(provisional.get(0), session.getProvisionalMatch());
+
+       for (Point point : gesture.subList(35, gesture.size())) {
+           session.addPoint(point);
+       }
+       assertEquals(1, queued.size());
+       Template finished = session.finish();
+       assertTrue(session.isFinished());
+       Template whole = recognizer.recognize(new ArrayDeque<>(gesture));
+       assertEquals(whole.getName(), finished.getName());
+       assertEquals(whole.getScore(), finished.getScore(), 0.0);
+
+       // A recognition still running when the stroke ends is not reported
+       queued.remove(0).run();
+       assertEquals(1, provisional.size());
+       assertSame(finished, session.getProvisionalMatch());
+   }
 
+   /**
+    * Tests that finishing a session does not return its last provisional match when the templates
+    * or the settings changed after it
+    */
+   @Test
+   public void testSessionFinishAfterChanges(){
+       Random random = new Random(7);
+       for (int i = 0; i < 12; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       Deque<Point> gesture = SyntheticGestures.create(random, 0, 80);
+       RecognitionSession session = recognizer.startSession();
+       for (Point point : gesture) {
+           session.addPoint(point);
+       }
+       Template provisional = session.getProvisionalMatch();
+       assertEquals("circle", provisional.getName());
+       assertSame(provisional, session.finish());
+
+       recognizer.removeTemplates("circle");
+       Template finished = session.finish();
+       assertNotEquals("circle", finished.getName());
+       assertTrue(recognizer.getTempList().stream().anyMatch(template -> template.getPath() == finished.getPath()));
+
+       Template again = session.finish();
+       recognizer.setMatchingMode(MatchingMode.PROTRACTOR);
+       Template protractor = session.finish();
+       assertNotSame(again, protractor);
+       assertEquals(recognizer.recognize(gesture).getScore(), protractor.getScore(), 1e-9);
+   }
+
+   /**
+    * Tests that recognitions are counted and timed per stage, and that the metrics can be read over JMX.
+    */
+   @Test
+   public void testMetrics() throws Exception {
+       Random random = new Random(6);
+       for (int i = 0; i < 30; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+       }
+       RecognizerMetrics metrics = recognizer.getMetrics();
+       metrics.reset();
+       recognizer.setPruning(false);
+       for (int i = 0; i < 10; i++) {
+           recognizer.recognize(SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 80));
+       }
+       assertEquals(10, metrics.getRecognitions());
+       assertEquals(300, metrics.getTemplatesEvaluated());
+       assertTrue(metrics.getDistanceEvaluations() >= 300 * 10);
+       for (RecognizerMetrics.Stage stage : RecognizerMetrics.Stage.values()) {
+           LatencyHistogram latency = metrics.getLatency(stage);
+           assertEquals(10, latency.getCount());
+           assertTrue(latency.getP50Micros() <= latency.getP99Micros());
+           assertTrue(latency.getP99Micros() <= latency.getMaxMicros());
+       }
+
+       metrics.setEnabled(false);
+       recognizer.recognize(originalPoints);
+       assertEquals(10, metrics.getRecognitions());
+
+       metrics.registerMBeans("testMetrics");
+       try {
+           MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+           ObjectName name = new ObjectName(
+               "comp128.gestureRecognizer:type=Recognizer,name=\"testMetrics\"");
+           assertEquals(10L, server.getAttribute(name, "Recognitions"));
+           assertEquals(10L, server.getAttribute(new ObjectName(name + ",stage=match"), "Count"));
+       } finally {
+           metrics.unregisterMBeans();
+       }
+   }
+
+   /**
+    * Tests that the metrics text uses decimal points whatever the default locale is
+    */
+   @Test
+   public void testMetricsText(){
+       Locale locale = Locale.getDefault();
+       Locale.setDefault(Locale.GERMANY);
+       try {
+           recognizer.recognize(originalPoints);
+           String text = recognizer.getMetrics().toString();
+           assertTrue(text.matches("(?s)recognitions=\\d+ \\(\\d+\\.\\d/s\\).*"), text);
+           assertTrue(recognizer.getMetrics().getLatency(RecognizerMetrics.Stage.TOTAL).toString()
+               .matches("count=1 mean=\\d+\\.\\dus .*"));
+       } finally {
+           Locale.setDefault(locale);
+       }
+   }
+
+   /**
+    * Tests that the top k candidates are the k smallest distances of an exhaustive search, in order,
+    * with and without pruning and the index.
+    */
+   @Test
+   public void testRecognizeTopK(){
+       Random random = new Random(9);
+       for (int i = 0; i < 200; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape] + i, SyntheticGestures.create(random, shape, 60));
+       }
+       for (int g = 0; g < 6; g++) {
+           GesturePath gesture = GesturePath.fromPoints(SyntheticGestures.create(random, g, 85));
+           PreparedGesture prepared = new PreparedGesture(64);
+           recognizer.prepare(gesture, prepared);
+           List<Template> templates = recognizer.getTempList();
+           double[] distances = new double[templates.size()];
+           for (int i = 0; i < templates.size(); i++) {
+               distances[i] = recognizer.distanceAtBestAngle(prepared.points, templates.get(i).getPath());
+           }
+           double[] sorted = distances.clone();
+           Arrays.sort(sorted);
+
+           for (boolean indexing : new boolean[] {false, true}) {
+               recognizer.setIndexing(indexing);
+               List<RecognitionResult> top = recognizer.recognizeTopK(gesture, 10);
+               assertEquals(10, top.size());
+               assertEquals(recognizer.recognize(gesture).getName(), top.get(0).getName());
+               for (int i = 0; i < 10; i++) {
+                   assertEquals(sorted[i], top.get(i).getDistance(), 0.000001);
+               }
+           }
+       }
+       assertEquals(200, recognizer.recognizeTopK(originalPoints, 500).size());
+       assertEquals(200, recognizer.recognizeTopK(originalPoints, Integer.MAX_VALUE).size());
+       assertThrows(IllegalArgumentException.class, () -> recognizer.recognizeTopK(originalPoints, 0));
+   }
+
+   /**
+    * Tests that the precomputed cosines and sines are exactly what the golden section search would
+    * compute for every angle it can try
+    */
+   @Test
+   public void testGoldenSectionAngles(){
+       assertEquals(Math.cos(GoldenSectionAngles.FIRST), GoldenSectionAngles.FIRST_COS, 0);
+       assertEquals(Math.sin(GoldenSectionAngles.SECOND), GoldenSectionAngles.SECOND_SIN, 0);
+       double phi = 0.5 * (-1.0 + Math.sqrt(5.0));
+       for (int path = 0; path < 256; path++) {
+           double thetaA = -Math.toRadians(45);
+           double thetaB = Math.toRadians(45);
+           double x1 = phi * thetaA + (1 - phi) * thetaB;
+           double x2 = (1 - phi) * thetaA + phi * thetaB;
+           int node = 1;
+           for (int step = 0; Math.abs(thetaB - thetaA) > Math.toRadians(2); step++) {
+               double theta;
+               if ((path >> step & 1) == 0) {
+                   node = 2 * node;
+                   thetaB = x2;
+                   x2 = x1;
+                   x1 = theta = phi * thetaA + (1 - phi) * thetaB;
+               } else {
+                   node = 2 * node + 1;
+                   thetaA = x1;
+                   x1 = x2;
+                   x2 = theta = (1 - phi) * thetaA + phi * thetaB;
+               }
+               assertTrue(GoldenSectionAngles.contains(node));
+               assertEquals(theta, GoldenSectionAngles.angle(node), 0);
+               assertEquals(Math.cos(theta), GoldenSectionAngles.cos(node), 0);
+               assertEquals(Math.sin(theta), GoldenSectionAngles.sin(node), 0);
+           }
+       }
+   }
+
+   /**
+    * Tests that a distance looked up in a rotation table is the distance at the table's angle, and
+    * that matching with rotation tables finds the same templates with nearly the same scores
+    */
+   @Test
+   public void testRotationTables(){
+       Random random = new Random(17);
+       Recognizer tabled = new Recognizer();
+       for (int i = 0; i < 60; i++) {
+           int shape = i % SyntheticGestures.SHAPES.length;
+           Deque<Point> template = SyntheticGestures.create(random, shape, 70);
+           recognizer.addTemplate(SyntheticGestures.SHAPES[shape], template);
+           tabled.addTemplate(SyntheticGestures.SHAPES[shape], template);
+       }
+       tabled.setRotationResolution(1);
+       assertEquals(1, tabled.getRotationResolution(), 1e-12);
+       assertThrows(IllegalArgumentException.class, () -> tabled.setRotationResolution(-1));
+
+       GesturePath gesture = GesturePath.fromPoints(SyntheticGestures.create(random, 2, 80));
+       PreparedGesture prepared = new PreparedGesture(64);
+       recognizer.prepare(gesture, prepared);
+       Template template = tabled.getTempList().get(0);
+       RotationTable table = template.rotations;
+       assertEquals(91, table.count);
+       RecognitionResult described = tabled.describe(prepared, template, 0);
+       int k = table.nearest(described.getAngle());
+       assertEquals(table.angle(k), described.getAngle(), 1e-12);
+       double direct = DistanceKernels.scalar().rotatedDistanceSum(prepared.points.xs(), prepared.points.ys(),
+           prepared.centroidX, prepared.centroidY, template.getPath().xs(), template.getPath().ys(), 64,
+           Math.cos(table.angle(k)), Math.sin(table.angle(k)), Double.POSITIVE_INFINITY);
+       double looked = table.distanceSum(DistanceKernels.scalar(), prepared.points.xs(), prepared.points.ys(), 64,
+           prepared.centroidX, prepared.centroidY, k, Double.POSITIVE_INFINITY);
+       assertEquals(direct, looked, direct * 1e-12);
+
+       for (int i = 0; i < 30; i++) {
+           Deque<Point> input = SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 80);
+           Template expected = recognizer.recognize(input);
+           Template actual = tabled.recognize(input);
+           assertEquals(expected.getName(), actual.getName());
+           assertEquals(expected.getScore(), actual.getScore(), 0.005);
+       }
+       tabled.addTemplate("late", originalPoints);
+       assertNotNull(tabled.getTempList().get(60).rotations);
+   }
+}
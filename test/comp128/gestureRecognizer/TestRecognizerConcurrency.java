@@ -0,0 +1,209 @@
+package comp128.gestureRecognizer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.macalester.graphics.Point;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests for recognizing from several threads at once while templates change.
+ */
+public class TestRecognizerConcurrency {
+
+    private static final int THREADS = 4;
+
+    private Recognizer recognizer;
+    private List<Deque<Point>> gestures;
+
+    @BeforeEach
+    public void setup() {
+        recognizer = new Recognizer();
+        Random random = new Random(21);
+        for (int i = 0; i < 60; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 70));
+        }
+        gestures = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            gestures.add(SyntheticGestures.create(random, i % SyntheticGestures.SHAPES.length, 90));
+        }
+    }
+
+    /**
+     * Tests that concurrent recognitions of the same templates each get their own score, equal to the
+     * score recognizing alone gives.
+     */
+    @Test
+    public void testConcurrentScoresAreNotShared() throws Exception {
+        List<RecognitionResult> expected = new ArrayList<>();
+        for (Deque<Point> gesture : gestures) {
+            expected.add(recognizer.classify(gesture));
+        }
+
+        runConcurrently(thread -> {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < gestures.size(); i++) {
+                    int g = (i + thread * 7) % gestures.size();
+                    Template template = recognizer.recognize(gestures.get(g));
+                    RecognitionResult result = recognizer.classify(gestures.get(g));
+                    assertSame(expected.get(g).getTemplate(), result.getTemplate());
+                    assertEquals(expected.get(g).getScore(), result.getScore(), 0.0);
+                    assertEquals(expected.get(g).getAngle(), result.getAngle(), 0.0);
+                    assertEquals(expected.get(g).getScore(), template.getScore(), 0.0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Tests that recognizing while other threads add and remove templates always sees a consistent set
+     * of templates: every result is scored against the template it names, and the templates that are
+     * never removed keep being found.
+     */
+    @Test
+    public void testRecognizeWhileTemplatesChange() throws Exception {
+        recognizer.setIndexing(true);
+        List<RecognitionResult> expected = new ArrayList<>();
+        for (Deque<Point> gesture : gestures) {
+            expected.add(recognizer.classify(gesture));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+        Future<?> writer = writerExecutor.submit(() -> {
+            Random random = new Random(22);
+            int added = 0;
+            while (running.get()) {
+                int shape = added % SyntheticGestures.SHAPES.length;
+                recognizer.addTemplate("extra" + added, SyntheticGestures.create(random, shape, 50));
+                if (added % 3 == 2) {
+                    recognizer.removeTemplates("extra" + (added - 2));
+                    recognizer.removeTemplates("extra" + (added - 1));
+                }
+                added++;
+            }
+            return null;
+        });
+
+        try {
+            runConcurrently(thread -> {
+                for (int round = 0; round < 15; round++) {
+                    for (int i = 0; i < gestures.size(); i++) {
+                        RecognitionResult result = recognizer.classify(gestures.get(i));
+                        assertNotNull(result);
+                        // The extra templates can only ever be closer than the original winner
+                        assertTrue(result.getScore() >= expected.get(i).getScore());
+                        PreparedGesture prepared = new PreparedGesture(64);
+                        recognizer.prepare(GesturePath.fromPoints(gestures.get(i)), prepared);
+                        assertEquals(recognizer.distanceAtBestAngle(prepared.points, result.getTemplate().getPath()),
+                            result.getDistance(), 0.000001);
+                    }
+                }
+            });
+        } finally {
+            running.set(false);
+            writer.get();
+            writerExecutor.shutdown();
+        }
+
+        recognizer.removeTemplates(template -> template.getName().startsWith("extra"));
+        TemplateSnapshot snapshot = recognizer.snapshot();
+        assertEquals(60, snapshot.templates.size());
+        assertEquals(60, snapshot.index.size());
+        for (int i = 0; i < gestures.size(); i++) {
+            assertSame(expected.get(i).getTemplate(), recognizer.classify(gestures.get(i)).getTemplate());
+        }
+    }
+
+    /**
+     * Tests that templates added from many threads at once are all kept and all indexed.
+     */
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        recognizer.setIndexing(true);
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 50; i++) {
+                int shape = i % SyntheticGestures.SHAPES.length;
+                recognizer.addTemplate("thread" + thread, SyntheticGestures.create(random, shape, 40));
+            }
+        });
+        assertEquals(60 + THREADS * 50, recognizer.getTempList().size());
+        assertEquals(60 + THREADS * 50, recognizer.snapshot().index.size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(50, recognizer.removeTemplates("thread" + thread));
+        }
+        assertEquals(60, recognizer.getTempList().size());
+        assertFalse(recognizer.removeTemplate(new Template("missing", new GesturePath())));
+    }
+
+    /**
+     * Tests that the templates results are copied from cannot be changed through the results, and
+     * that removing a result removes the template it was copied from
+     */
+    @Test
+    public void testResultsAreReadOnly() {
+        Deque<Point> gesture = gestures.get(0);
+        Template result = recognizer.recognize(gesture);
+        Template original = recognizer.classify(gesture).getTemplate();
+        assertNotSame(original, result);
+        assertSame(original.getPath(), result.getPath());
+        assertThrows(UnsupportedOperationException.class, () -> result.getPath().set(0, 1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> original.getPath().add(1, 1));
+        assertThrows(UnsupportedOperationException.class, () -> recognizer.getTempList().get(0).getPath().clear());
+
+        assertTrue(recognizer.removeTemplate(result));
+        assertEquals(59, recognizer.getTempList().size());
+        assertFalse(recognizer.getTempList().contains(original));
+        assertFalse(recognizer.removeTemplate(result));
+
+        Template batch = recognizer.recognizeAll(Collections.singletonList(gesture)).get(0);
+        RecognitionSession session = recognizer.startSession();
+        gesture.forEach(session::addPoint);
+        Template streamed = session.finish();
+        assertSame(batch.getOriginal(), streamed.getOriginal());
+        assertTrue(recognizer.removeTemplate(streamed));
+        assertFalse(recognizer.removeTemplate(batch));
+        assertEquals(58, recognizer.getTempList().size());
+    }
+
+    private interface Work {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the same work on THREADS threads, started together, and rethrows the first failure
+     */
+    private void runConcurrently(Work work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int id = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.run(id);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get(60, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw (Exception) e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
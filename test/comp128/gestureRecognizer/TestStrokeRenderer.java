@@ -0,0 +1,69 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.GraphicsGroup;
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestStrokeRenderer {
+
+    private StrokeRenderer renderer;
+
+    @BeforeEach
+    public void setup() {
+        renderer = new StrokeRenderer(new GraphicsGroup(), 2);
+    }
+
+    /**
+     * Tests that points closer than the minimum distance are merged into one vertex
+     */
+    @Test
+    public void testMergesClosePoints() {
+        renderer.begin(new Point(0, 0));
+        for (int i = 1; i <= 200; i++) {
+            renderer.add(new Point(i * 0.5, 0));
+        }
+        assertEquals(51, renderer.getVertexCount());
+    }
+
+    /**
+     * Tests that nothing is redrawn when no points came in since the last frame
+     */
+    @Test
+    public void testFlushOncePerChange() {
+        renderer.begin(new Point(0, 0));
+        renderer.add(new Point(10, 10));
+        renderer.add(new Point(20, 10));
+        assertTrue(renderer.flush());
+        assertFalse(renderer.flush());
+        renderer.add(new Point(20.5, 10));
+        assertTrue(renderer.flush());
+        assertEquals(1, renderer.getSegmentCount());
+    }
+
+    /**
+     * Tests that a long stroke is spread over segments that never grow past the limit
+     */
+    @Test
+    public void testLongStrokeIsSegmented() {
+        renderer.begin(new Point(0, 0));
+        int points = 5 * StrokeRenderer.SEGMENT_VERTICES;
+        for (int i = 1; i <= points; i++) {
+            renderer.add(new Point(i * 3, Math.sin(i) * 20));
+            renderer.flush();
+        }
+        assertEquals(points + 1, renderer.getVertexCount());
+        // Each segment after the first repeats the last vertex of the one before it
+        int newPerSegment = StrokeRenderer.SEGMENT_VERTICES - 1;
+        int rest = points + 1 - StrokeRenderer.SEGMENT_VERTICES;
+        assertEquals(1 + (rest + newPerSegment - 1) / newPerSegment, renderer.getSegmentCount());
+
+        renderer.clear();
+        assertEquals(0, renderer.getVertexCount());
+        assertFalse(renderer.flush());
+    }
+}
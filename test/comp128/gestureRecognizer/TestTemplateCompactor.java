@@ -0,0 +1,105 @@
+package comp128.gestureRecognizer;
+
+import edu.macalester.graphics.Point;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTemplateCompactor {
+
+    private Recognizer recognizer;
+    private Random random;
+
+    @BeforeEach
+    public void setup() {
+        recognizer = new Recognizer();
+        random = new Random(24);
+        for (int i = 0; i < 60; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            recognizer.addTemplate(SyntheticGestures.SHAPES[shape], SyntheticGestures.create(random, shape, 60));
+        }
+    }
+
+    /**
+     * Tests that each name keeps at most the configured number of templates and that new samples
+     * are still recognized
+     */
+    @Test
+    public void testCompact() {
+        TemplateCompactor.Report report = new TemplateCompactor(2, 0).compact(recognizer);
+        assertEquals(60, report.getTemplatesBefore());
+        assertEquals(12, report.getTemplatesAfter());
+        assertEquals(48, report.getRemoved());
+        assertEquals(12, recognizer.getTempList().size());
+        assertTrue(report.getAccuracyAfter() >= 0.95, report.toString());
+        for (String shape : SyntheticGestures.SHAPES) {
+            assertEquals(2, recognizer.getTempList().stream().filter(t -> t.getName().equals(shape)).count());
+        }
+
+        for (int i = 0; i < 30; i++) {
+            int shape = i % SyntheticGestures.SHAPES.length;
+            Template match = recognizer.recognize(SyntheticGestures.create(random, shape, 60));
+            assertEquals(SyntheticGestures.SHAPES[shape], match.getName());
+        }
+    }
+
+    /**
+     * Tests that copies of the same gesture come down to one template when a distance is given
+     */
+    @Test
+    public void testMaxDistance() {
+        recognizer = new Recognizer();
+        Deque<Point> gesture = SyntheticGestures.create(random, 3, 60);
+        for (int i = 0; i < 8; i++) {
+            recognizer.addTemplate("copy", gesture);
+        }
+        recognizer.addTemplate("other", SyntheticGestures.create(random, 0, 60));
+        TemplateCompactor.Report report = new TemplateCompactor(4, 1).compact(recognizer);
+        List<Template> copies = recognizer.getTempList().stream()
+                .filter(t -> t.getName().equals("copy"))
+                .collect(Collectors.toList());
+        assertEquals(1, copies.size());
+        assertEquals(7, report.getRemoved());
+        assertEquals(1, report.getAccuracyAfter(), 0.0);
+
+        // Without a distance, the limit is kept even for identical templates
+        for (int i = 0; i < 5; i++) {
+            recognizer.addTemplate("copy", gesture);
+        }
+        new TemplateCompactor(4, 0).compact(recognizer);
+        assertEquals(4, recognizer.getTempList().stream().filter(t -> t.getName().equals("copy")).count());
+    }
+
+    /**
+     * Tests k-medoids on points along a line, given as their distances from each other
+     */
+    @Test
+    public void testKMedoids() {
+        double[] positions = {0, 1, 2, 10, 11, 12, 13};
+        double[][] distances = new double[positions.length][positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                distances[i][j] = Math.abs(positions[i] - positions[j]);
+            }
+        }
+        assertArrayEquals(new int[] {1, 4}, TemplateCompactor.kMedoids(distances, 2));
+        assertEquals(2, TemplateCompactor.radius(distances, new int[] {1, 4}), 0.0);
+        assertArrayEquals(new int[] {3}, new TemplateCompactor(3, 20).medoids(distances));
+        assertEquals(2, new TemplateCompactor(3, 2).medoids(distances).length);
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TemplateCompactor(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TemplateCompactor(1, -1));
+    }
+}
@@ -0,0 +1,113 @@
+package comp128.gestureRecognizer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * DistanceKernel on the incubating Vector API. Each step handles as many points as fit in the
+ * widest vector the CPU supports (4 doubles with AVX2, 8 with AVX-512): the rotation, the
+ * differences, the squares and the square roots all run lane by lane, and the distances accumulate
+ * in a vector that is only added up across lanes when the early abandon limit is checked and at the
+ * end. Points left over after the last whole vector are handled one at a time.
+ *
+ * The per point arithmetic is the same as the scalar kernel's; only the order the distances are
+ * added up in differs, so the sums agree with it to within rounding.
+ *
+ * Loaded by DistanceKernels, by name, only when jdk.incubator.vector is available.
+ */
+final class VectorDistanceKernel implements DistanceKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Number of vector steps between checks of the early abandon limit; adding up the lanes costs
+     * about as much as a step, so checking after every step would throw much of the gain away
+     */
+    private static final int CHECK_INTERVAL = 4;
+
+    public VectorDistanceKernel() {
+        // Fails here, rather than in the middle of matching, if the module is not really usable
+        DoubleVector.zero(SPECIES);
+    }
+
+    @Override
+    public double rotatedDistanceSum(double[] xs, double[] ys, double cx, double cy, double[] txs, double[] tys,
+            int n, double cos, double sin, double sumLimit) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(n);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int steps = 0;
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(cx);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(cy);
+            DoubleVector rx = dx.mul(cos).sub(dy.mul(sin)).add(cx).sub(DoubleVector.fromArray(SPECIES, txs, i));
+            DoubleVector ry = dx.mul(sin).add(dy.mul(cos)).add(cy).sub(DoubleVector.fromArray(SPECIES, tys, i));
+            sum = sum.add(rx.mul(rx).add(ry.mul(ry)).sqrt());
+            if (++steps == CHECK_INTERVAL) {
+                steps = 0;
+                if (sum.reduceLanes(VectorOperators.ADD) > sumLimit) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        double distance = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = xs[i] - cx;
+            double dy = ys[i] - cy;
+            double rx = dx * cos - dy * sin + cx - txs[i];
+            double ry = dx * sin + dy * cos + cy - tys[i];
+            distance += Math.sqrt(rx * rx + ry * ry);
+        }
+        return distance > sumLimit ? Double.POSITIVE_INFINITY : distance;
+    }
+
+    @Override
+    public double translatedDistanceSum(double[] xs, double[] ys, double ox, double oy, double[] txs, double[] tys,
+            int n, double sumLimit) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(n);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int steps = 0;
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(ox).sub(DoubleVector.fromArray(SPECIES, txs, i));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(oy).sub(DoubleVector.fromArray(SPECIES, tys, i));
+            sum = sum.add(dx.mul(dx).add(dy.mul(dy)).sqrt());
+            if (++steps == CHECK_INTERVAL) {
+                steps = 0;
+                if (sum.reduceLanes(VectorOperators.ADD) > sumLimit) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        double distance = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = xs[i] - ox - txs[i];
+            double dy = ys[i] - oy - tys[i];
+            distance += Math.sqrt(dx * dx + dy * dy);
+        }
+        return distance > sumLimit ? Double.POSITIVE_INFINITY : distance;
+    }
+
+    @Override
+    public double distanceSum(double[] axs, double[] ays, double[] bxs, double[] bys, int n) {
+        int lanes = SPECIES.length();
+        int upper = SPECIES.loopBound(n);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < upper; i += lanes) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, axs, i).sub(DoubleVector.fromArray(SPECIES, bxs, i));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ays, i).sub(DoubleVector.fromArray(SPECIES, bys, i));
+            sum = sum.add(dx.mul(dx).add(dy.mul(dy)).sqrt());
+        }
+        double distance = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = axs[i] - bxs[i];
+            double dy = ays[i] - bys[i];
+            distance += Math.sqrt(dx * dx + dy * dy);
+        }
+        return distance;
+    }
+}